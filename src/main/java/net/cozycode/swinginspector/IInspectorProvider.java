@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector;
+
+/**
+ * Registers inspectors with an InspectorFactory.  Implementations are found 
+ * through java.util.ServiceLoader and are normally generated at build time 
+ * from the @Inspector annotations by the InspectorIndexProcessor, so adding
+ * a jar of inspectors to the classpath is all it takes to use them.
+ */
+public interface IInspectorProvider {
+   void register( InspectorFactory factory );
+}
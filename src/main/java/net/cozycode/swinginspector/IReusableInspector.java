@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector;
+
+import net.cozycode.core.IDisposable;
+
+/**
+ * An inspector which can be pointed at another object instead of being
+ * disposed and recreated.  InspectorPane keeps one of each class and 
+ * rebinds it as the selection changes, so moving between objects which
+ * use the same inspectors doesn't create or lay out any components.
+ */
+public interface IReusableInspector<T> extends IDisposable {
+   /**
+    * Detaches from the object currently being inspected and starts 
+    * inspecting 'target'.  A null target only detaches, leaving the 
+    * inspector ready to be rebound later.
+    */
+   void inspect( T target );
+}
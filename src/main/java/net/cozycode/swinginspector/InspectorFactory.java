@@ -20,20 +20,43 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JComponent;
 
 import net.cozycode.core.Reflecting;
 
 
+/**
+ * Creates the inspectors for an object from the inspectors registered for 
+ * it's class, super classes and interfaces.<br />
+ * <br />
+ * The constructors to call are resolved once per concrete class and cached, 
+ * so inspecting another instance of a class which has been seen before costs 
+ * only the construction itself.  The cache is cleared whenever an inspector
+ * is added.  Like the rest of Swing, this class is meant to be used from the
+ * event dispatch thread.
+ */
 public class InspectorFactory {
    private final Map<Class<?>, List<Class<? extends JComponent>>> allInspectors
       = new HashMap<Class<?>, List<Class<? extends JComponent>>>();
 
+   /** 
+    * The constructors to call for each concrete class, in display order.
+    * This is the dispatch table; the type hierarchy is only walked on a miss.
+    */
+   private final Map<Class<?>, List<Constructor<? extends JComponent>>> resolved
+      = new HashMap<Class<?>, List<Constructor<? extends JComponent>>>();
+
+   private int hits = 0;
+   private int misses = 0;
+
 
    /**
     * Adds the specified inspector to the set of inspectors for 'type'
@@ -48,6 +71,7 @@ public class InspectorFactory {
          allInspectors.put( type, list );
       }
       list.add( inspector );
+      resolved.clear();
    }
 
    /**
@@ -55,46 +79,140 @@ public class InspectorFactory {
     * The list is returned in the order the inspectors are to be displayed.
     */
    public <T> JComponent[] createInspectors( T arg ) {
+      List<Constructor<? extends JComponent>> ctors = getConstructors( arg );
+
+      JComponent[] inspectors = new JComponent[ ctors.size() ];
+      for( int i = 0; i < inspectors.length; ++i ) {
+         inspectors[i] = createInspector( ctors.get( i ), arg );
+      }
+      return inspectors;
+   }
+
+   /**
+    * Returns the constructors of all inspectors which match the specified type,
+    * in the order the inspectors are to be displayed.  Each one accepts 'arg'.
+    */
+   public <T> List<Constructor<? extends JComponent>> getConstructors( T arg ) {
+      List<Constructor<? extends JComponent>> ctors = resolved.get( arg.getClass() );
+      if( ctors != null ) {
+         ++hits;
+      }
+      else {
+         ++misses;
+         ctors = resolve( arg );
+         resolved.put( arg.getClass(), ctors );
+      }
+      return ctors;
+   }
+
+   /**
+    * Creates an inspector using one of the constructors returned by getConstructors().
+    */
+   public <T> JComponent createInspector( Constructor<? extends JComponent> ctor, T arg ) {
+      try { 
+         return ctor.newInstance( arg ); 
+      }
+      catch( InvocationTargetException e ) { 
+         throw new RuntimeException( e );
+      }
+      catch( IllegalAccessException e ) {
+         throw new RuntimeException( e );
+      }
+      catch( InstantiationException e ) {
+         throw new RuntimeException( e );
+      } 
+   }
+
+   /** The number of lookups answered from the cache. */
+   public int getCacheHits() {
+      return hits;
+   }
+
+   /** The number of lookups which had to resolve the constructors. */
+   public int getCacheMisses() {
+      return misses;
+   }
+
+   /**
+    * Finds the constructors of all inspectors which match the type of 'arg',
+    * in the order the inspectors are to be displayed.
+    */
+   protected <T> List<Constructor<? extends JComponent>> resolve( T arg ) {
       // Use a stack so we see panels arranged from more general to more specific
-      Deque<JComponent> stack = new ArrayDeque<JComponent>();
+      Deque<Constructor<? extends JComponent>> stack = new ArrayDeque<Constructor<? extends JComponent>>();
 
-      Class<?> iter = arg.getClass();
-      while( iter != null ) {
-         JComponent[] all = createInspectors( iter, arg );
+      for( Class<?> type : linearize( arg.getClass() )) {
+         List<Constructor<? extends JComponent>> all = resolve( type, arg );
 
-         //Add created items to the stack in reverse order
+         //Add resolved items to the stack in reverse order
          //so that their relative ordering is maintained.
          //This allows us to add default panels first
          //and then append any user supplied plugins after.
-         for( int i = all.length - 1; i >= 0; --i ) {
-            stack.push( all[i] );
+         for( int i = all.size() - 1; i >= 0; --i ) {
+            stack.push( all.get( i ));
          }
+      }
+
+      return Collections.unmodifiableList( new ArrayList<Constructor<? extends JComponent>>( stack ));
+   }
 
-         iter = iter.getSuperclass();
+   /**
+    * Lists the class, it's super classes and all of their interfaces from
+    * the most specific to the most general.<br />
+    * <br />
+    * Each class is followed by the interfaces it declares (breadth first, in
+    * declaration order) and then by it's super class.  An interface reached
+    * more than once is kept at its last, most general, position, which is 
+    * where it first enters the hierarchy.  Every type therefore comes before
+    * all of its super types and the order is the same from run to run.
+    */
+   protected List<Class<?>> linearize( Class<?> clazz ) {
+      ArrayList<Class<?>> walk = new ArrayList<Class<?>>();
+
+      for( Class<?> iter = clazz; iter != null; iter = iter.getSuperclass() ) {
+         walk.add( iter );
+
+         Deque<Class<?>> queue = new ArrayDeque<Class<?>>();
+         Collections.addAll( queue, iter.getInterfaces() );
+         while( !queue.isEmpty() ) {
+            Class<?> type = queue.poll();
+            walk.add( type );
+            Collections.addAll( queue, type.getInterfaces() );
+         }
       }
 
-      return stack.toArray( new JComponent[ stack.size() ]);
+      // Keep the last occurrence of each type
+      Set<Class<?>> seen = new HashSet<Class<?>>();
+      ArrayList<Class<?>> order = new ArrayList<Class<?>>();
+      for( int i = walk.size() - 1; i >= 0; --i ) {
+         if( seen.add( walk.get( i ))) {
+            order.add( walk.get( i ));
+         }
+      }
+      Collections.reverse( order );
+      return order;
    }
 
    /**
-    * Creates all inspectors which inspect the specified type.
+    * Finds the constructors of all inspectors registered for the specified
+    * type which accept the supplied argument.
     */
-   protected <T> JComponent[] createInspectors( Class<?> clazz, T arg ) {
+   protected <T> List<Constructor<? extends JComponent>> resolve( Class<?> clazz, T arg ) {
       List<Class<? extends JComponent>> inspectors = allInspectors.get( clazz );
-      ArrayList<JComponent> created = new ArrayList<JComponent>();
+      ArrayList<Constructor<? extends JComponent>> found = new ArrayList<Constructor<? extends JComponent>>();
 
       if( inspectors != null ) {
 
          for( Class<? extends JComponent> inspector : inspectors ) {
-            JComponent instance = createInstance( inspector, arg );
-            if( instance != null ) {
-               created.add( instance );
+            Constructor<? extends JComponent> ctor = Reflecting.getMatchingConstructor( inspector, arg );
+            if( ctor != null ) {
+               found.add( ctor );
             }
          }
 
       }
 
-      return created.toArray( new JComponent[ created.size() ]);
+      return found;
    }
 
    /**
@@ -108,17 +226,6 @@ public class InspectorFactory {
          return null; 
       }
 
-      try { 
-         return ctor.newInstance( arg ); 
-      }
-      catch( InvocationTargetException e ) { 
-         throw new RuntimeException( e );
-      }
-      catch( IllegalAccessException e ) {
-         throw new RuntimeException( e );
-      }
-      catch( InstantiationException e ) {
-         throw new RuntimeException( e );
-      } 
+      return createInspector( ctor, arg );
    }
 }
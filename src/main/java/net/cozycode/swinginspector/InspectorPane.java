@@ -16,6 +16,11 @@
 
 package net.cozycode.swinginspector;
 
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 
@@ -23,12 +28,15 @@ import net.cozycode.core.IDisposable;
 import net.miginfocom.swing.MigLayout;
 
 
-public class InspectorPane extends JPanel {
+public class InspectorPane extends JPanel implements IDisposable {
    private static final long serialVersionUID = 1L;
    private static final JComponent[] NO_INSPECTORS = new JComponent[0];
 
    private final InspectorFactory factory;
 
+   /** One instance of each IReusableInspector class, whether it's currently shown or not. */
+   private final Map<Class<?>, JComponent> pool = new HashMap<Class<?>, JComponent>();
+
    private JComponent[] inspectors = NO_INSPECTORS;
 
    public InspectorPane( InspectorFactory factory ) {
@@ -36,31 +44,106 @@ public class InspectorPane extends JPanel {
       this.factory = factory;
    }
 
+   /**
+    * Shows the inspectors for the object.  Reusable inspectors are rebound 
+    * to the object and the pane is only re-laid out when the set of 
+    * inspectors actually changes.
+    */
    public void inspectComponent( Object obj ) {
-      clearInspectors();
-      createInspectors( obj );
-      addInspectors();
+      JComponent[] next = obj != null
+         ? acquireInspectors( obj )
+         : NO_INSPECTORS;
+
+      releaseInspectors( next );
+
+      if( !isShowing( next )) {
+         removeAll();
+         inspectors = next;
+         addInspectors();
+
+         revalidate();
+         repaint();
+      }
+   }
+
+   @Override
+   public void dispose() {
+      inspectComponent( null );
+      for( JComponent comp : pool.values() ) {
+         ((IDisposable)comp).dispose();
+      }
+      pool.clear();
+   }
+
+   private JComponent[] acquireInspectors( Object obj ) {
+      List<Constructor<? extends JComponent>> ctors = factory.getConstructors( obj );
+      JComponent[] acquired = new JComponent[ ctors.size() ];
+
+      for( int i = 0; i < acquired.length; ++i ) {
+         Constructor<? extends JComponent> ctor = ctors.get( i );
+         JComponent inspector = pool.get( ctor.getDeclaringClass() );
 
-      revalidate();
-      repaint();
+         if( inspector != null ) {
+            rebind( inspector, obj );
+         }
+         else {
+            inspector = factory.createInspector( ctor, obj );
+            if( inspector instanceof IReusableInspector<?> ) {
+               pool.put( ctor.getDeclaringClass(), inspector );
+            }
+         }
+         acquired[i] = inspector;
+      }
+
+      return acquired;
    }
 
-   private void clearInspectors() {
+   /**
+    * Detaches the pooled inspectors and disposes the others 
+    * which are currently shown but aren't in 'next'.
+    */
+   private void releaseInspectors( JComponent[] next ) {
       for( JComponent comp : inspectors ) {
-         if( comp instanceof IDisposable ) {
-            ((IDisposable)comp).dispose();
+         if( !contains( next, comp )) {
+            if( comp instanceof IReusableInspector<?> ) {
+               ((IReusableInspector<?>)comp).inspect( null );
+            }
+            else if( comp instanceof IDisposable ) {
+               ((IDisposable)comp).dispose();
+            }
          }
       }
-      inspectors = NO_INSPECTORS;
-      removeAll();
    }
 
-   private void createInspectors( Object comp ) {
-      inspectors = comp != null
-         ? factory.createInspectors( comp )
-         : NO_INSPECTORS;
+   /**
+    * The factory only returns constructors which accept the object, 
+    * so the pooled inspector of the same class accepts it too.
+    */
+   @SuppressWarnings("unchecked")
+   private static void rebind( JComponent inspector, Object obj ) {
+      ((IReusableInspector<Object>)inspector).inspect( obj );
    }
 
+   private boolean isShowing( JComponent[] next ) {
+      if( next.length != inspectors.length ) {
+         return false;
+      }
+      for( int i = 0; i < next.length; ++i ) {
+         if( next[i] != inspectors[i] ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static boolean contains( JComponent[] array, JComponent comp ) {
+      for( JComponent iter : array ) {
+         if( iter == comp ) {
+            return true;
+         }
+      }
+      return false;
+   }
 
    private void addInspectors() {
       for( JComponent inspector : inspectors ) {
@@ -16,34 +16,43 @@
 
 package net.cozycode.swinginspector;
 
-import java.awt.AWTEvent;
 import java.awt.Component;
 import java.awt.MouseInfo;
-import java.awt.Point;
-import java.awt.Toolkit;
-import java.awt.Window;
-import java.awt.event.AWTEventListener;
 import java.awt.event.InputEvent;
-import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 
 import javax.swing.SwingUtilities;
 
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swinginspector.leaks.ComponentLeakDetector;
+import net.cozycode.swinginspector.profiling.LayoutProfiler;
+import net.cozycode.swinginspector.profiling.RepaintProfiler;
+import net.cozycode.swinginspector.search.HitTester;
+import net.cozycode.swinginspector.triggers.Trigger;
+import net.cozycode.swinginspector.triggers.TriggerDispatcher;
+
 public final class SwingInspector {
    private SwingInspector() { /* Static Singleton */ }
 
-   private static final SwingInspectorController controller = new SwingInspectorController();
+   /** Inspects the component under the pointer, or stops inspecting it if it already is. */
+   public static final int INSPECT = 0;
+   /** Keeps the inspector window above the application's windows, or lets it go behind them. */
+   public static final int PIN = 1;
+   /** Captures every window into the Snapshots tab, see SwingInspectorController.takeSnapshot(). */
+   public static final int SNAPSHOT = 2;
+   /** Starts or stops the repaint and layout profilers. */
+   public static final int TOGGLE_PROFILING = 3;
+   /** Stops or resumes recording into the event log. */
+   public static final int TOGGLE_EVENT_LOG = 4;
 
-   private static final int ALL_MODIFIERS = 
-        InputEvent.SHIFT_DOWN_MASK 
-      | InputEvent.CTRL_DOWN_MASK 
-      | InputEvent.ALT_DOWN_MASK 
-      | InputEvent.META_DOWN_MASK;
+   private static final SwingInspectorController controller = new SwingInspectorController();
+   private static final HitTester hitTester = new HitTester();
+   private static final TriggerDispatcher dispatcher = new TriggerDispatcher();
 
 
    /**
-    * Installs an AWTEventListener which consumes all MouseEvents which match
-    * the specified button and modifiers.  Instead, when that combination
+    * Adds a trigger which consumes all MouseEvents which match the specified
+    * button and modifiers.  Instead, when that combination
     * occurs, the SwingInspector window is opened (if it is not open already)
     * and it's focused component is set to the component under the mouse
     * at the time of the event.<br />
@@ -53,7 +62,8 @@ public final class SwingInspector {
     * are consumed (MOUSE_CLICKED, MOUSE_PRESSED, and MOUSE_RELEASED).<br />
     * <br />
     * Internally this uses MouseEvent.getModifersEx() and not MouseEvent.getModifiers()
-    * because the later can't distinguish between BUTTON2 and ALT or between BUTTON3 and META.<br />
+    * because the later can't distinguish between BUTTON2 and ALT or between BUTTON3 and META.
+    * All triggers share one AWTEventListener, see TriggerDispatcher.<br />
     * <br />
     * 'modifiers' should be one or more of the following values bitwise ORed together: <br />
     * InputEvent.SHIFT_DOWN_MASK <br />
@@ -66,39 +76,13 @@ public final class SwingInspector {
     * @param button - One of MouseEvent's button constants (ex: MouseEvent.BUTTON1)
     * @param modifiers - one of MouseEvent's modifierEx constants (ex: InputEvent.SHIFT_DOWN_MASK)
     */
-   public static void installMouseListener( final int button, final int modifiers ) {
-      Toolkit.getDefaultToolkit().addAWTEventListener( new AWTEventListener() {
-
-         public void eventDispatched(AWTEvent event) {
-            if( event instanceof MouseEvent ) {
-               MouseEvent mouseEvent = ((MouseEvent)event);
-
-               // WARNING: Do NOT use getModifiers() because BUTTON2_MASK and ALT_MASK are the same
-               //          and BUTTON3_MASK and META_MASK are the same
-
-               // NOTE: I found that it was safest to discard the button information of the modifiers
-               //       by masking off everything but the SHIFT, CTRL, META and ALT modifiers.
-               //       This is because unexpected modifier information was cropping up that
-               //       had nothing to do with the modifier keys we care about here.
-
-               boolean modifiersMatch = (mouseEvent.getModifiersEx() & ALL_MODIFIERS) == modifiers;
-
-               if( mouseEvent.getButton() == button && modifiersMatch ) {
-                  mouseEvent.consume(); 
-
-                  if( MouseEvent.MOUSE_PRESSED == mouseEvent.getID() ) {
-                     Component selected = SwingUtilities.getDeepestComponentAt( mouseEvent.getComponent(), mouseEvent.getX(), mouseEvent.getY() );
-                     controller.inspectComponent( selected );
-                  }
-               }
-            }
-         }
-      }, AWTEvent.MOUSE_EVENT_MASK );
+   public static void installMouseListener( int button, int modifiers ) {
+      installTrigger( Trigger.mouse( button, modifiers ), INSPECT );
    }
 
    /**
-    * Installs an AWTEventListener which consumes all KeyEvents which match
-    * the specified keycode and modifiers.  Instead, when that combination
+    * Adds a trigger which consumes all KeyEvents which match the specified
+    * keycode and modifiers.  Instead, when that combination
     * occurs, the SwingInspector window is opened (if it is not open already)
     * and it's focused component is set to the component under the mouse
     * at the time of the event.<br />
@@ -108,7 +92,8 @@ public final class SwingInspector {
     * consumed (KEY_PRESSED, KEY_RELEASED, and KEY_TYPED).<br />
     * <br />
     * Internally this uses MouseEvent.getModifersEx() and not MouseEvent.getModifiers()
-    * because the later can't distinguish between BUTTON2 and ALT or between BUTTON3 and META.<br />
+    * because the later can't distinguish between BUTTON2 and ALT or between BUTTON3 and META.
+    * All triggers share one AWTEventListener, see TriggerDispatcher.<br />
     * <br />
     * 'modifiers' should be one or more of the following values bitwise ORed together: <br />
     * InputEvent.SHIFT_DOWN_MASK <br />
@@ -118,74 +103,145 @@ public final class SwingInspector {
     * <br />
     * Example: InputEvent.SHIFT_DOWN_MASK | InputEvent.CTRL_DOWN_MASK
     * 
-    * Note: if there are multiple swing frames under the mouse, the focused frame will
-    *       be checked first.  However, after that the frames will be searched in random
-    *       order as the swing API doesn't provide a way to determine top to bottom ordering.
+    * Note: if there are multiple swing frames under the mouse, the topmost one is used.
+    *       Swing doesn't provide the stacking order of windows, so it is inferred from the
+    *       order in which they were activated, with owned windows above their owners.
+    *       See HitTester.
     * 
     * @param keycode - one of KeyEvent's virtual key codes (ex: KeyEvent.VK_ENTER)
     * @param modifiers - one of KeyEvent's modifierEx constants (ex: KeyEvent.SHIFT_DOWN_MASK)
     */
-   public static void installKeyListener( final int keycode, final int modifiers ) {
-      AWTEventListener listener = new AWTEventListener() {
-
-         public void eventDispatched(AWTEvent event) {
-            if( event instanceof KeyEvent ) {
-               KeyEvent keyEvent = (KeyEvent)event;
-
-               // WARNING: Do NOT use getModifiers() because BUTTON2_MASK and ALT_MASK are the same
-               //          and BUTTON3_MASK and META_MASK are the same
-
-               // NOTE: I found that it was safest to discard the button information of the modifiers
-               //       by masking off everything but the SHIFT, CTRL, META and ALT modifiers.
-               //       This is because unexpected modifier information was cropping up that
-               //       had nothing to do with the modifier keys we care about here.
-
-               boolean modifiersMatch = (keyEvent.getModifiersEx() & ALL_MODIFIERS) == modifiers;
-
-
-               if( keyEvent.getKeyCode() == keycode && modifiersMatch ) {
-                  keyEvent.consume();
-
-                  if( KeyEvent.KEY_PRESSED == keyEvent.getID() ) {
-                     // TODO: Provide applet support, if necessary.
-
-                     // Unfortunately, KeyEvent.getComponent() and KeyEvent.getSource()
-                     // return the component which receives the KeyEvent which is
-                     // the component with the focus, not the component under the mouse.
-                     // That being the case, we will need to look up the component 
-                     // under the mouse ourselves.
-
-                     // First, try using the event component's root so that
-                     // we can check the topmost window for a collision.
-                     Component root = SwingUtilities.getRoot( keyEvent.getComponent() );
-                     Point p = MouseInfo.getPointerInfo().getLocation();
-                     SwingUtilities.convertPointFromScreen( p, root );
-                     Component selected = SwingUtilities.getDeepestComponentAt( root, p.x, p.y );
-                     if( selected != null ) {
-                        controller.inspectComponent( selected );
-                        return;
-                     }
-
-
-                     // This approach won't visit the windows in top to bottom order. 
-                     // Thus, this may return a component on a window beneath another window.
-                     // However, I wasn't able to find a way to resolve this.
-                     for( Window window : Window.getWindows() ) {
-                        p = MouseInfo.getPointerInfo().getLocation();
-                        SwingUtilities.convertPointFromScreen( p, window );
-                        selected = SwingUtilities.getDeepestComponentAt( window, p.x, p.y );
-
-                        if( selected != null ) {
-                           controller.inspectComponent( selected );
-                           break;
-                        }
-                     }
-                  }
+   public static void installKeyListener( int keycode, int modifiers ) {
+      installTrigger( Trigger.key( keycode, modifiers ), INSPECT );
+   }
+
+   /**
+    * Calls one of the actions (INSPECT, PIN, SNAPSHOT, TOGGLE_PROFILING or
+    * TOGGLE_EVENT_LOG) whenever the chord is pressed, replacing any action 
+    * installed for it before.  The events making up the chord are consumed,
+    * as for installKeyListener() and installMouseListener().<br />
+    * <br />
+    * Every trigger is looked up in the same table by a single AWTEventListener,
+    * so installing more of them doesn't slow down the application's events.
+    * 
+    * Example: installTrigger( Trigger.key( KeyEvent.VK_F9, InputEvent.CTRL_DOWN_MASK ), SwingInspector.SNAPSHOT )
+    */
+   public static void installTrigger( Trigger trigger, int action ) {
+      if( action < INSPECT || action > TOGGLE_EVENT_LOG ) {
+         throw new IllegalArgumentException( "Unknown action: "+ action );
+      }
+
+      if( action == INSPECT && !trigger.isMouse() ) {
+         hitTester.install();
+      }
+      dispatcher.add( trigger, new TriggerAction( action ));
+      dispatcher.install();
+   }
+
+   /** Removes a trigger installed by any of the methods above. */
+   public static void uninstallTrigger( Trigger trigger ) {
+      dispatcher.remove( trigger );
+   }
+
+   /**
+    * Replaces the RepaintManager with one which records how often each
+    * component asks to be repainted and how long painting takes.  The
+    * results are shown in the inspector's Repaints tab and for the inspected
+    * component.  If the application has it's own RepaintManager, calls are
+    * forwarded to it and only the repaint requests are recorded.<br />
+    * <br />
+    * Profiling can also be started and stopped from the Repaints tab.
+    */
+   public static void installRepaintProfiler() {
+      RepaintProfiler.install();
+   }
+
+   /** Restores the RepaintManager replaced by installRepaintProfiler(). */
+   public static void uninstallRepaintProfiler() {
+      RepaintProfiler.uninstall();
+   }
+
+   /**
+    * Wraps the LayoutManager of every JPanel to time it's layouts and size
+    * calculations, and to count the containers which are laid out or 
+    * invalidated more than once while handling a single event.  The results
+    * are shown in the inspector's Layouts tab and for the inspected container.
+    * Must be called on the event dispatch thread.<br />
+    * <br />
+    * While this is installed, JPanel.getLayout() returns the wrapper, so code
+    * which casts it to a specific LayoutManager will fail.  Panels with a 
+    * CardLayout and the inspector's own window are never wrapped.
+    */
+   public static void installLayoutProfiler() {
+      LayoutProfiler.install();
+   }
+
+   /** Gives every panel back the LayoutManager wrapped by installLayoutProfiler(). */
+   public static void uninstallLayoutProfiler() {
+      LayoutProfiler.uninstall();
+   }
+
+   /**
+    * Starts tracking every component added to a hierarchy so that the ones
+    * which are taken out of every window but stay reachable can be found 
+    * from the inspector's Leaks tab.  Install it early, so the stacks which
+    * added the leaked components are recorded.  Must be called on the event
+    * dispatch thread.
+    */
+   public static void installLeakDetector() {
+      ComponentLeakDetector.install();
+   }
+
+   /** Stops the tracking started by installLeakDetector(). */
+   public static void uninstallLeakDetector() {
+      ComponentLeakDetector.uninstall();
+   }
+
+   private static final class TriggerAction implements IClosure<InputEvent> {
+      private final int action;
+
+      public TriggerAction( int action ) {
+         this.action = action;
+      }
+
+      @Override
+      public void yield( InputEvent item ) {
+         switch( action ) {
+            case INSPECT:
+               Component selected = getComponentUnderPointer( item );
+               if( selected != null ) {
+                  controller.inspectComponent( selected );
                }
-            }
+               break;
+            case PIN:
+               controller.togglePinned();
+               break;
+            case SNAPSHOT:
+               controller.takeSnapshot();
+               break;
+            case TOGGLE_PROFILING:
+               controller.toggleProfiling();
+               break;
+            default:
+               controller.toggleEventLog();
+               break;
          }
-      };
+      }
+
+      private static Component getComponentUnderPointer( InputEvent item ) {
+         if( item instanceof MouseEvent ) {
+            MouseEvent mouseEvent = (MouseEvent)item;
+            return SwingUtilities.getDeepestComponentAt( mouseEvent.getComponent(), mouseEvent.getX(), mouseEvent.getY() );
+         }
+
+         // TODO: Provide applet support, if necessary.
 
-      Toolkit.getDefaultToolkit().addAWTEventListener( listener, AWTEvent.KEY_EVENT_MASK );
+         // Unfortunately, KeyEvent.getComponent() and KeyEvent.getSource()
+         // return the component which receives the KeyEvent which is
+         // the component with the focus, not the component under the mouse.
+         // That being the case, we will need to look up the component 
+         // under the mouse ourselves.
+         return hitTester.getComponentAt( MouseInfo.getPointerInfo().getLocation() );
+      }
    }
 }
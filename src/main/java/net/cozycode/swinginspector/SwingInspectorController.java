@@ -21,26 +21,37 @@ import java.awt.Component;
 import java.awt.Container;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ServiceLoader;
 
 import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 
 import net.cozycode.constructs.IClosure;
 import net.cozycode.swinginspector.decorators.BackgroundDecorator;
 import net.cozycode.swinginspector.decorators.BorderDecorator;
 import net.cozycode.swinginspector.decorators.IComponentDecorator;
 import net.cozycode.swinginspector.decorators.NullDecorator;
+import net.cozycode.swinginspector.decorators.OverlayDecorator;
+import net.cozycode.swinginspector.events.EventLog;
 import net.cozycode.swinginspector.inspectors.ComponentInspector;
 import net.cozycode.swinginspector.inspectors.ContainerInspector;
 import net.cozycode.swinginspector.inspectors.JComponentInspector;
+import net.cozycode.swinginspector.inspectors.ListenersInspector;
 import net.cozycode.swinginspector.inspectors.ObjectInspector;
+import net.cozycode.swinginspector.profiling.LayoutProfiler;
+import net.cozycode.swinginspector.profiling.RepaintProfiler;
+import net.cozycode.swinginspector.snapshot.HierarchySnapshot;
 
 
-//TODO: view registered listeners
-//TODO: event logger
 //TODO: event spoofer
 //TODO: Object Inspector
 //TODO: Scripting via on the fly compiling (for adding listeners)
-//TODO: Make the panels collapsable
 //TODO: Invoke specific methods: 
      /* revalidate
       * repaint
@@ -54,6 +65,7 @@ public class SwingInspectorController {
    private static final InspectorFactory factory = new InspectorFactory();
    private static final IComponentDecorator[] decorators = new IComponentDecorator[] {
       new NullDecorator(),
+      new OverlayDecorator( Color.BLUE, 2 ),
       new BorderDecorator( Color.BLUE, 2 ),
       new BackgroundDecorator( Color.CYAN )
    };
@@ -62,15 +74,43 @@ public class SwingInspectorController {
    private final MyInspectionListener inspectionListener = new MyInspectionListener();
    private final DecoratorChangedListener decoratorListener = new DecoratorChangedListener();
 
+   /** Always on, so that the events leading up to a problem are there when the inspector is opened. */
+   private final EventLog eventLog = new EventLog();
+
    private SwingInspectorFrame frame = null;
    private IComponentDecorator decorator = decorators[1];
    private Component component = null;
+   private boolean pinned = false;
 
    public SwingInspectorController() {
-      factory.add( Object.class, ObjectInspector.class );
-      factory.add( Component.class, ComponentInspector.class );
-      factory.add( Container.class, ContainerInspector.class );
-      factory.add( JComponent.class, JComponentInspector.class );
+      registerInspectors();
+      eventLog.install();
+   }
+
+   public EventLog getEventLog() {
+      return eventLog;
+   }
+
+   /**
+    * Registers the inspectors indexed from their @Inspector annotations at 
+    * build time.  When no index is on the classpath (such as when running 
+    * from an IDE which skips annotation processing) the built in inspectors 
+    * are registered directly.
+    */
+   private static void registerInspectors() {
+      boolean found = false;
+      for( IInspectorProvider provider : ServiceLoader.load( IInspectorProvider.class, SwingInspectorController.class.getClassLoader() )) {
+         provider.register( factory );
+         found = true;
+      }
+
+      if( !found ) {
+         factory.add( Object.class, ObjectInspector.class );
+         factory.add( Component.class, ComponentInspector.class );
+         factory.add( Component.class, ListenersInspector.class );
+         factory.add( Container.class, ContainerInspector.class );
+         factory.add( JComponent.class, JComponentInspector.class );
+      }
    }
 
    public void inspectComponent( Component c ) {
@@ -86,15 +126,130 @@ public class SwingInspectorController {
 
 
       if( frame == null ) {
-         frame = createFrame( component );
-         frame.addInspectionListener( inspectionListener );
-         frame.addDecoratorChangedListener( decoratorListener );
+         openFrame();
       }
       else {
          frameInspect( component );
       }
    }
 
+   /** 
+    * Keeps the inspector window above the application's windows, or lets it
+    * go behind them again.  Remembered while the window is closed.
+    */
+   public void togglePinned() {
+      pinned = !pinned;
+      if( frame != null ) {
+         frame.setAlwaysOnTop( pinned );
+      }
+   }
+
+   public boolean isPinned() {
+      return pinned;
+   }
+
+   /**
+    * Captures every window, other than the inspector's own, and shows it in
+    * the Snapshots tab as the "After" snapshot, the previous one becoming the
+    * "Before".  Taking a snapshot before and after an interaction therefore
+    * shows what it changed.  Opens the inspector if it isn't open.  Must be
+    * called on the event dispatch thread.
+    */
+   public void takeSnapshot() {
+      HierarchySnapshot snapshot = capture( null );
+      if( frame == null ) {
+         openFrame();
+      }
+      frame.showSnapshot( snapshot );
+   }
+
+   /**
+    * Starts the repaint and layout profilers, or stops both if either one is
+    * running.  The inspector's window ignores itself when it is created, so 
+    * it's never profiled for layouts.  Must be called on the event dispatch
+    * thread.
+    */
+   public void toggleProfiling() {
+      if( RepaintProfiler.getInstalled() != null || LayoutProfiler.getInstalled() != null ) {
+         RepaintProfiler.uninstall();
+         LayoutProfiler.uninstall();
+      }
+      else {
+         RepaintProfiler.install();
+         LayoutProfiler.install();
+      }
+   }
+
+   /** Stops recording into the event log, or starts again.  The log keeps what it has. */
+   public void toggleEventLog() {
+      if( eventLog.isInstalled() ) {
+         eventLog.uninstall();
+      }
+      else {
+         eventLog.install();
+      }
+   }
+
+   /**
+    * Captures every displayable window, other than the inspector's own, 
+    * along with everything in them.  Can be called from any thread; the 
+    * capture itself is done on the event dispatch thread.
+    */
+   public HierarchySnapshot captureSnapshot() {
+      return captureOnEdt( null );
+   }
+
+   /**
+    * Captures the hierarchy under 'root'.  Can be called from any thread; the 
+    * capture itself is done on the event dispatch thread.
+    */
+   public HierarchySnapshot captureSnapshot( Component root ) {
+      return captureOnEdt( root );
+   }
+
+   /**
+    * Captures every window, as in captureSnapshot(), and writes the snapshot
+    * to 'file'.  Only the capture blocks the event dispatch thread; the 
+    * writing is done on the calling thread.
+    */
+   public void exportSnapshot( File file ) throws IOException {
+      HierarchySnapshot snapshot = captureSnapshot();
+      OutputStream out = new BufferedOutputStream( new FileOutputStream( file ), 1 << 16 );
+      try {
+         snapshot.write( out );
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   private HierarchySnapshot captureOnEdt( final Component root ) {
+      if( SwingUtilities.isEventDispatchThread() ) {
+         return capture( root );
+      }
+
+      final HierarchySnapshot[] result = new HierarchySnapshot[1];
+      try {
+         SwingUtilities.invokeAndWait( new Runnable() {
+            public void run() {
+               result[0] = capture( root );
+            }
+         });
+      }
+      catch( InterruptedException e ) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException( e );
+      }
+      catch( InvocationTargetException e ) {
+         throw new RuntimeException( e.getCause() );
+      }
+      return result[0];
+   }
+
+   private HierarchySnapshot capture( Component root ) {
+      return root != null ? HierarchySnapshot.capture( root ) : HierarchySnapshot.captureWindows( frame );
+   }
+
    protected void moveDecoration( Component prev, Component next ) {
       try {
          if( prev != null && decorator != null ) { decorator.undecorate( prev ); }
@@ -124,9 +279,16 @@ public class SwingInspectorController {
       frame = null;
    }
 
+   private void openFrame() {
+      frame = createFrame( component );
+      frame.addInspectionListener( inspectionListener );
+      frame.addDecoratorChangedListener( decoratorListener );
+   }
+
    private SwingInspectorFrame createFrame( Component component ) {
-      SwingInspectorFrame f = new SwingInspectorFrame( component, factory, decorators );
+      SwingInspectorFrame f = new SwingInspectorFrame( component, factory, decorators, eventLog );
       f.setDecorator( decorators[1] );
+      f.setAlwaysOnTop( pinned );
 
       f.addWindowListener( windowListener );
       f.pack();
@@ -17,27 +17,58 @@
 package net.cozycode.swinginspector;
 
 import java.awt.BorderLayout;
+import java.awt.CardLayout;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import net.cozycode.constructs.IClosure;
 import net.cozycode.swinginspector.components.ComponentTree;
+import net.cozycode.swinginspector.decorators.DecorationState;
 import net.cozycode.swinginspector.decorators.IComponentDecorator;
+import net.cozycode.swinginspector.events.EventLog;
+import net.cozycode.swinginspector.events.EventLogPanel;
+import net.cozycode.swinginspector.leaks.LeakPanel;
+import net.cozycode.swinginspector.listeners.ListenerPanel;
+import net.cozycode.swinginspector.monitor.EdtLatencyMonitor;
+import net.cozycode.swinginspector.monitor.LatencyPanel;
+import net.cozycode.swinginspector.profiling.LayoutPanel;
+import net.cozycode.swinginspector.profiling.LayoutProfiler;
+import net.cozycode.swinginspector.profiling.RepaintPanel;
+import net.cozycode.swinginspector.search.ComponentIndex;
+import net.cozycode.swinginspector.snapshot.AnalysisPanel;
+import net.cozycode.swinginspector.snapshot.HierarchySnapshot;
+import net.cozycode.swinginspector.snapshot.SnapshotPanel;
 import net.miginfocom.swing.MigLayout;
 
 public class SwingInspectorFrame extends JFrame {
    private static final long serialVersionUID = 1L;
+   private static final int MAX_SEARCH_RESULTS = 500;
+   private static final String TREE_CARD = "tree";
+   private static final String RESULTS_CARD = "results";
+   private static final int DIAGNOSTICS_DELAY = 1000;
 
    private final ArrayList<IClosure<IComponentDecorator>> decoratorChangedListeners = new ArrayList<IClosure<IComponentDecorator>>();
    private final TreeInspectionListener listener = new TreeInspectionListener();
@@ -45,8 +76,26 @@ public class SwingInspectorFrame extends JFrame {
    private final InspectorPane inspectorPane;
    private final JComboBox decorations;
 
-   public SwingInspectorFrame( Component inspecting, InspectorFactory factory, IComponentDecorator[] decorators ) {
+   private final ComponentIndex index = new ComponentIndex();
+   private final JTextField search = new JTextField( 20 );
+   private final DefaultListModel<Component> resultsModel = new DefaultListModel<Component>();
+   private final JList<Component> results = new JList<Component>( resultsModel );
+   private final CardLayout navigatorLayout = new CardLayout();
+   private final JPanel navigator = new JPanel( navigatorLayout );
+
+   private final EdtLatencyMonitor latencyMonitor = new EdtLatencyMonitor();
+   private final JTabbedPane tabs = new JTabbedPane();
+   private final SnapshotPanel snapshots = new SnapshotPanel();
+   private final EventLog eventLog;
+
+   private final JLabel liveDecorations = new JLabel();
+   private final Timer diagnosticsTimer = new Timer( DIAGNOSTICS_DELAY, new DiagnosticsListener() );
+
+   public SwingInspectorFrame( Component inspecting, InspectorFactory factory, IComponentDecorator[] decorators, EventLog eventLog ) {
       super( "Swing Inspector" );
+      LayoutProfiler.ignoreWindow( this );
+      this.eventLog = eventLog;
+      eventLog.setIgnoredWindow( this );
       inspectorPane = new InspectorPane( factory );
       decorations = new JComboBox( decorators );
       decorations.addActionListener( new ActionListener(){
@@ -58,9 +107,23 @@ public class SwingInspectorFrame extends JFrame {
          }
       });
 
+      updateDiagnostics();
+      diagnosticsTimer.start();
+      latencyMonitor.start();
+
+      search.getDocument().addDocumentListener( new SearchListener() );
+      search.addKeyListener( new SearchKeyListener() );
+      results.setCellRenderer( new ResultRenderer() );
+      results.addMouseListener( new ResultMouseListener() );
+      results.addKeyListener( new ResultKeyListener() );
+
       setPreferredSize( new Dimension( 900, 700 ));
       setContentPane( createContentPane() );
 
+      // Only once the panels are attached, so they are recognised as the inspector's own
+      index.setIgnoredWindow( this );
+      index.install();
+
       inspectComponent( inspecting );
       tree.addInspectionListener( listener );
    }
@@ -69,21 +132,36 @@ public class SwingInspectorFrame extends JFrame {
       JPanel panel = new JPanel( new BorderLayout() );
 
       JScrollPane treeScroller = new JScrollPane( tree );
+      JScrollPane resultsScroller = new JScrollPane( results );
       JScrollPane paneScroller = new JScrollPane( inspectorPane );
 
       treeScroller.setBorder( null );
+      resultsScroller.setBorder( null );
       paneScroller.setBorder( null );
 
+      navigator.add( treeScroller, TREE_CARD );
+      navigator.add( resultsScroller, RESULTS_CARD );
+
       JSplitPane splitter = new JSplitPane( 
          JSplitPane.HORIZONTAL_SPLIT,
-         treeScroller,
+         navigator,
          paneScroller
       );
 
       splitter.setDividerLocation( 250 );
 
+      tabs.addTab( "Inspector", splitter );
+      tabs.addTab( "EDT Latency", new LatencyPanel( latencyMonitor ));
+      tabs.addTab( "Repaints", new RepaintPanel( new TabInspector() ));
+      tabs.addTab( "Layouts", new LayoutPanel( new TabInspector() ));
+      tabs.addTab( "Events", new EventLogPanel( eventLog, new TabInspector() ));
+      tabs.addTab( "Snapshots", snapshots );
+      tabs.addTab( "Analysis", new AnalysisPanel( new TabInspector() ));
+      tabs.addTab( "Leaks", new LeakPanel( new TabInspector() ));
+      tabs.addTab( "Listeners", new ListenerPanel( new TabInspector() ));
+
       panel.add( createToolBar(), BorderLayout.NORTH );
-      panel.add( splitter, BorderLayout.CENTER );
+      panel.add( tabs, BorderLayout.CENTER );
       return panel;
    }
 
@@ -91,6 +169,9 @@ public class SwingInspectorFrame extends JFrame {
       JPanel panel = new JPanel( new MigLayout( "insets 3 10 3 5" ));
       panel.add( new JLabel( "Decoration" ));
       panel.add( decorations );
+      panel.add( liveDecorations, "gapleft 5" );
+      panel.add( new JLabel( "Find" ), "gapleft 15" );
+      panel.add( search );
       return panel;
    }
 
@@ -103,6 +184,23 @@ public class SwingInspectorFrame extends JFrame {
       inspectorPane.inspectComponent( inspecting );
    }
 
+   /** Adds the snapshot as the "After" one, see SnapshotPanel.addSnapshot(), and shows it. */
+   public void showSnapshot( HierarchySnapshot snapshot ) {
+      snapshots.addSnapshot( snapshot );
+      tabs.setSelectedComponent( snapshots );
+   }
+
+   @Override
+   public void dispose() {
+      diagnosticsTimer.stop();
+      latencyMonitor.stop();
+      index.uninstall();
+      tree.dispose();
+      inspectorPane.dispose();
+      eventLog.setIgnoredWindow( null );
+      super.dispose();
+   }
+
    public void addInspectionListener( IInspectionListener listener ) {
       tree.addInspectionListener( listener );
    }
@@ -119,9 +217,136 @@ public class SwingInspectorFrame extends JFrame {
       decoratorChangedListeners.remove( listener );
    }
 
+   /**
+    * Shows how many components still hold decoration state.  More than the
+    * number currently highlighted means decorations are being leaked.
+    */
+   private void updateDiagnostics() {
+      DecorationState state = DecorationState.getShared();
+      liveDecorations.setText( state.getLiveCount() +" decorated" );
+      liveDecorations.setToolTipText( 
+         state.getLiveCount() +" decorated components are reachable, "+ 
+         state.getCollectedCount() +" were collected without being undecorated" 
+      );
+   }
+
+   private void updateResults() {
+      resultsModel.clear();
+
+      String query = search.getText();
+      if( query.trim().length() == 0 ) {
+         navigatorLayout.show( navigator, TREE_CARD );
+         return;
+      }
+
+      for( Component c : index.find( query, MAX_SEARCH_RESULTS )) {
+         resultsModel.addElement( c );
+      }
+      navigatorLayout.show( navigator, RESULTS_CARD );
+   }
+
+   /**
+    * Inspects the selected result and goes back to the tree.
+    * The tree notifies the inspection listeners.
+    */
+   private void inspectSelectedResult() {
+      Component selected = results.getSelectedValue();
+      if( selected != null ) {
+         navigatorLayout.show( navigator, TREE_CARD );
+         tree.inspectComponent( selected );
+      }
+   }
+
+   private final class DiagnosticsListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         updateDiagnostics();
+      }
+   }
+
+   /** Inspects components chosen in the other tabs and switches back to the inspector. */
+   private final class TabInspector implements IClosure<Component> {
+      @Override
+      public void yield( Component item ) {
+         tabs.setSelectedIndex( 0 );
+         tree.inspectComponent( item );
+      }
+   }
+
    private final class TreeInspectionListener implements IInspectionListener {
       public void inspectionChanged(Component component) {
          inspectorPane.inspectComponent( component );
       }
    }
+
+   private final class SearchListener implements DocumentListener {
+      @Override
+      public void insertUpdate(DocumentEvent e) {
+         updateResults();
+      }
+
+      @Override
+      public void removeUpdate(DocumentEvent e) {
+         updateResults();
+      }
+
+      @Override
+      public void changedUpdate(DocumentEvent e) {
+         updateResults();
+      }
+   }
+
+   private final class SearchKeyListener extends KeyAdapter {
+      @Override
+      public void keyPressed(KeyEvent e) {
+         if( e.getKeyCode() == KeyEvent.VK_ESCAPE ) {
+            search.setText( "" );
+         }
+         if( e.getKeyCode() == KeyEvent.VK_DOWN && resultsModel.getSize() > 0 ) {
+            results.setSelectedIndex( 0 );
+            results.requestFocusInWindow();
+         }
+         if( e.getKeyCode() == KeyEvent.VK_ENTER && resultsModel.getSize() > 0 ) {
+            results.setSelectedIndex( 0 );
+            inspectSelectedResult();
+         }
+      }
+   }
+
+   private final class ResultKeyListener extends KeyAdapter {
+      @Override
+      public void keyPressed(KeyEvent e) {
+         if( e.getKeyCode() == KeyEvent.VK_ENTER ) {
+            inspectSelectedResult();
+         }
+      }
+   }
+
+   private final class ResultMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+         inspectSelectedResult();
+      }
+   }
+
+   private static final class ResultRenderer extends DefaultListCellRenderer {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+         String text = value != null ? describe( (Component)value ) : "null";
+         return super.getListCellRendererComponent( list, text, index, isSelected, cellHasFocus );
+      }
+
+      private static String describe( Component c ) {
+         StringBuilder builder = new StringBuilder( c.getClass().getSimpleName() );
+         if( c.getName() != null ) {
+            builder.append( "  [" ).append( c.getName() ).append( "]" );
+         }
+         String text = ComponentIndex.getText( c );
+         if( text != null && text.length() > 0 ) {
+            builder.append( "  \"" ).append( text ).append( "\"" );
+         }
+         return builder.toString();
+      }
+   }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.components;
+
+import static net.cozycode.swinginspector.components.SwingInspectorUtilities.*;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.swing.JPanel;
+import javax.swing.JToggleButton;
+import javax.swing.SwingConstants;
+import javax.swing.UIManager;
+
+import net.cozycode.constructs.IClosure;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * A titled section which can be collapsed to just it's title.<br />
+ * <br />
+ * The rows of the section are only built, by yielding the content pane to
+ * the builder, the first time it's expanded, so sections which are never
+ * opened cost nothing.  Whether a section is expanded is remembered by it's
+ * key for the rest of the session, so the sections of inspectors created 
+ * later open the same way.  Like the rest of Swing, it's meant to be used
+ * from the event dispatch thread.
+ */
+public class CollapsibleSection extends JPanel {
+   private static final long serialVersionUID = 1L;
+
+   /** The last state of each section, by key. */
+   private static final HashMap<String, Boolean> remembered = new HashMap<String, Boolean>();
+
+   private final ArrayList<IClosure<CollapsibleSection>> expansionListeners = new ArrayList<IClosure<CollapsibleSection>>();
+   private final String key;
+   private final JToggleButton header;
+   private final JPanel content;
+   private final IClosure<JPanel> builder;
+   private boolean built = false;
+
+   /**
+    * @param key - identifies the section when remembering it's state (ex: "Component.Font")
+    * @param title - the text of the header
+    * @param expanded - whether the section starts out expanded, when there's nothing remembered for the key
+    * @param content - the pane the rows are added to
+    * @param builder - adds the rows to the content pane, called at most once
+    */
+   public CollapsibleSection( String key, String title, boolean expanded, JPanel content, IClosure<JPanel> builder ) {
+      super( new MigLayout( "wrap, fillx, insets 0", "[fill]", "[]0[]" ));
+      this.key = key;
+      this.content = content;
+      this.builder = builder;
+
+      header = strongFont( new JToggleButton( title ));
+      header.setHorizontalAlignment( SwingConstants.LEADING );
+      header.setBorderPainted( false );
+      header.setContentAreaFilled( false );
+      header.setFocusPainted( false );
+      header.addActionListener( new HeaderListener() );
+
+      Boolean last = remembered.get( key );
+      boolean open = last != null ? last : expanded;
+      header.setSelected( open );
+      updateIcon();
+
+      if( open ) {
+         build();
+      }
+      content.setVisible( open );
+
+      add( header, "growx 0" );
+      add( content, "hidemode 3" );
+   }
+
+   public String getKey() {
+      return key;
+   }
+
+   public boolean isExpanded() {
+      return content.isVisible();
+   }
+
+   /** Whether the rows have been built, which they are the first time the section is expanded. */
+   public boolean isBuilt() {
+      return built;
+   }
+
+   public void setExpanded( boolean expanded ) {
+      remembered.put( key, expanded );
+      header.setSelected( expanded );
+      if( expanded == isExpanded() ) {
+         return;
+      }
+
+      if( expanded ) {
+         build();
+      }
+      content.setVisible( expanded );
+      updateIcon();
+      revalidate();
+      repaint();
+
+      for( IClosure<CollapsibleSection> listener : new ArrayList<IClosure<CollapsibleSection>>( expansionListeners )) {
+         listener.yield( this );
+      }
+   }
+
+   /** Notified with the section after it's expanded or collapsed. */
+   public void addExpansionListener( IClosure<CollapsibleSection> listener ) {
+      expansionListeners.add( listener );
+   }
+
+   public void removeExpansionListener( IClosure<CollapsibleSection> listener ) {
+      expansionListeners.remove( listener );
+   }
+
+   private void build() {
+      if( !built ) {
+         built = true;
+         builder.yield( content );
+      }
+   }
+
+   private void updateIcon() {
+      header.setIcon( UIManager.getIcon( header.isSelected() ? "Tree.expandedIcon" : "Tree.collapsedIcon" ));
+   }
+
+   private final class HeaderListener implements ActionListener {
+      @Override
+      public void actionPerformed( ActionEvent e ) {
+         setExpanded( header.isSelected() );
+      }
+   }
+}
@@ -18,29 +18,26 @@ package net.cozycode.swinginspector.components;
 
 import java.awt.Component;
 import java.awt.Container;
-import java.util.ArrayDeque;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.JTree;
 import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.event.TreeWillExpandListener;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.ExpandVetoException;
-import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 
+import net.cozycode.core.IDisposable;
 import net.cozycode.swinginspector.IInspectionListener;
 
-//TODO: When a node is collapsed, prune off it's children's children
-//TODO: Add listeners to each container node to watch for added/removed nodes and update accordingly
-public class ComponentTree extends JTree {
+public class ComponentTree extends JTree implements IDisposable {
    private static final long serialVersionUID = 1L;
 
    private final CopyOnWriteArrayList<IInspectionListener> inspectionListeners = new CopyOnWriteArrayList<IInspectionListener>();
+   private final ComponentTreeModel model = new ComponentTreeModel();
 
    public ComponentTree() {
       this( null );
@@ -49,16 +46,18 @@ public class ComponentTree extends JTree {
    public ComponentTree( Component inspecting ) {
       this.getSelectionModel().setSelectionMode( TreeSelectionModel.SINGLE_TREE_SELECTION );
       this.setEditable( false );
+      this.setModel( model );
 
       inspectComponent( inspecting );
 
       addTreeSelectionListener( new TreeSelectionListener() {
          public void valueChanged( TreeSelectionEvent event ) {
-            Object obj = event.getPath().getLastPathComponent();
-            if( obj instanceof ComponentNode ) {
-               ComponentNode node = (ComponentNode)obj;
-
-               fireInspectionChanged( node.getComponent() );
+            // Only react to paths being selected, not to the selection being cleared
+            // (which happens, for instance, when the selected component is removed).
+            TreePath path = event.getNewLeadSelectionPath();
+            Object obj = path != null ? path.getLastPathComponent() : null;
+            if( obj instanceof Component ) {
+               fireInspectionChanged( (Component)obj );
             }
          }
       });
@@ -66,15 +65,9 @@ public class ComponentTree extends JTree {
       addTreeWillExpandListener( new TreeWillExpandListener() {
          public void treeWillExpand( TreeExpansionEvent event ) throws ExpandVetoException {
             Object obj = event.getPath().getLastPathComponent();
-            if( obj instanceof ComponentNode ) {
-               ComponentNode node = (ComponentNode)obj;
-
-               for( int i = 0; i < node.getChildCount(); ++i ) {
-                  TreeNode child = node.getChildAt( i );
-                  if( child instanceof ComponentNode ) {
-                     addChildrenToNode( (ComponentNode)child );  
-                  }
-               }
+            if( obj instanceof Container ) {
+               model.expanding( (Container)obj );
+               model.trim( getSelectedComponent() );
             }
          }
 
@@ -82,82 +75,83 @@ public class ComponentTree extends JTree {
             /** noop */
          }
       });  
-   }
 
+      addTreeExpansionListener( new TreeExpansionListener() {
+         public void treeExpanded( TreeExpansionEvent event ) { /* noop */ }
 
+         // Pruning is done once the collapse has happened.  Doing it while the 
+         // node is still expanded makes the JTree re-expand the pruned children.
+         public void treeCollapsed( TreeExpansionEvent event ) {
+            Object obj = event.getPath().getLastPathComponent();
+            if( obj instanceof Container ) {
+               model.collapsed( (Container)obj, getSelectedComponent() );
+            }
+         }
+      });
+   }
 
+   /**
+    * Selects the specified component in the tree.  When the component lives 
+    * under the current root only the selection changes, and the containers 
+    * along the way are picked up as the JTree expands the path.  The root is
+    * only replaced when the component lives under a different one.
+    */
    public void inspectComponent( Component selection ) {
       if( selection == null ) {
-         setModel( new DefaultTreeModel( null ));
+         setRoot( null );
          fireInspectionChanged( null );
          return;
       }
-      ArrayDeque<TreeNode> pathBuilder = new ArrayDeque<TreeNode>();
-      ComponentNode rootNode = new ComponentNode( selection );
-      addChildrenToNode( rootNode );
-      pathBuilder.push( rootNode );
-
-      Component iter = selection.getParent();
 
-      while( iter != null ) {
-         ComponentNode parentNode = new ComponentNode( iter );
-         addChildrenToNode( parentNode, rootNode );
-         addChildrenToChildren( parentNode );
-         pathBuilder.push( parentNode );
-
-         rootNode = parentNode;
-         iter = iter.getParent();
+      TreePath path = model.getPath( selection );
+      if( path == null ) {
+         Component root = selection;
+         while( root.getParent() != null ) {
+            root = root.getParent();
+         }
+         setRoot( root );
+         path = model.getPath( selection );
       }
 
-      setModel( new DefaultTreeModel( rootNode ));
-      setSelectionPath( new TreePath( pathBuilder.toArray() ));
+      setSelectionPath( path );
 
       fireInspectionChanged( selection );
    }
 
+   @Override
+   public void dispose() {
+      setRoot( null );
+   }
+
    /**
-    * Adds the appropriate children to the children of this node by
-    * calling 'addChildrenToNode' for each child.
+    * Sets the number of nodes the model may hold before collapsed 
+    * branches start being released, least recently collapsed first.
+    * Expanded branches and the path to the selection are never released, 
+    * so the count may exceed this value when that is all the model holds.
     */
-   private static void addChildrenToChildren( ComponentNode node ) {
-      int length = node.getChildCount();
-      for( int i = 0; i < length; ++i ) {
-         if( node.getChildAt( i ) instanceof ComponentNode ) {
-            addChildrenToNode( (ComponentNode) node.getChildAt( i ));
-         }
-      }
+   public void setMaximumNodeCount( int maximumNodeCount ) {
+      model.setMaximumNodeCount( maximumNodeCount );
+      model.trim( getSelectedComponent() );
    }
 
+   public int getMaximumNodeCount() {
+      return model.getMaximumNodeCount();
+   }
 
-   /**
-    * If the specified node has no children, then ComponentNodes 
-    * are created and added for each child component of the node's 
-    * underlying component.
-    */
-   private static void addChildrenToNode( ComponentNode node ) {
-      addChildrenToNode( node, null );
+   /** The number of nodes currently held by the model. */
+   public int getNodeCount() {
+      return model.getNodeCount();
    }
 
-   /**
-    * If the specified node has no children, then ComponentNodes 
-    * are created and added for each child component of the node's 
-    * underlying component.
-    * 
-    * When a child component which matches the component of 'knownChild'
-    * is encountered, the knownChild is added instead of creating a new
-    * node for it.
-    */
-   private static void addChildrenToNode( ComponentNode node, ComponentNode knownChild ) {
-      if( node.getChildCount() == 0 && node.isContainer()) {
-         for( Component child : node.getContainer().getComponents() ) {
-            if( knownChild == null || child != knownChild.getComponent() ) {
-               node.add( new ComponentNode( child ));
-            }
-            else {
-               node.add( knownChild );
-            }
-         }
-      }
+   private void setRoot( Component root ) {
+      clearToggledPaths();
+      model.setRoot( root );
+   }
+
+   private Component getSelectedComponent() {
+      TreePath path = getSelectionPath();
+      Object obj = path != null ? path.getLastPathComponent() : null;
+      return obj instanceof Component ? (Component)obj : null;
    }
 
    protected void fireInspectionChanged( Component comp ) {
@@ -176,35 +170,14 @@ public class ComponentTree extends JTree {
 
    @Override
    public String convertValueToText(Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
-      if( value instanceof ComponentNode ) {
-         Component component = ((ComponentNode)value).getComponent();
-
-         if( component == null ) { return "null"; }
-
-         return component.getClass().getSimpleName();
+      if( value instanceof Component ) {
+         return value.getClass().getSimpleName();
       }
-      else {
-         return "ERROR: TreeNode was not a ComponentNode as was expected";
+      else if( value == null ) {
+         return "null";
       }
-   }
-
-   protected static class ComponentNode extends DefaultMutableTreeNode {
-      private static final long serialVersionUID = 1L;
-
-      public ComponentNode( Component component ) {
-         super( component );
-      }
-
-      public Component getComponent() {
-         return (Component)getUserObject();
-      }
-
-      public boolean isContainer() {
-         return getUserObject() instanceof Container;
-      }
-
-      public Container getContainer() {
-         return isContainer() ? (Container)getUserObject() : null;
+      else {
+         return "ERROR: Tree value was not a Component as was expected";
       }
    }
 }
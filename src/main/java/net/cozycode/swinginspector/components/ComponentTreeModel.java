@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.components;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * A TreeModel which answers straight from the live AWT hierarchy.  The nodes
+ * are the components themselves, so no node objects are created and nothing
+ * is copied to answer getChild/getChildCount/getIndexOfChild.<br />
+ * <br />
+ * Containers whose children the JTree has loaded (the expanded ones) are 
+ * "watched": a ContainerListener applies their additions and removals to 
+ * the tree.  A watched container also keeps the order of it's children as
+ * of the last event, because AWT only reports a removal after the fact and
+ * the tree needs to know which index was removed.<br />
+ * <br />
+ * Collapsed containers stay watched so that expanding them again is cheap,
+ * until the number of watched children exceeds the maximum node count, at 
+ * which point the least recently collapsed ones are released.
+ */
+public class ComponentTreeModel implements TreeModel {
+   private static final int DEFAULT_MAXIMUM_NODE_COUNT = 20000;
+
+   private final CopyOnWriteArrayList<TreeModelListener> listeners = new CopyOnWriteArrayList<TreeModelListener>();
+   private final IdentityHashMap<Container, ArrayList<Component>> watched = new IdentityHashMap<Container, ArrayList<Component>>();
+   private final WatchListener containerListener = new WatchListener();
+
+   /** Watched, collapsed containers, least recently collapsed first. */
+   private final LinkedHashMap<Container, Boolean> collapsed = new LinkedHashMap<Container, Boolean>( 16, 0.75f, true );
+
+   private Component root = null;
+   private int nodeCount = 0;
+   private int maximumNodeCount = DEFAULT_MAXIMUM_NODE_COUNT;
+
+   public ComponentTreeModel() {
+      this( null );
+   }
+
+   public ComponentTreeModel( Component root ) {
+      setRoot( root );
+   }
+
+   /**
+    * Replaces the root, releasing every watched container.
+    */
+   public void setRoot( Component root ) {
+      for( Container container : new ArrayList<Container>( watched.keySet() )) {
+         unwatch( container );
+      }
+      this.root = root;
+
+      // The JTree expands a new root without asking, so it's watched up front.
+      if( root instanceof Container ) {
+         watch( (Container)root );
+      }
+
+      fireTreeStructureChanged( root != null ? new TreePath( root ) : null );
+   }
+
+   /**
+    * Returns the path from the root to the component,
+    * or null if the component isn't under the root.
+    */
+   public TreePath getPath( Component component ) {
+      int depth = 0;
+      Component iter = component;
+      while( iter != null && iter != root ) {
+         iter = iter.getParent();
+         ++depth;
+      }
+      if( iter == null ) {
+         return null;
+      }
+
+      Object[] path = new Object[ depth + 1 ];
+      iter = component;
+      for( int i = depth; i >= 0; --i ) {
+         path[i] = iter;
+         iter = iter.getParent();
+      }
+      return new TreePath( path );
+   }
+
+   /**
+    * Called when the container is about to be expanded.
+    */
+   public void expanding( Container container ) {
+      collapsed.remove( container );
+      watch( container );
+   }
+
+   /**
+    * Called once the container has been collapsed.  The containers below
+    * it's children are released and the container itself is kept for reuse
+    * until it's evicted.  'keep' is never evicted, nor are it's ancestors.
+    */
+   public void collapsed( Container container, Component keep ) {
+      ArrayList<Container> children = new ArrayList<Container>();
+      for( Container iter : watched.keySet() ) {
+         if( iter.getParent() == container ) {
+            children.add( iter );
+         }
+      }
+
+      for( Container child : children ) {
+         TreePath path = getPath( child );
+         unwatchSubtree( child );
+
+         // Makes the JTree forget the child's children and their expanded state.
+         fireTreeStructureChanged( path );
+      }
+
+      if( watched.containsKey( container )) {
+         collapsed.put( container, Boolean.TRUE );
+      }
+      trim( keep );
+   }
+
+   /**
+    * Sets the number of children the watched containers may hold before 
+    * collapsed containers start being released, least recently collapsed first.
+    */
+   public void setMaximumNodeCount( int maximumNodeCount ) {
+      this.maximumNodeCount = maximumNodeCount;
+   }
+
+   public int getMaximumNodeCount() {
+      return maximumNodeCount;
+   }
+
+   /** The number of children held by the watched containers. */
+   public int getNodeCount() {
+      return nodeCount;
+   }
+
+   /**
+    * Releases collapsed containers, least recently collapsed first, until the
+    * node count is within the maximum or there are no more candidates. 
+    * 'keep' is never released, nor are it's ancestors.
+    */
+   public void trim( Component keep ) {
+      Iterator<Container> iter = collapsed.keySet().iterator();
+
+      while( nodeCount > maximumNodeCount && iter.hasNext() ) {
+         Container container = iter.next();
+         iter.remove();
+
+         boolean onKeepPath = keep != null && (container == keep || container.isAncestorOf( keep ));
+
+         if( !onKeepPath && watched.containsKey( container )) {
+            TreePath path = getPath( container );
+            unwatchSubtree( container );
+            fireTreeStructureChanged( path );
+
+            // unwatchSubtree() removes entries from 'collapsed',
+            // so start over with a fresh iterator.
+            iter = collapsed.keySet().iterator();
+         }
+      }
+   }
+
+   private void watch( Container container ) {
+      if( !watched.containsKey( container )) {
+         int count = container.getComponentCount();
+         ArrayList<Component> children = new ArrayList<Component>( count );
+         for( int i = 0; i < count; ++i ) {
+            children.add( container.getComponent( i ));
+         }
+
+         watched.put( container, children );
+         nodeCount += count;
+         container.addContainerListener( containerListener );
+      }
+   }
+
+   private void unwatch( Container container ) {
+      ArrayList<Component> children = watched.remove( container );
+      if( children != null ) {
+         nodeCount -= children.size();
+         container.removeContainerListener( containerListener );
+      }
+      collapsed.remove( container );
+   }
+
+   /**
+    * Releases the component, if it's a watched container, 
+    * along with every watched container below it.
+    */
+   private void unwatchSubtree( Component component ) {
+      ArrayList<Container> subtree = new ArrayList<Container>();
+      for( Container iter : watched.keySet() ) {
+         if( iter == component || (component instanceof Container && ((Container)component).isAncestorOf( iter ))) {
+            subtree.add( iter );
+         }
+      }
+
+      for( Container container : subtree ) {
+         unwatch( container );
+      }
+   }
+
+   @Override
+   public Object getRoot() {
+      return root;
+   }
+
+   @Override
+   public Object getChild( Object parent, int index ) {
+      return ((Container)parent).getComponent( index );
+   }
+
+   @Override
+   public int getChildCount( Object parent ) {
+      return parent instanceof Container 
+         ? ((Container)parent).getComponentCount()
+         : 0;
+   }
+
+   @Override
+   public boolean isLeaf( Object node ) {
+      return getChildCount( node ) == 0;
+   }
+
+   @Override
+   public int getIndexOfChild( Object parent, Object child ) {
+      if( parent instanceof Container && child instanceof Component && ((Component)child).getParent() == parent ) {
+         return ((Container)parent).getComponentZOrder( (Component)child );
+      }
+      return -1;
+   }
+
+   @Override
+   public void valueForPathChanged( TreePath path, Object newValue ) { /* noop */ }
+
+   @Override
+   public void addTreeModelListener( TreeModelListener listener ) {
+      listeners.add( listener );
+   }
+
+   @Override
+   public void removeTreeModelListener( TreeModelListener listener ) {
+      listeners.remove( listener );
+   }
+
+   protected void fireTreeStructureChanged( TreePath path ) {
+      TreeModelEvent event = new TreeModelEvent( this, path );
+      for( TreeModelListener listener : listeners ) {
+         listener.treeStructureChanged( event );
+      }
+   }
+
+   protected void fireTreeNodesInserted( TreePath parent, int index, Component child ) {
+      TreeModelEvent event = new TreeModelEvent( this, parent, new int[] { index }, new Object[] { child });
+      for( TreeModelListener listener : listeners ) {
+         listener.treeNodesInserted( event );
+      }
+   }
+
+   protected void fireTreeNodesRemoved( TreePath parent, int index, Component child ) {
+      TreeModelEvent event = new TreeModelEvent( this, parent, new int[] { index }, new Object[] { child });
+      for( TreeModelListener listener : listeners ) {
+         listener.treeNodesRemoved( event );
+      }
+   }
+
+   /**
+    * Applies the additions and removals of watched containers to the tree.
+    */
+   private final class WatchListener implements ContainerListener {
+      @Override
+      public void componentAdded( ContainerEvent e ) {
+         Container container = e.getContainer();
+         ArrayList<Component> children = watched.get( container );
+         TreePath path = getPath( container );
+         if( children == null || path == null ) {
+            return;
+         }
+
+         Component child = e.getChild();
+         int index = container.getComponentZOrder( child );
+         if( index < 0 || index > children.size() ) {
+            index = children.size();
+         }
+
+         children.add( index, child );
+         ++nodeCount;
+
+         fireTreeNodesInserted( path, index, child );
+      }
+
+      @Override
+      public void componentRemoved( ContainerEvent e ) {
+         Container container = e.getContainer();
+         ArrayList<Component> children = watched.get( container );
+         TreePath path = getPath( container );
+         if( children == null || path == null ) {
+            return;
+         }
+
+         // Components don't override equals(), so indexOf() compares identity.
+         Component child = e.getChild();
+         int index = children.indexOf( child );
+         if( index < 0 ) {
+            return;
+         }
+
+         children.remove( index );
+         --nodeCount;
+
+         unwatchSubtree( child );
+         fireTreeNodesRemoved( path, index, child );
+      }
+   }
+}
@@ -20,19 +20,19 @@ import java.awt.Color;
 import java.awt.Component;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.HashMap;
 
 import javax.swing.JComponent;
 
 public class BackgroundDecorator implements IComponentDecorator {
    private static final String BACKGROUND_PROPERTY = "background";
    private static final String OPAQUE_PROPERTY = "opaque";
+   private static final String COLOR_KEY = "BackgroundDecorator.oldColor";
+   private static final String OPAQUE_KEY = "BackgroundDecorator.oldOpaque";
 
    private final BackgroundChangeListener backgroundListener = new BackgroundChangeListener();
    private final OpaqueChangeListener opaqueListener = new OpaqueChangeListener();
 
-   private final HashMap<Component, Color> undecoratedColor = new HashMap<Component, Color>();
-   private final HashMap<Component, Boolean> undecoratedOpaque = new HashMap<Component, Boolean>();
+   private final DecorationState state = DecorationState.getShared();
 
    private Color color;
 
@@ -41,14 +41,14 @@ public class BackgroundDecorator implements IComponentDecorator {
    }
 
    public void decorate(Component c) {
-      undecoratedColor.put( c, c.getBackground() );
+      state.put( c, COLOR_KEY, c.getBackground() );
       c.setBackground( color );
       c.addPropertyChangeListener( BACKGROUND_PROPERTY, backgroundListener );
 
       if( c instanceof JComponent ) {
          JComponent jc = (JComponent)c;
 
-         undecoratedOpaque.put( c, jc.isOpaque() );
+         state.put( c, OPAQUE_KEY, jc.isOpaque() );
          jc.setOpaque( true );
          jc.addPropertyChangeListener( OPAQUE_PROPERTY, opaqueListener );
       }
@@ -56,15 +56,17 @@ public class BackgroundDecorator implements IComponentDecorator {
 
    public void undecorate(Component c) {
       c.removePropertyChangeListener( BACKGROUND_PROPERTY, backgroundListener );
-      c.setBackground( undecoratedColor.get( c ));
-      undecoratedColor.remove( c );
+      if( state.contains( c, COLOR_KEY )) {
+         c.setBackground( (Color)state.remove( c, COLOR_KEY ));
+      }
 
       if( c instanceof JComponent ) {
          JComponent jc = (JComponent)c;
 
          jc.removePropertyChangeListener( OPAQUE_PROPERTY, opaqueListener );
-         jc.setOpaque( undecoratedOpaque.get( c ));
-         undecoratedOpaque.remove( c );
+         if( state.contains( c, OPAQUE_KEY )) {
+            jc.setOpaque( (Boolean)state.remove( c, OPAQUE_KEY ));
+         }
       }
    }
 
@@ -72,7 +74,7 @@ public class BackgroundDecorator implements IComponentDecorator {
       public void propertyChange(PropertyChangeEvent evt) {
          if( evt.getSource() instanceof Component ) {
             Component c = (Component) evt.getSource();
-            undecoratedColor.put( c, c.getBackground() );
+            state.put( c, COLOR_KEY, c.getBackground() );
 
             c.removePropertyChangeListener( BACKGROUND_PROPERTY, backgroundListener );
             c.setBackground( color );
@@ -85,7 +87,7 @@ public class BackgroundDecorator implements IComponentDecorator {
       public void propertyChange(PropertyChangeEvent evt) {
          if( evt.getSource() instanceof JComponent ) {
             JComponent jc = (JComponent)evt.getSource();
-            undecoratedOpaque.put( jc, jc.isOpaque() );
+            state.put( jc, OPAQUE_KEY, jc.isOpaque() );
 
             jc.removePropertyChangeListener( OPAQUE_PROPERTY, opaqueListener );
             jc.setOpaque( true );
@@ -29,6 +29,7 @@ public class BorderDecorator implements IComponentDecorator {
    private static final String BORDER_KEY = "BorderDecorator.oldBorder";
    private static final String BORDER_PROPERTY = "border";
    private final BorderChangeListener listener = new BorderChangeListener();
+   private final DecorationState state = DecorationState.getShared();
 
    private int thickness;
    private Color color;
@@ -50,7 +51,7 @@ public class BorderDecorator implements IComponentDecorator {
       if( c instanceof JComponent ) {
          JComponent jc = (JComponent)c;
 
-         jc.putClientProperty( BORDER_KEY, jc.getBorder() );
+         state.put( jc, BORDER_KEY, jc.getBorder() );
 
          jc.setBorder( BorderFactory.createCompoundBorder(
                BorderFactory.createLineBorder( color, thickness ),
@@ -67,9 +68,9 @@ public class BorderDecorator implements IComponentDecorator {
          JComponent jc = (JComponent)c;
          c.removePropertyChangeListener( BORDER_PROPERTY, listener );
 
-         jc.setBorder( (Border)jc.getClientProperty( BORDER_KEY ));
-
-         jc.putClientProperty( BORDER_KEY, null );
+         if( state.contains( jc, BORDER_KEY )) {
+            jc.setBorder( (Border)state.remove( jc, BORDER_KEY ));
+         }
       }
    }
 
@@ -78,7 +79,7 @@ public class BorderDecorator implements IComponentDecorator {
          if( evt.getSource() instanceof JComponent ) {
             JComponent comp = (JComponent)evt.getSource();
 
-            comp.putClientProperty( BORDER_KEY, evt.getNewValue() );
+            state.put( comp, BORDER_KEY, evt.getNewValue() );
 
             comp.removePropertyChangeListener( BORDER_PROPERTY, listener );
             comp.setBorder( BorderFactory.createCompoundBorder(
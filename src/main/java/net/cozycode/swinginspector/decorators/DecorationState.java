@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.decorators;
+
+import java.awt.Component;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.cozycode.swinginspector.util.WeakIdentityMap;
+
+/**
+ * The state decorators need to restore a component, such as it's original
+ * border or background, shared by all IComponentDecorators.<br />
+ * <br />
+ * Components are held weakly, so one which is thrown away without being
+ * undecorated (when it's dialog closes, say) can still be collected, along
+ * with whatever was saved for it.  Each decorator stores it's values under 
+ * it's own keys.  Values must not refer to their component.  Like the rest 
+ * of Swing, this is only to be used from the event dispatch thread.
+ */
+public final class DecorationState {
+   private static final DecorationState shared = new DecorationState();
+
+   private final WeakIdentityMap<Component, Map<Object, Object>> state = new WeakIdentityMap<Component, Map<Object, Object>>();
+
+   public static DecorationState getShared() {
+      return shared;
+   }
+
+   public Object get( Component c, Object key ) {
+      Map<Object, Object> values = state.get( c );
+      return values == null ? null : values.get( key );
+   }
+
+   public boolean contains( Component c, Object key ) {
+      Map<Object, Object> values = state.get( c );
+      return values != null && values.containsKey( key );
+   }
+
+   public void put( Component c, Object key, Object value ) {
+      Map<Object, Object> values = state.get( c );
+      if( values == null ) {
+         values = new HashMap<Object, Object>();
+         state.put( c, values );
+      }
+      values.put( key, value );
+   }
+
+   public Object remove( Component c, Object key ) {
+      Map<Object, Object> values = state.get( c );
+      if( values == null ) {
+         return null;
+      }
+
+      Object prev = values.remove( key );
+      if( values.isEmpty() ) {
+         state.remove( c );
+      }
+      return prev;
+   }
+
+   /** The number of decorated components which are still reachable. */
+   public int getLiveCount() {
+      return state.size();
+   }
+
+   /** The number of decorated components which were collected without being undecorated. */
+   public int getCollectedCount() {
+      return state.getCollectedCount();
+   }
+}
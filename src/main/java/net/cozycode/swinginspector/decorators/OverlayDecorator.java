@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.decorators;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.HierarchyBoundsListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.JLayeredPane;
+import javax.swing.JRootPane;
+import javax.swing.SwingUtilities;
+
+import net.cozycode.swinginspector.util.WeakIdentityMap;
+
+/**
+ * Highlights components by painting over them instead of changing them.<br />
+ * <br />
+ * Each window gets a transparent overlay in the top layer of it's 
+ * JLayeredPane which covers the whole pane and ignores the mouse.  Moving the
+ * highlight only repaints the old and new rectangles.  The target's border,
+ * colors and insets are never touched, so selecting a component doesn't 
+ * revalidate or reflow the application.
+ */
+public class OverlayDecorator implements IComponentDecorator {
+   private static final String OVERLAY_KEY = "OverlayDecorator.overlay";
+   private static final String STATE_KEY = "OverlayDecorator.highlight";
+   private static final Integer OVERLAY_LAYER = Integer.valueOf( JLayeredPane.DRAG_LAYER.intValue() + 1 );
+
+   private final TargetListener targetListener = new TargetListener();
+   private final LayeredPaneListener layeredPaneListener = new LayeredPaneListener();
+
+   /** 
+    * Holds a weak reference to the overlay each decorated component is painted 
+    * on, or null when it isn't in a JRootPane.  The overlay refers to the 
+    * window, so it can't be held strongly.
+    */
+   private final DecorationState state = DecorationState.getShared();
+
+   private int thickness;
+   private Color color;
+
+   public OverlayDecorator( Color color, int thickness ) {
+      this.color = color;
+      this.thickness = thickness;
+   }
+
+   public void setColor( Color color ) {
+      this.color = color;
+   }
+
+   public void setThickness( int thickness ) {
+      this.thickness = thickness;
+   }
+
+   public void decorate( Component c ) {
+      if( state.contains( c, STATE_KEY )) {
+         return;
+      }
+
+      state.put( c, STATE_KEY, null );
+      c.addComponentListener( targetListener );
+      c.addHierarchyBoundsListener( targetListener );
+      c.addHierarchyListener( targetListener );
+      relocate( c );
+   }
+
+   public void undecorate( Component c ) {
+      if( !state.contains( c, STATE_KEY )) {
+         return;
+      }
+
+      c.removeComponentListener( targetListener );
+      c.removeHierarchyBoundsListener( targetListener );
+      c.removeHierarchyListener( targetListener );
+
+      Overlay overlay = getOverlay( c );
+      state.remove( c, STATE_KEY );
+      if( overlay != null ) {
+         overlay.unhighlight( c );
+      }
+   }
+
+   /** Moves the highlight to the target's current bounds, and window if it has changed. */
+   private void relocate( Component c ) {
+      JRootPane root = SwingUtilities.getRootPane( c );
+      Overlay overlay = getOverlay( c );
+
+      if( overlay != null && overlay.root != root ) {
+         overlay.unhighlight( c );
+         overlay = null;
+      }
+      if( overlay == null && root != null ) {
+         overlay = getOverlay( root );
+      }
+
+      state.put( c, STATE_KEY, overlay == null ? null : new WeakReference<Overlay>( overlay ));
+      if( overlay != null ) {
+         overlay.highlight( c );
+      }
+   }
+
+   /** The overlay the component is currently highlighted on, if any. */
+   private Overlay getOverlay( Component c ) {
+      Object ref = state.get( c, STATE_KEY );
+      return ref == null ? null : (Overlay)((WeakReference<?>)ref).get();
+   }
+
+   private Overlay getOverlay( JRootPane root ) {
+      Overlay overlay = (Overlay)root.getClientProperty( OVERLAY_KEY );
+      if( overlay == null ) {
+         overlay = new Overlay( root );
+         root.putClientProperty( OVERLAY_KEY, overlay );
+      }
+
+      if( overlay.getParent() == null ) {
+         JLayeredPane layered = root.getLayeredPane();
+         layered.add( overlay, OVERLAY_LAYER );
+         layered.addComponentListener( layeredPaneListener );
+         overlay.setBounds( 0, 0, layered.getWidth(), layered.getHeight() );
+      }
+      return overlay;
+   }
+
+   /**
+    * Removes an empty overlay from it's window.  This is done later since
+    * moving the highlight within a window undecorates the old target just
+    * before decorating the new one.
+    */
+   private void scheduleRemoval( final Overlay overlay ) {
+      SwingUtilities.invokeLater( new Runnable() {
+         public void run() {
+            Container layered = overlay.getParent();
+            if( overlay.isEmpty() && layered != null ) {
+               layered.removeComponentListener( layeredPaneListener );
+               layered.remove( overlay );
+               overlay.root.putClientProperty( OVERLAY_KEY, null );
+            }
+         }
+      });
+   }
+
+   private final class Overlay extends JComponent {
+      private static final long serialVersionUID = 1L;
+
+      private final JRootPane root;
+
+      /** The area covered by each highlight, in the overlay's coordinates. */
+      private final WeakIdentityMap<Component, Rectangle> highlights = new WeakIdentityMap<Component, Rectangle>();
+
+      public Overlay( JRootPane root ) {
+         this.root = root;
+         setOpaque( false );
+      }
+
+      public void highlight( Component c ) {
+         Rectangle next = getVisibleBounds( c );
+         Rectangle prev = highlights.put( c, next );
+         if( !next.equals( prev )) {
+            repaintArea( prev );
+            repaintArea( next );
+         }
+      }
+
+      public void unhighlight( Component c ) {
+         repaintArea( highlights.remove( c ));
+         if( highlights.isEmpty() ) {
+            scheduleRemoval( this );
+         }
+      }
+
+      public boolean isEmpty() {
+         return highlights.isEmpty();
+      }
+
+      /** Lets the mouse through to the application beneath. */
+      @Override
+      public boolean contains( int x, int y ) {
+         return false;
+      }
+
+      @Override
+      protected void paintComponent( Graphics g ) {
+         List<Rectangle> rects = highlights.values();
+
+         g.setColor( new Color( color.getRed(), color.getGreen(), color.getBlue(), 48 ));
+         for( Rectangle r : rects ) {
+            g.fillRect( r.x, r.y, r.width, r.height );
+         }
+
+         g.setColor( color );
+         for( Rectangle r : rects ) {
+            for( int i = 0; i < thickness && i * 2 < Math.min( r.width, r.height ); ++i ) {
+               g.drawRect( r.x + i, r.y + i, r.width - i * 2 - 1, r.height - i * 2 - 1 );
+            }
+         }
+      }
+
+      private void repaintArea( Rectangle r ) {
+         if( r != null && !r.isEmpty() ) {
+            repaint( r.x, r.y, r.width, r.height );
+         }
+      }
+
+      /** The part of the component which isn't clipped by it's ancestors. */
+      private Rectangle getVisibleBounds( Component c ) {
+         if( !c.isShowing() || getParent() == null ) {
+            return new Rectangle();
+         }
+
+         Container layered = getParent();
+         Rectangle visible = new Rectangle( 0, 0, c.getWidth(), c.getHeight() );
+
+         if( SwingUtilities.isDescendingFrom( c, layered )) {
+            for( Component iter = c; iter != layered; iter = iter.getParent() ) {
+               visible.translate( iter.getX(), iter.getY() );
+               Container parent = iter.getParent();
+               visible = visible.intersection( new Rectangle( 0, 0, parent.getWidth(), parent.getHeight() ));
+            }
+         }
+         else {
+            // The window or root pane itself
+            visible = SwingUtilities.convertRectangle( c, visible, layered );
+            visible = visible.intersection( new Rectangle( 0, 0, layered.getWidth(), layered.getHeight() ));
+         }
+
+         return visible.isEmpty() ? new Rectangle() : visible;
+      }
+   }
+
+   private final class TargetListener extends ComponentAdapter implements HierarchyBoundsListener, HierarchyListener {
+      @Override
+      public void componentMoved( ComponentEvent e ) {
+         relocate( e.getComponent() );
+      }
+
+      @Override
+      public void componentResized( ComponentEvent e ) {
+         relocate( e.getComponent() );
+      }
+
+      @Override
+      public void componentShown( ComponentEvent e ) {
+         relocate( e.getComponent() );
+      }
+
+      @Override
+      public void componentHidden( ComponentEvent e ) {
+         relocate( e.getComponent() );
+      }
+
+      public void ancestorMoved( HierarchyEvent e ) {
+         relocate( e.getComponent() );
+      }
+
+      public void ancestorResized( HierarchyEvent e ) {
+         relocate( e.getComponent() );
+      }
+
+      public void hierarchyChanged( HierarchyEvent e ) {
+         if(( e.getChangeFlags() & ( HierarchyEvent.PARENT_CHANGED | HierarchyEvent.SHOWING_CHANGED )) != 0 ) {
+            relocate( e.getComponent() );
+         }
+      }
+   }
+
+   /** Keeps each overlay covering the whole of it's layered pane. */
+   private final class LayeredPaneListener extends ComponentAdapter {
+      @Override
+      public void componentResized( ComponentEvent e ) {
+         Component layered = e.getComponent();
+         Object overlay = ((JComponent)layered).getRootPane().getClientProperty( OVERLAY_KEY );
+         if( overlay instanceof Overlay ) {
+            ((Overlay)overlay).setBounds( 0, 0, layered.getWidth(), layered.getHeight() );
+         }
+      }
+   }
+
+   @Override
+   public String toString() {
+      return "Overlay";
+   }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.events;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ContainerEvent;
+import java.awt.event.FocusEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.cozycode.swinginspector.util.ComponentSlots;
+
+/**
+ * A fixed size log of the most recent AWT events.<br />
+ * <br />
+ * A single AWTEventListener writes each event into a ring of preallocated 
+ * primitive arrays: it's id, when it was seen, the identity of it's source
+ * and a few of it's fields.  Events aren't retained, and sources are only 
+ * held weakly, through ComponentSlots, so logging doesn't allocate except 
+ * when a component or class is seen for the first time.<br />
+ * <br />
+ * Events are only written on the event dispatch thread, so there is a single
+ * writer and no locking.  Events dispatched on other threads, such as the
+ * ContainerEvents of a UI built off the EDT, are counted but not logged.  
+ * The writer publishes each entry by advancing the volatile cursor.  Readers
+ * use sequence numbers and call isAvailable() after reading an entry, since 
+ * the writer may have lapped them and overwritten it meanwhile.<br />
+ * <br />
+ * Component and container events are only logged once asked for with 
+ * setLoggingComponents(), since listening for them makes AWT create and 
+ * post an event for every move, resize, add and remove in the application.<br />
+ * <br />
+ * Events from the ignored window, and from the windows it owns, aren't 
+ * logged, so that using the inspector doesn't push the application's 
+ * events out of the log.
+ */
+public class EventLog {
+   public static final int DEFAULT_CAPACITY = 1 << 15;
+
+   public static final long EVENT_MASK = 
+        AWTEvent.MOUSE_EVENT_MASK 
+      | AWTEvent.MOUSE_MOTION_EVENT_MASK 
+      | AWTEvent.MOUSE_WHEEL_EVENT_MASK
+      | AWTEvent.KEY_EVENT_MASK 
+      | AWTEvent.FOCUS_EVENT_MASK 
+      | AWTEvent.WINDOW_EVENT_MASK 
+      | AWTEvent.WINDOW_FOCUS_EVENT_MASK 
+      | AWTEvent.WINDOW_STATE_EVENT_MASK;
+
+   /** Added to EVENT_MASK while logging components. */
+   public static final long COMPONENTS_MASK = AWTEvent.COMPONENT_EVENT_MASK | AWTEvent.CONTAINER_EVENT_MASK;
+
+   private final int mask;
+   private final LogListener listener = new LogListener();
+
+   private final long[] times;
+   private final int[] ids;
+   private final int[] classes;
+   private final int[] sourceSlots;
+   private final int[] sourceHashes;
+   private final int[] as;
+   private final int[] bs;
+   private final int[] cs;
+   private final int[] ds;
+
+   /** The sources and the components some events refer to, such as a ContainerEvent's child. */
+   private final ComponentSlots components = new ComponentSlots( 1024 );
+
+   /** The classes of the sources, indexed by the values in 'classes'. */
+   private final ArrayList<Class<?>> classTable = new ArrayList<Class<?>>();
+   private final IdentityHashMap<Class<?>, Integer> classIndex = new IdentityHashMap<Class<?>, Integer>();
+
+   /** The sequence number the next event will be written at. */
+   private volatile long cursor = 0;
+   private final AtomicLong dropped = new AtomicLong();
+   private boolean installed = false;
+   private boolean loggingComponents = false;
+   private Window ignored = null;
+
+   private final long baseNanos = System.nanoTime();
+   private final long baseMillis = System.currentTimeMillis();
+
+
+   public EventLog() {
+      this( DEFAULT_CAPACITY );
+   }
+
+   /**
+    * @param capacity - the number of events kept, rounded up to a power of two
+    */
+   public EventLog( int capacity ) {
+      int size = Integer.highestOneBit( Math.max( 2, capacity - 1 )) << 1;
+      mask = size - 1;
+      times = new long[ size ];
+      ids = new int[ size ];
+      classes = new int[ size ];
+      sourceSlots = new int[ size ];
+      sourceHashes = new int[ size ];
+      as = new int[ size ];
+      bs = new int[ size ];
+      cs = new int[ size ];
+      ds = new int[ size ];
+   }
+
+   public void install() {
+      if( !installed ) {
+         Toolkit.getDefaultToolkit().addAWTEventListener( listener, 
+            loggingComponents ? EVENT_MASK | COMPONENTS_MASK : EVENT_MASK );
+         installed = true;
+      }
+   }
+
+   public void uninstall() {
+      if( installed ) {
+         Toolkit.getDefaultToolkit().removeAWTEventListener( listener );
+         installed = false;
+      }
+   }
+
+   public boolean isInstalled() {
+      return installed;
+   }
+
+   /** Whether component and container events are logged, which is off by default. */
+   public void setLoggingComponents( boolean logging ) {
+      if( logging != loggingComponents ) {
+         loggingComponents = logging;
+         if( installed ) {
+            uninstall();
+            install();
+         }
+      }
+   }
+
+   public boolean isLoggingComponents() {
+      return loggingComponents;
+   }
+
+   /** 
+    * Events from components in this window, or in the windows it owns, are
+    * not logged.  This is meant for keeping the inspector's own events out.
+    */
+   public void setIgnoredWindow( Window window ) {
+      this.ignored = window;
+   }
+
+   public int getCapacity() {
+      return mask + 1;
+   }
+
+   /** The sequence number of the next event, which is also the number of events logged. */
+   public long getCursor() {
+      return cursor;
+   }
+
+   /** The number of events which weren't logged because they were dispatched off the EDT. */
+   public long getDropped() {
+      return dropped.get();
+   }
+
+   /** The sequence number of the oldest event still in the log. */
+   public long getOldest() {
+      return Math.max( 0, cursor - getCapacity() );
+   }
+
+   /** Whether the event hasn't been overwritten yet.  Check after reading it. */
+   public boolean isAvailable( long seq ) {
+      long c = cursor;
+      return seq < c && seq >= c - getCapacity();
+   }
+
+   private void record( AWTEvent event ) {
+      long seq = cursor;
+      int i = (int)( seq & mask );
+
+      Object source = event.getSource();
+      times[i] = System.nanoTime();
+      ids[i] = event.getID();
+      classes[i] = indexOf( source.getClass() );
+      sourceSlots[i] = source instanceof Component ? slotOf( (Component)source ) : -1;
+      sourceHashes[i] = System.identityHashCode( source );
+
+      int a = 0, b = 0, c = 0, d = 0;
+      if( event instanceof MouseEvent ) {
+         MouseEvent e = (MouseEvent)event;
+         a = e.getX();
+         b = e.getY();
+         c = e.getModifiersEx();
+         d = e.getButton() | e.getClickCount() << 8;
+         if( event instanceof MouseWheelEvent ) {
+            d |= ((MouseWheelEvent)event).getWheelRotation() << 16;
+         }
+      }
+      else if( event instanceof KeyEvent ) {
+         KeyEvent e = (KeyEvent)event;
+         a = e.getKeyCode();
+         b = e.getKeyChar();
+         c = e.getModifiersEx();
+         d = e.getKeyLocation();
+      }
+      else if( event instanceof FocusEvent ) {
+         FocusEvent e = (FocusEvent)event;
+         a = e.isTemporary() ? 1 : 0;
+         b = e.getOppositeComponent() != null ? slotOf( e.getOppositeComponent() ) : -1;
+         c = System.identityHashCode( e.getOppositeComponent() );
+      }
+      else if( event instanceof WindowEvent ) {
+         WindowEvent e = (WindowEvent)event;
+         a = e.getOldState();
+         b = e.getNewState();
+      }
+      else if( event instanceof ContainerEvent ) {
+         ContainerEvent e = (ContainerEvent)event;
+         b = slotOf( e.getChild() );
+         c = System.identityHashCode( e.getChild() );
+      }
+      else if( event instanceof ComponentEvent ) {
+         Component comp = ((ComponentEvent)event).getComponent();
+         a = comp.getX();
+         b = comp.getY();
+         c = comp.getWidth();
+         d = comp.getHeight();
+      }
+      as[i] = a;
+      bs[i] = b;
+      cs[i] = c;
+      ds[i] = d;
+
+      cursor = seq + 1;
+   }
+
+   private boolean isIgnored( Object source ) {
+      if( ignored == null || !( source instanceof Component )) {
+         return false;
+      }
+
+      Component c = (Component)source;
+      while( c != null && !( c instanceof Window )) {
+         c = c.getParent();
+      }
+      for( Window w = (Window)c; w != null; w = w.getOwner() ) {
+         if( w == ignored ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private int slotOf( Component c ) {
+      int slot = components.find( c );
+      return slot >= 0 ? slot : components.add( c );
+   }
+
+   private int indexOf( Class<?> type ) {
+      Integer index = classIndex.get( type );
+      if( index == null ) {
+         index = classTable.size();
+         classTable.add( type );
+         classIndex.put( type, index );
+      }
+      return index;
+   }
+
+   // Readers, all of which are only valid until the entry is overwritten.
+
+   public int getId( long seq ) {
+      return ids[ (int)( seq & mask ) ];
+   }
+
+   /** When the event was logged, in System.currentTimeMillis() terms. */
+   public long getTimeMillis( long seq ) {
+      return baseMillis + ( times[ (int)( seq & mask ) ] - baseNanos ) / 1000000;
+   }
+
+   /** When the event was logged, in System.nanoTime() terms. */
+   public long getTimeNanos( long seq ) {
+      return times[ (int)( seq & mask ) ];
+   }
+
+   public Class<?> getSourceClass( long seq ) {
+      return classTable.get( classes[ (int)( seq & mask ) ] );
+   }
+
+   /** The class table index of the source's class, for cheap filtering. */
+   public int getSourceClassIndex( long seq ) {
+      return classes[ (int)( seq & mask ) ];
+   }
+
+   /** The indexes of the logged classes whose name contains the text. */
+   public List<Integer> findClasses( String text ) {
+      ArrayList<Integer> found = new ArrayList<Integer>();
+      for( int i = 0; i < classTable.size(); ++i ) {
+         if( classTable.get( i ).getName().toLowerCase().contains( text.toLowerCase() )) {
+            found.add( i );
+         }
+      }
+      return found;
+   }
+
+   /** The event's source, or null if it wasn't a component or has been collected. */
+   public Component getSource( long seq ) {
+      int i = (int)( seq & mask );
+      return resolve( sourceSlots[i], sourceHashes[i] );
+   }
+
+   public int getSourceHash( long seq ) {
+      return sourceHashes[ (int)( seq & mask ) ];
+   }
+
+   /** The opposite component of a FocusEvent or the child of a ContainerEvent, if it's still around. */
+   public Component getOther( long seq ) {
+      int i = (int)( seq & mask );
+      return resolve( bs[i], cs[i] );
+   }
+
+   public int getA( long seq ) {
+      return as[ (int)( seq & mask ) ];
+   }
+
+   public int getB( long seq ) {
+      return bs[ (int)( seq & mask ) ];
+   }
+
+   public int getC( long seq ) {
+      return cs[ (int)( seq & mask ) ];
+   }
+
+   public int getD( long seq ) {
+      return ds[ (int)( seq & mask ) ];
+   }
+
+   /** Slots are reused once their component is collected, so check it's still the same one. */
+   private Component resolve( int slot, int hash ) {
+      Component c = slot >= 0 ? components.get( slot ) : null;
+      return c != null && System.identityHashCode( c ) == hash ? c : null;
+   }
+
+   /** Forgets all logged events. */
+   public void clear() {
+      cursor = 0;
+   }
+
+   /** Describes the event's fields, decoded according to it's id. */
+   public String describe( long seq ) {
+      int id = getId( seq );
+      int a = getA( seq ), b = getB( seq ), c = getC( seq ), d = getD( seq );
+
+      if( id >= MouseEvent.MOUSE_FIRST && id <= MouseEvent.MOUSE_LAST ) {
+         String text = "("+ a +", "+ b +")";
+         if(( d & 0xFF ) != 0 ) { text += " button "+ ( d & 0xFF ); }
+         if((( d >> 8 ) & 0xFF ) != 0 ) { text += " clicks "+ (( d >> 8 ) & 0xFF ); }
+         if( id == MouseEvent.MOUSE_WHEEL ) { text += " rotation "+ ( d >> 16 ); }
+         if( c != 0 ) { text += " "+ InputEvent.getModifiersExText( c ); }
+         return text;
+      }
+      if( id >= KeyEvent.KEY_FIRST && id <= KeyEvent.KEY_LAST ) {
+         String text = id == KeyEvent.KEY_TYPED ? "'"+ (char)b +"'" : KeyEvent.getKeyText( a );
+         if( c != 0 ) { text = InputEvent.getModifiersExText( c ) +"+"+ text; }
+         return text;
+      }
+      if( id >= FocusEvent.FOCUS_FIRST && id <= FocusEvent.FOCUS_LAST ) {
+         Component other = getOther( seq );
+         return ( a != 0 ? "temporary, " : "" ) +"opposite "+ ( other != null ? other.getClass().getSimpleName() : "none" );
+      }
+      if( id == WindowEvent.WINDOW_STATE_CHANGED ) {
+         return "state "+ a +" to "+ b;
+      }
+      if( id >= ContainerEvent.CONTAINER_FIRST && id <= ContainerEvent.CONTAINER_LAST ) {
+         Component other = getOther( seq );
+         return "child "+ ( other != null ? other.getClass().getSimpleName() : "collected" );
+      }
+      if( id >= ComponentEvent.COMPONENT_FIRST && id <= ComponentEvent.COMPONENT_LAST ) {
+         return "bounds ("+ a +", "+ b +", "+ c +", "+ d +")";
+      }
+      return "";
+   }
+
+   private final class LogListener implements AWTEventListener {
+      public void eventDispatched( AWTEvent event ) {
+         if( EventQueue.isDispatchThread() ) {
+            if( !isIgnored( event.getSource() )) {
+               record( event );
+            }
+         }
+         else {
+            dropped.incrementAndGet();
+         }
+      }
+   }
+}
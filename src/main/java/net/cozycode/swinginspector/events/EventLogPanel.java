@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.events;
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ContainerEvent;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.WindowEvent;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Shows the events in an EventLog, filtered by kind and by text matching
+ * the source's class or the event's name.  Only the sequence numbers of 
+ * the matching events are copied out of the log, each row is decoded when 
+ * the table asks for it.  Double clicking a row inspects it's source.
+ */
+public class EventLogPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+   private static final int REFRESH_DELAY = 500;
+
+   private static final int MOUSE = 1 << 0;
+   private static final int MOTION = 1 << 1;
+   private static final int KEYS = 1 << 2;
+   private static final int FOCUS = 1 << 3;
+   private static final int WINDOWS = 1 << 4;
+   private static final int COMPONENTS = 1 << 5;
+
+   private final EventLog log;
+   private final IClosure<Component> inspector;
+   private final Timer refreshTimer = new Timer( REFRESH_DELAY, new RefreshListener() );
+
+   private final EventTableModel model = new EventTableModel();
+   private final JTable table = new JTable( model );
+   private final JTextField filter = new JTextField( 15 );
+   private final JCheckBox logging = new JCheckBox( "Logging" );
+   private final JCheckBox loggingComponents = new JCheckBox( "Log Components" );
+   private final JCheckBox paused = new JCheckBox( "Pause" );
+   private final JCheckBox mouse = new JCheckBox( "Mouse", true );
+   private final JCheckBox motion = new JCheckBox( "Motion", false );
+   private final JCheckBox keys = new JCheckBox( "Keys", true );
+   private final JCheckBox focus = new JCheckBox( "Focus", true );
+   private final JCheckBox windows = new JCheckBox( "Windows", true );
+   private final JCheckBox components = new JCheckBox( "Components", true );
+   private final JLabel summary = new JLabel();
+
+   private long shownCursor = -1;
+
+   /**
+    * @param inspector - called with the source of a row which is double clicked
+    */
+   public EventLogPanel( EventLog log, IClosure<Component> inspector ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][][grow,fill]" ));
+      this.log = log;
+      this.inspector = inspector;
+
+      ActionListener refilter = new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            refresh( true );
+         }
+      };
+      for( JCheckBox box : new JCheckBox[] { mouse, motion, keys, focus, windows, components, paused } ) {
+         box.addActionListener( refilter );
+      }
+      filter.getDocument().addDocumentListener( new FilterListener() );
+
+      logging.setSelected( log.isInstalled() );
+      logging.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            if( logging.isSelected() ) {
+               EventLogPanel.this.log.install();
+            }
+            else {
+               EventLogPanel.this.log.uninstall();
+            }
+         }
+      });
+
+      loggingComponents.setSelected( log.isLoggingComponents() );
+      loggingComponents.setToolTipText( "Also log component and container events, which AWT only creates while they are logged" );
+      loggingComponents.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            EventLogPanel.this.log.setLoggingComponents( loggingComponents.isSelected() );
+         }
+      });
+
+      JButton clear = new JButton( "Clear" );
+      clear.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            EventLogPanel.this.log.clear();
+            refresh( true );
+         }
+      });
+
+      table.addMouseListener( new TableMouseListener() );
+      table.getColumnModel().getColumn( 0 ).setPreferredWidth( 60 );
+      table.getColumnModel().getColumn( 4 ).setPreferredWidth( 250 );
+
+      add( new JTitledSeparator( "Event Log" ), "split 5" );
+      add( logging, "growx 0" );
+      add( loggingComponents, "growx 0" );
+      add( paused, "growx 0" );
+      add( clear, "growx 0" );
+      add( new JLabel( "Filter" ), "split 8, growx 0" );
+      add( filter, "growx 0" );
+      add( mouse, "growx 0" );
+      add( motion, "growx 0" );
+      add( keys, "growx 0" );
+      add( focus, "growx 0" );
+      add( windows, "growx 0" );
+      add( components, "growx 0" );
+      add( summary );
+      add( new JScrollPane( table ));
+   }
+
+   @Override
+   public void addNotify() {
+      super.addNotify();
+      refresh( true );
+      refreshTimer.start();
+   }
+
+   @Override
+   public void removeNotify() {
+      refreshTimer.stop();
+      super.removeNotify();
+   }
+
+   /**
+    * Collects the sequence numbers of the matching events.
+    * Nothing is done if no events have arrived, unless forced.
+    */
+   private void refresh( boolean force ) {
+      long cursor = log.getCursor();
+      if(( paused.isSelected() || cursor == shownCursor ) && !force ) {
+         return;
+      }
+      if( paused.isSelected() && shownCursor >= 0 ) {
+         cursor = shownCursor;
+      }
+
+      int kinds = ( mouse.isSelected() ? MOUSE : 0 )
+         | ( motion.isSelected() ? MOTION : 0 )
+         | ( keys.isSelected() ? KEYS : 0 )
+         | ( focus.isSelected() ? FOCUS : 0 )
+         | ( windows.isSelected() ? WINDOWS : 0 )
+         | ( components.isSelected() ? COMPONENTS : 0 );
+
+      String text = filter.getText().trim().toLowerCase();
+      boolean[] classMatches = new boolean[ 0 ];
+      if( text.length() > 0 ) {
+         for( int index : log.findClasses( text )) {
+            if( index >= classMatches.length ) {
+               classMatches = Arrays.copyOf( classMatches, index + 1 );
+            }
+            classMatches[ index ] = true;
+         }
+      }
+
+      long oldest = Math.max( log.getOldest(), cursor - log.getCapacity() );
+      long[] rows = new long[ (int)( cursor - oldest ) ];
+      int count = 0;
+      for( long seq = oldest; seq < cursor; ++seq ) {
+         int id = log.getId( seq );
+         if(( kindOf( id ) & kinds ) == 0 ) {
+            continue;
+         }
+         if( text.length() > 0 ) {
+            int index = log.getSourceClassIndex( seq );
+            boolean matches = ( index < classMatches.length && classMatches[ index ] ) 
+               || nameOf( id ).toLowerCase().contains( text );
+            if( !matches ) {
+               continue;
+            }
+         }
+         rows[ count++ ] = seq;
+      }
+
+      // Drop anything the log overwrote while we were reading it
+      int first = 0;
+      while( first < count && !log.isAvailable( rows[ first ] )) {
+         ++first;
+      }
+
+      boolean atEnd = isShowingLastRow();
+      shownCursor = cursor;
+      model.setRows( Arrays.copyOfRange( rows, first, count ));
+      summary.setText( log.getCursor() +" events logged, "+ ( count - first ) +" shown, "+ 
+         log.getDropped() +" dispatched off the EDT not logged" );
+
+      if( atEnd && model.getRowCount() > 0 ) {
+         table.scrollRectToVisible( table.getCellRect( model.getRowCount() - 1, 0, true ));
+      }
+   }
+
+   private boolean isShowingLastRow() {
+      if( table.getRowCount() == 0 ) {
+         return true;
+      }
+      Rectangle visible = table.getVisibleRect();
+      return visible.y + visible.height >= table.getHeight() - table.getRowHeight();
+   }
+
+   private static int kindOf( int id ) {
+      if( id == MouseEvent.MOUSE_MOVED || id == MouseEvent.MOUSE_DRAGGED ) return MOTION;
+      if( id >= MouseEvent.MOUSE_FIRST && id <= MouseEvent.MOUSE_LAST ) return MOUSE;
+      if( id >= KeyEvent.KEY_FIRST && id <= KeyEvent.KEY_LAST ) return KEYS;
+      if( id >= FocusEvent.FOCUS_FIRST && id <= FocusEvent.FOCUS_LAST ) return FOCUS;
+      if( id >= WindowEvent.WINDOW_FIRST && id <= WindowEvent.WINDOW_LAST ) return WINDOWS;
+      return COMPONENTS;
+   }
+
+   private static String nameOf( int id ) {
+      switch( id ) {
+         case MouseEvent.MOUSE_CLICKED: return "MOUSE_CLICKED";
+         case MouseEvent.MOUSE_PRESSED: return "MOUSE_PRESSED";
+         case MouseEvent.MOUSE_RELEASED: return "MOUSE_RELEASED";
+         case MouseEvent.MOUSE_MOVED: return "MOUSE_MOVED";
+         case MouseEvent.MOUSE_ENTERED: return "MOUSE_ENTERED";
+         case MouseEvent.MOUSE_EXITED: return "MOUSE_EXITED";
+         case MouseEvent.MOUSE_DRAGGED: return "MOUSE_DRAGGED";
+         case MouseEvent.MOUSE_WHEEL: return "MOUSE_WHEEL";
+         case KeyEvent.KEY_PRESSED: return "KEY_PRESSED";
+         case KeyEvent.KEY_RELEASED: return "KEY_RELEASED";
+         case KeyEvent.KEY_TYPED: return "KEY_TYPED";
+         case FocusEvent.FOCUS_GAINED: return "FOCUS_GAINED";
+         case FocusEvent.FOCUS_LOST: return "FOCUS_LOST";
+         case WindowEvent.WINDOW_OPENED: return "WINDOW_OPENED";
+         case WindowEvent.WINDOW_CLOSING: return "WINDOW_CLOSING";
+         case WindowEvent.WINDOW_CLOSED: return "WINDOW_CLOSED";
+         case WindowEvent.WINDOW_ICONIFIED: return "WINDOW_ICONIFIED";
+         case WindowEvent.WINDOW_DEICONIFIED: return "WINDOW_DEICONIFIED";
+         case WindowEvent.WINDOW_ACTIVATED: return "WINDOW_ACTIVATED";
+         case WindowEvent.WINDOW_DEACTIVATED: return "WINDOW_DEACTIVATED";
+         case WindowEvent.WINDOW_GAINED_FOCUS: return "WINDOW_GAINED_FOCUS";
+         case WindowEvent.WINDOW_LOST_FOCUS: return "WINDOW_LOST_FOCUS";
+         case WindowEvent.WINDOW_STATE_CHANGED: return "WINDOW_STATE_CHANGED";
+         case ComponentEvent.COMPONENT_MOVED: return "COMPONENT_MOVED";
+         case ComponentEvent.COMPONENT_RESIZED: return "COMPONENT_RESIZED";
+         case ComponentEvent.COMPONENT_SHOWN: return "COMPONENT_SHOWN";
+         case ComponentEvent.COMPONENT_HIDDEN: return "COMPONENT_HIDDEN";
+         case ContainerEvent.COMPONENT_ADDED: return "COMPONENT_ADDED";
+         case ContainerEvent.COMPONENT_REMOVED: return "COMPONENT_REMOVED";
+         default: return "EVENT "+ id;
+      }
+   }
+
+   private final class RefreshListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         refresh( false );
+      }
+   }
+
+   private final class FilterListener implements DocumentListener {
+      public void insertUpdate( DocumentEvent e ) { refresh( true ); }
+      public void removeUpdate( DocumentEvent e ) { refresh( true ); }
+      public void changedUpdate( DocumentEvent e ) { refresh( true ); }
+   }
+
+   private final class TableMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked( MouseEvent e ) {
+         int row = table.getSelectedRow();
+         if( e.getClickCount() == 2 && row >= 0 ) {
+            long seq = model.getSequence( row );
+            Component source = log.isAvailable( seq ) ? log.getSource( seq ) : null;
+            if( source != null ) {
+               inspector.yield( source );
+            }
+         }
+      }
+   }
+
+   private final class EventTableModel extends AbstractTableModel {
+      private static final long serialVersionUID = 1L;
+      private final String[] columns = { "#", "Time", "Event", "Source", "Details" };
+      private final SimpleDateFormat timeFormat = new SimpleDateFormat( "HH:mm:ss.SSS" );
+      private final Date date = new Date();
+
+      private long[] rows = new long[ 0 ];
+
+      public void setRows( long[] rows ) {
+         this.rows = rows;
+         fireTableDataChanged();
+      }
+
+      public long getSequence( int row ) {
+         return rows[ row ];
+      }
+
+      public int getRowCount() {
+         return rows.length;
+      }
+
+      public int getColumnCount() {
+         return columns.length;
+      }
+
+      @Override
+      public String getColumnName( int column ) {
+         return columns[ column ];
+      }
+
+      public Object getValueAt( int row, int column ) {
+         long seq = rows[ row ];
+         if( column == 0 ) {
+            return seq;
+         }
+
+         Object value;
+         switch( column ) {
+            case 1: 
+               date.setTime( log.getTimeMillis( seq ));
+               value = timeFormat.format( date );
+               break;
+            case 2: 
+               value = nameOf( log.getId( seq ));
+               break;
+            case 3: 
+               Class<?> type = log.getSourceClass( seq );
+               String name = type.getSimpleName().length() > 0 ? type.getSimpleName() : type.getName();
+               value = name +"@"+ Integer.toHexString( log.getSourceHash( seq ));
+               break;
+            default: 
+               value = log.describe( seq );
+               break;
+         }
+         return log.isAvailable( seq ) ? value : "(overwritten)";
+      }
+   }
+}
@@ -21,6 +21,7 @@ import static net.cozycode.swinginspector.components.SwingInspectorUtilities.*;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.ComponentOrientation;
+import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Point;
@@ -28,6 +29,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.HierarchyBoundsListener;
@@ -35,37 +38,112 @@ import java.awt.event.HierarchyEvent;
 import java.awt.event.HierarchyListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JFormattedTextField;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import net.cozycode.constructs.IClosure;
 import net.cozycode.constructs.Tuple2;
-import net.cozycode.core.IDisposable;
 import net.cozycode.swing.components.BooleanLabel;
 import net.cozycode.swing.components.JTitledSeparator;
 import net.cozycode.swing.formatters.FloatFormatter;
+import net.cozycode.swinginspector.IReusableInspector;
 import net.cozycode.swinginspector.Inspector;
+import net.cozycode.swinginspector.components.CollapsibleSection;
 import net.cozycode.swinginspector.components.ColorPanel;
 import net.cozycode.swinginspector.components.FontPanel;
 import net.cozycode.swinginspector.components.PointPanel;
+import net.cozycode.swinginspector.profiling.RepaintProfiler;
 import net.miginfocom.swing.MigLayout;
 
 
 @Inspector(Component.class)
-public class ComponentInspector extends JPanel implements IDisposable {
+public class ComponentInspector extends JPanel implements IReusableInspector<Component> {
    private static final long serialVersionUID = 1L;
 
-   private final Component comp;
+   /** About one frame at 60Hz.  Events arriving within this window share a single refresh. */
+   private static final int REFRESH_DELAY = 16;
+
+   /** How often the repaint statistics are refreshed, since repaints aren't events we can listen for. */
+   private static final int PROFILE_DELAY = 1000;
+
+   /** How often stale size hints are retried, which only checks whether the target has been validated. */
+   private static final int HINTS_DELAY = 250;
+
+   // Groups of fields which are refreshed together.
+   private static final int NAME               = 1 << 0;
+   private static final int LOCALE             = 1 << 1;
+   private static final int LOCATION           = 1 << 2;
+   private static final int LOCATION_ON_SCREEN = 1 << 3;
+   private static final int SIZE               = 1 << 4;
+   private static final int SIZE_HINTS         = 1 << 5;
+   private static final int FONT               = 1 << 6;
+   private static final int COLORS             = 1 << 7;
+   private static final int ALIGNMENT          = 1 << 8;
+   private static final int FLAGS              = 1 << 9;
+   private static final int STATE              = 1 << 10;
+   private static final int IS_SET             = 1 << 11;
+   private static final int REPAINTS           = 1 << 12;
+   private static final int ALL                = (1 << 13) - 1;
+
+   /** 
+    * The collapsible sections and the fields in each.  Sections which are
+    * slow to build or read, like the font list and the size hints which 
+    * run the target's layout, start out collapsed.
+    */
+   private static final String[] SECTION_TITLES = { 
+      "General", "Bounds", "Size Hints", "Font", "Colors", "Alignment", "Flags", "State", "Is Set", "Profiling" 
+   };
+   private static final int[] SECTION_FIELDS = { 
+      NAME | LOCALE, LOCATION | LOCATION_ON_SCREEN | SIZE, SIZE_HINTS, FONT, COLORS, ALIGNMENT, FLAGS, STATE, IS_SET, REPAINTS 
+   };
+   private static final boolean[] SECTION_EXPANDED = { 
+      true, true, false, false, false, false, true, true, false, false 
+   };
+
+   /** The widest label, which all sections use for their label column so that they line up. */
+   private static final String WIDEST_LABEL = "Focus Traversal Keys Enabled:";
+
+   // The fields each listener on the target refreshes.  Properties and hierarchy changes affect them all.
+   private static final int FOCUS_FIELDS = STATE;
+   private static final int COMPONENT_FIELDS = LOCATION | LOCATION_ON_SCREEN | SIZE | SIZE_HINTS | FLAGS | STATE;
+   private static final int CONTAINER_FIELDS = SIZE_HINTS;
+   private static final int HIERARCHY_BOUNDS_FIELDS = LOCATION_ON_SCREEN;
+
+   /** The fields affected by each property, properties which aren't listed dirty everything. */
+   private static final HashMap<String, Integer> PROPERTY_FIELDS = new HashMap<String, Integer>();
+   static {
+      PROPERTY_FIELDS.put( "name", NAME );
+      PROPERTY_FIELDS.put( "locale", LOCALE );
+      PROPERTY_FIELDS.put( "font", FONT | SIZE_HINTS | IS_SET );
+      PROPERTY_FIELDS.put( "foreground", COLORS | IS_SET );
+      PROPERTY_FIELDS.put( "background", COLORS | IS_SET );
+      PROPERTY_FIELDS.put( "minimumSize", SIZE_HINTS | IS_SET );
+      PROPERTY_FIELDS.put( "maximumSize", SIZE_HINTS | IS_SET );
+      PROPERTY_FIELDS.put( "preferredSize", SIZE_HINTS | IS_SET );
+      PROPERTY_FIELDS.put( "enabled", FLAGS );
+      PROPERTY_FIELDS.put( "visible", FLAGS | STATE );
+      PROPERTY_FIELDS.put( "opaque", FLAGS );
+      PROPERTY_FIELDS.put( "focusable", FLAGS );
+      PROPERTY_FIELDS.put( "focusTraversalKeysEnabled", FLAGS );
+      PROPERTY_FIELDS.put( "componentOrientation", STATE );
+      PROPERTY_FIELDS.put( "cursor", IS_SET );
+   }
+
+   private Component comp;
 
    private final CompFocusListener focusListener = new CompFocusListener();
    private final CompComponentListener componentListener = new CompComponentListener();
    private final CompPropertyChangeListener propertyListener = new CompPropertyChangeListener();
    private final CompHierarchyListener hierarchyListener = new CompHierarchyListener();
    private final CompHierarchyBoundsListener hierarchyBoundsListener = new CompHierarchyBoundsListener();
+   private final CompContainerListener containerListener = new CompContainerListener();
 
    private final FieldCheckBoxListener fieldCheckBoxListener = new FieldCheckBoxListener();
    private final FieldActionListener fieldActionListener = new FieldActionListener();
@@ -75,192 +153,516 @@ public class ComponentInspector extends JPanel implements IDisposable {
    private final ColorChangeListener colorListener = new ColorChangeListener();
    private final PointChangeListener pointListener = new PointChangeListener();
 
-   private final JLabel name = new JLabel();
-   private final JLabel locale = new JLabel();
+   private final SectionListener sectionListener = new SectionListener();
+   private final CollapsibleSection[] sections = new CollapsibleSection[ SECTION_TITLES.length ];
+
+   // The widgets of each section are created when it's first expanded.
+   private JLabel name;
+   private JLabel locale;
+
+   private PointPanel location;
+   private PointPanel locationOnScreen;
+
+   private PointPanel size;
+   private PointPanel minSize;
+   private PointPanel maxSize;
+   private PointPanel prefSize;
+   private JLabel hintsState;
+
+   private FontPanel font;
+   private ColorPanel foreground;
+   private ColorPanel background;
+
+   private JFormattedTextField alignmentX;
+   private JFormattedTextField alignmentY;
+
+   private JCheckBox enabled;
+   private JCheckBox visible;
+   private JCheckBox opaque;
+   private JCheckBox focusable;
+   private JCheckBox focusTraversalKeysEnabled;
+   private JCheckBox ignoreRepaint;
+
+   private BooleanLabel showing;
+   private BooleanLabel focusOwner;
+   private BooleanLabel doubleBuffered;
+   private BooleanLabel lightweight;
+   private JLabel componentOrientation;
+
+   private BooleanLabel isFontSet;
+   private BooleanLabel isForegroundSet;
+   private BooleanLabel isBackgroundSet;
+   private BooleanLabel isMinSizeSet;
+   private BooleanLabel isMaxSizeSet;
+   private BooleanLabel isPrefSizeSet;
+   private BooleanLabel isCursorSet;
+
+   private JLabel repaints;
+   private JLabel refreshes;
+
+   private final Timer refreshTimer = new Timer( REFRESH_DELAY, new RefreshListener() );
+   private final Timer profileTimer = new Timer( PROFILE_DELAY, new ProfileListener() );
+   private final Timer hintsTimer = new Timer( HINTS_DELAY, new HintsListener() );
+
+   /** The last value shown by each widget, so that unchanged widgets aren't touched. */
+   private final IdentityHashMap<JComponent, Object> shown = new IdentityHashMap<JComponent, Object>();
+
+   /** The fields of the expanded sections, the only ones which are read from the target. */
+   private int open = 0;
+   /** The fields the listeners currently attached to the target are for. */
+   private int listening = 0;
+   private int dirty = 0;
+   /** Whether the target may have been invalidated since the computed size hints were last read. */
+   private boolean hintsInvalidated = true;
+   private int refreshCount = 0;
+   private int coalescedCount = 0;
 
-   private final PointPanel location = new PointPanel( pointListener );
-   private final PointPanel locationOnScreen = new PointPanel( pointListener );
 
-   private final PointPanel size = new PointPanel( pointListener );
-   private final PointPanel minSize = new PointPanel( pointListener, true );
-   private final PointPanel maxSize = new PointPanel( pointListener, true );
-   private final PointPanel prefSize = new PointPanel( pointListener, true );
+   public ComponentInspector( Component comp ) {
+      super( new MigLayout( "wrap, fill", "[fill]" ));
 
-   private final FontPanel font = new FontPanel( fontListener, true );
-   private final ColorPanel foreground = new ColorPanel( colorListener, true );
-   private final ColorPanel background = new ColorPanel( colorListener, true );
+      refreshTimer.setRepeats( false );
 
-   private final JFormattedTextField alignmentX 
-      = strip( new JFormattedTextField(  new FloatFormatter( false )));
-   private final JFormattedTextField alignmentY 
-      = strip( new JFormattedTextField(  new FloatFormatter( false )));
+      add( new JTitledSeparator( "Component" ) );
+      add( createContent() );
+      updateOpen();
+      inspect( comp );
+   }
 
-   private final JCheckBox enabled = new JCheckBox();
-   private final JCheckBox visible = new JCheckBox();
-   private final JCheckBox opaque = new JCheckBox();
-   private final JCheckBox focusable = new JCheckBox();
-   private final JCheckBox focusTraversalKeysEnabled = new JCheckBox();
-   private final JCheckBox ignoreRepaint = new JCheckBox();
+   @Override
+   public void inspect( Component target ) {
+      if( target == comp ) {
+         return;
+      }
 
-   private final BooleanLabel showing = new BooleanLabel();
-   private final BooleanLabel focusOwner = new BooleanLabel();
-   private final BooleanLabel doubleBuffered = new BooleanLabel();
-   private final BooleanLabel lightweight = new BooleanLabel();
-   private final JLabel componentOrientation = new JLabel();
+      if( comp != null ) {
+         refreshTimer.stop();
+         listen( 0 );
+      }
 
-   private final BooleanLabel isFontSet = new BooleanLabel();
-   private final BooleanLabel isForegroundSet = new BooleanLabel();
-   private final BooleanLabel isBackgroundSet = new BooleanLabel();
-   private final BooleanLabel isMinSizeSet = new BooleanLabel();
-   private final BooleanLabel isMaxSizeSet = new BooleanLabel();
-   private final BooleanLabel isPrefSizeSet = new BooleanLabel();
-   private final BooleanLabel isCursorSet = new BooleanLabel();
+      comp = target;
+      dirty = 0;
+      hintsInvalidated = true;
+      refreshCount = 0;
+      coalescedCount = 0;
+      shown.clear();
 
+      if( comp != null ) {
+         listen( open );
+         updateValues( ALL );
+      }
+   }
 
-   public ComponentInspector( Component comp ) {
-      super( new MigLayout( "wrap, fill", "[fill]" ));
-      this.comp = comp;
-
-      comp.addFocusListener( focusListener );
-      comp.addComponentListener( componentListener );
-      comp.addPropertyChangeListener( propertyListener );
-      comp.addHierarchyListener( hierarchyListener );
-      comp.addHierarchyBoundsListener( hierarchyBoundsListener );
-
-      enabled.addActionListener( fieldCheckBoxListener );
-      visible.addActionListener( fieldCheckBoxListener );
-      opaque.addActionListener( fieldCheckBoxListener );
-      focusable.addActionListener( fieldCheckBoxListener );
-      focusTraversalKeysEnabled.addActionListener( fieldCheckBoxListener );
-      ignoreRepaint.addActionListener( fieldCheckBoxListener );
-
-      if( comp instanceof JComponent ) {
+   /**
+    * Attaches the listeners needed to keep the fields up to date to the 
+    * target, and detaches the ones which aren't, so collapsed sections
+    * don't cost anything when the target changes.
+    */
+   private void listen( int fields ) {
+      int before = listening;
+      listening = fields;
+
+      if( toggled( before, FOCUS_FIELDS )) {
+         if( isListening( FOCUS_FIELDS )) { comp.addFocusListener( focusListener ); }
+         else { comp.removeFocusListener( focusListener ); }
+      }
+      if( toggled( before, COMPONENT_FIELDS )) {
+         if( isListening( COMPONENT_FIELDS )) { comp.addComponentListener( componentListener ); }
+         else { comp.removeComponentListener( componentListener ); }
+      }
+      if( toggled( before, ALL )) {
+         if( isListening( ALL )) { 
+            comp.addPropertyChangeListener( propertyListener ); 
+            comp.addHierarchyListener( hierarchyListener );
+         }
+         else { 
+            comp.removePropertyChangeListener( propertyListener ); 
+            comp.removeHierarchyListener( hierarchyListener );
+         }
+      }
+      if( toggled( before, CONTAINER_FIELDS ) && comp instanceof Container ) {
+         if( isListening( CONTAINER_FIELDS )) { ((Container)comp).addContainerListener( containerListener ); }
+         else { ((Container)comp).removeContainerListener( containerListener ); }
+      }
+      if( toggled( before, HIERARCHY_BOUNDS_FIELDS )) {
+         if( isListening( HIERARCHY_BOUNDS_FIELDS )) { comp.addHierarchyBoundsListener( hierarchyBoundsListener ); }
+         else { comp.removeHierarchyBoundsListener( hierarchyBoundsListener ); }
+      }
+      if( toggled( before, REPAINTS )) {
+         if( isListening( REPAINTS )) { profileTimer.start(); }
+         else { profileTimer.stop(); }
+      }
+      if( !isListening( SIZE_HINTS )) {
+         hintsTimer.stop();
+      }
+   }
+
+   private boolean isListening( int fields ) {
+      return ( listening & fields ) != 0;
+   }
+
+   private boolean toggled( int before, int fields ) {
+      return (( before & fields ) != 0 ) != isListening( fields );
+   }
+
+   /** Recomputes the open fields after a section is expanded or collapsed, and reads the ones just opened. */
+   private void updateOpen() {
+      int previous = open;
+      open = 0;
+      for( int i = 0; i < sections.length; ++i ) {
+         if( sections[i].isExpanded() ) {
+            open |= SECTION_FIELDS[i];
+         }
+      }
+
+      if( comp != null ) {
+         // Changes made while the section was collapsed may not have been heard
+         if(( open & ~previous & SIZE_HINTS ) != 0 ) {
+            hintsInvalidated = true;
+         }
+         listen( open );
+         updateValues( open & ~previous );
+      }
+   }
+
+   public void dispose() {
+      inspect( null );
+   }
+
+   private JComponent createContent() {
+      JPanel pane = new JPanel( new MigLayout( "wrap, fillx, insets 0", "[fill]", "[]0[]" ));
+      int labelWidth = strongFont( new JLabel( WIDEST_LABEL )).getPreferredSize().width;
+
+      for( int i = 0; i < sections.length; ++i ) {
+         JPanel rows = new JPanel( new MigLayout(  
+            "wrap, fill, insets 0 10 5 0", 
+            "[align right,"+ labelWidth +"!]6[grow,fill]",
+            "[align top]"
+         ));
+         sections[i] = new CollapsibleSection( "Component."+ SECTION_TITLES[i], SECTION_TITLES[i], 
+            SECTION_EXPANDED[i], rows, new SectionBuilder( SECTION_FIELDS[i] ));
+         sections[i].addExpansionListener( sectionListener );
+         pane.add( sections[i] );
+      }
+
+      return pane;
+   }
+
+   /** Creates the widgets for the fields and adds their rows to the section's pane. */
+   private void createRows( int fields, JPanel pane ) {
+      if( (fields & NAME) != 0 ) {
+         name = new JLabel();
+         addTo( pane, "Name:", name  );
+      }
+      if( (fields & LOCALE) != 0 ) {
+         locale = new JLabel();
+         addTo( pane, "Locale:", locale  );
+      }
+
+      if( (fields & LOCATION) != 0 ) {
+         location = new PointPanel( pointListener );
+         addTo( pane, "Location:", location );
+      }
+      if( (fields & LOCATION_ON_SCREEN) != 0 ) {
+         locationOnScreen = new PointPanel( pointListener );
+         locationOnScreen.setEnabled( false );
+         addTo( pane, "Location on Screen:", locationOnScreen );
+      }
+
+      if( (fields & SIZE) != 0 ) {
+         size = new PointPanel( pointListener );
+         addTo( pane, "Size:", size );
+      }
+      if( (fields & SIZE_HINTS) != 0 ) {
+         minSize = new PointPanel( pointListener, true );
+         maxSize = new PointPanel( pointListener, true );
+         prefSize = new PointPanel( pointListener, true );
+         addTo( pane, "Minimum Size:", minSize );
+         addTo( pane, "Maximum Size:", maxSize );
+         addTo( pane, "Preferred Size:", prefSize );
+         hintsState = new JLabel();
+         addTo( pane, "Hints:", hintsState );
+      }
+
+      if( (fields & FONT) != 0 ) {
+         font = new FontPanel( fontListener, true );
+         addTo( pane, "Font:", font );
+      }
+
+      if( (fields & COLORS) != 0 ) {
+         foreground = new ColorPanel( colorListener, true );
+         background = new ColorPanel( colorListener, true );
+         addTo( pane, "Foreground:", foreground );
+         addTo( pane, "Background:", background );
+      }
+
+      if( (fields & ALIGNMENT) != 0 ) {
+         alignmentX = strip( new JFormattedTextField(  new FloatFormatter( false )));
+         alignmentY = strip( new JFormattedTextField(  new FloatFormatter( false )));
          alignmentX.addFocusListener( fieldFocusListener );
          alignmentY.addFocusListener( fieldFocusListener );
          alignmentX.addActionListener( fieldActionListener );
          alignmentY.addActionListener( fieldActionListener );
+         addTo( pane, "AlignmentX:", alignmentX );
+         addTo( pane, "AlignmentY:", alignmentY );
       }
-      else {
-         opaque.setEnabled( false );
-         alignmentX.setEnabled( false );
-         alignmentY.setEnabled( false );
+
+      if( (fields & FLAGS) != 0 ) {
+         enabled = createCheckBox();
+         visible = createCheckBox();
+         opaque = createCheckBox();
+         focusable = createCheckBox();
+         focusTraversalKeysEnabled = createCheckBox();
+         ignoreRepaint = createCheckBox();
+         addTo( pane, "Enabled:", enabled );
+         addTo( pane, "Visible:", visible );
+         addTo( pane, "Opaque:", opaque );
+         addTo( pane, "Focusable:", focusable );
+         addTo( pane, "Focus Traversal Keys Enabled:", focusTraversalKeysEnabled );
+         addTo( pane, "Ignore Repaint:", ignoreRepaint );
       }
 
-      locationOnScreen.setEnabled( false );
+      if( (fields & STATE) != 0 ) {
+         showing = new BooleanLabel();
+         focusOwner = new BooleanLabel();
+         doubleBuffered = new BooleanLabel();
+         lightweight = new BooleanLabel();
+         componentOrientation = new JLabel();
+         addTo( pane, "Showing:", showing );
+         addTo( pane, "Focus Owner:", focusOwner );
+         addTo( pane, "Double Buffered:", doubleBuffered );
+         addTo( pane, "Lightweight:", lightweight );
+         addTo( pane, "Component Orientation:", componentOrientation );
+      }
 
-      add( new JTitledSeparator( "Component" ) );
-      add( createContent() );
-      updateValues();
+      if( (fields & IS_SET) != 0 ) {
+         isFontSet = new BooleanLabel();
+         isForegroundSet = new BooleanLabel();
+         isBackgroundSet = new BooleanLabel();
+         isMinSizeSet = new BooleanLabel();
+         isMaxSizeSet = new BooleanLabel();
+         isPrefSizeSet = new BooleanLabel();
+         isCursorSet = new BooleanLabel();
+         addTo( pane, "Is Font Set:", isFontSet );
+         addTo( pane, "Is Foreground Set:", isForegroundSet );
+         addTo( pane, "Is Background Set:", isBackgroundSet );
+         addTo( pane, "Is Minimum Size Set:", isMinSizeSet );
+         addTo( pane, "Is Maximum Size Set:", isMaxSizeSet );
+         addTo( pane, "Is Preferred Size Set:", isPrefSizeSet );
+         addTo( pane, "Is Cursor Set:", isCursorSet );
+      }
+
+      if( (fields & REPAINTS) != 0 ) {
+         repaints = new JLabel();
+         refreshes = new JLabel();
+         addTo( pane, "Repaints:", repaints );
+         addTo( pane, "Refreshes:", refreshes );
+      }
    }
 
-   public void dispose() {
-      comp.removeFocusListener( focusListener );
-      comp.removeComponentListener( componentListener );
-      comp.removePropertyChangeListener( propertyListener );
-      comp.removeHierarchyListener( hierarchyListener );
-      comp.removeHierarchyBoundsListener( hierarchyBoundsListener );
+   private JCheckBox createCheckBox() {
+      JCheckBox box = new JCheckBox();
+      box.addActionListener( fieldCheckBoxListener );
+      return box;
    }
 
-   private JComponent createContent() {
-      JPanel pane = new JPanel( new MigLayout(  
-         "wrap, fill, insets 0 10 0 0", 
-         "[align right]6[grow,fill]",
-         "[align top]"
-      ));
-
-      addTo( pane, "Name:", name  );
-      addTo( pane, "Locale:", locale  );
-      addSpacer( pane );
-
-      addTo( pane, "Location:", location );
-      addTo( pane, "Location on Screen:", locationOnScreen );
-      addSpacer( pane );
-
-      addTo( pane, "Size:", size );
-      addTo( pane, "Minimum Size:", minSize );
-      addTo( pane, "Maximum Size:", maxSize );
-      addTo( pane, "Preferred Size:", prefSize );
-      addSpacer( pane );
-
-      addTo( pane, "Font:", font );
-      addSpacer( pane );
-
-      addTo( pane, "Foreground:", foreground );
-      addTo( pane, "Background:", background );
-      addSpacer( pane );
-
-      addTo( pane, "AlignmentX:", alignmentX );
-      addTo( pane, "AlignmentY:", alignmentY );
-      addSpacer( pane );
-
-      addTo( pane, "Enabled:", enabled );
-      addTo( pane, "Visible:", visible );
-      addTo( pane, "Opaque:", opaque );
-      addTo( pane, "Focusable:", focusable );
-      addTo( pane, "Focus Traversal Keys Enabled:", focusTraversalKeysEnabled );
-      addTo( pane, "Ignore Repaint:", ignoreRepaint );
-      addSpacer( pane );
-
-      addTo( pane, "Showing:", showing );
-      addTo( pane, "Focus Owner:", focusOwner );
-      addTo( pane, "Double Buffered:", doubleBuffered );
-      addTo( pane, "Lightweight:", lightweight );
-      addTo( pane, "Component Orientation:", componentOrientation );
-      addSpacer( pane );
-
-      addTo( pane, "Is Font Set:", isFontSet );
-      addTo( pane, "Is Foreground Set:", isForegroundSet );
-      addTo( pane, "Is Background Set:", isBackgroundSet );
-      addTo( pane, "Is Minimum Size Set:", isMinSizeSet );
-      addTo( pane, "Is Maximum Size Set:", isMaxSizeSet );
-      addTo( pane, "Is Preferred Size Set:", isPrefSizeSet );
-      addTo( pane, "Is Cursor Set:", isCursorSet );
-      addSpacer( pane );
+   /** The number of times the values have been refreshed because of events. */
+   public int getRefreshCount() {
+      return refreshCount;
+   }
 
-      return pane;
+   /** The number of events which were folded into an already scheduled refresh. */
+   public int getCoalescedCount() {
+      return coalescedCount;
    }
 
-   private void updateValues() {
-      name.setText( comp.getName() );
-      locale.setText( comp.getLocale().toString() );
+   /**
+    * Marks the fields as needing a refresh and schedules one, unless one is
+    * already pending, in which case the fields are picked up by that one.
+    */
+   private void markDirty( int fields ) {
+      dirty |= fields;
+      if( (fields & SIZE_HINTS) != 0 ) {
+         hintsInvalidated = true;
+      }
+      if( refreshTimer.isRunning() ) {
+         ++coalescedCount;
+      }
+      else {
+         refreshTimer.start();
+      }
+   }
+
+   /** Reads the fields from the target, skipping the ones in collapsed sections. */
+   private void updateValues( int fields ) {
+      fields &= open;
 
-      location.setPoint( comp.getLocation() );
-      if( comp.isShowing() ) {
-         locationOnScreen.setPoint( comp.getLocationOnScreen() );
+      // Not every invalidation is heard, revalidate() fires nothing, so any 
+      // refresh which finds the target invalid counts as one
+      if( (open & SIZE_HINTS) != 0 && !comp.isValid() ) {
+         hintsInvalidated = true;
+         fields |= SIZE_HINTS;
       }
 
-      size.setPoint( dimensionToPoint( comp.getSize() ));
-      minSize.setPoint( dimensionToPoint( comp.getMinimumSize() ));
-      maxSize.setPoint( dimensionToPoint( comp.getMaximumSize() ));
-      prefSize.setPoint( dimensionToPoint( comp.getPreferredSize() ));
+      if( (fields & NAME) != 0 ) {
+         update( name, comp.getName() );
+      }
+      if( (fields & LOCALE) != 0 ) {
+         update( locale, comp.getLocale().toString() );
+      }
 
-      font.setFontValue( comp.getFont() );
-      foreground.setColor( comp.getForeground() );
-      background.setColor( comp.getBackground() );
+      if( (fields & LOCATION) != 0 ) {
+         Point p = comp.getLocation();
+         if( changed( location, p )) { location.setPoint( p ); }
+      }
+      if( (fields & LOCATION_ON_SCREEN) != 0 && comp.isShowing() ) {
+         Point p = comp.getLocationOnScreen();
+         if( changed( locationOnScreen, p )) { locationOnScreen.setPoint( p ); }
+      }
 
-      alignmentX.setValue( comp.getAlignmentX() );
-      alignmentY.setValue( comp.getAlignmentY() );
+      if( (fields & SIZE) != 0 ) {
+         update( size, dimensionToPoint( comp.getSize() ));
+      }
+      if( (fields & SIZE_HINTS) != 0 ) {
+         updateSizeHints();
+      }
+
+      if( (fields & FONT) != 0 ) {
+         Font f = comp.getFont();
+         if( changed( font, f )) { font.setFontValue( f ); }
+      }
+      if( (fields & COLORS) != 0 ) {
+         Color fg = comp.getForeground();
+         Color bg = comp.getBackground();
+         if( changed( foreground, fg )) { foreground.setColor( fg ); }
+         if( changed( background, bg )) { background.setColor( bg ); }
+      }
+
+      if( (fields & ALIGNMENT) != 0 ) {
+         alignmentX.setEnabled( comp instanceof JComponent );
+         alignmentY.setEnabled( comp instanceof JComponent );
+         float x = comp.getAlignmentX();
+         float y = comp.getAlignmentY();
+         if( changed( alignmentX, x )) { alignmentX.setValue( x ); }
+         if( changed( alignmentY, y )) { alignmentY.setValue( y ); }
+      }
+
+      if( (fields & FLAGS) != 0 ) {
+         opaque.setEnabled( comp instanceof JComponent );
+         enabled.setSelected( comp.isEnabled() );
+         visible.setSelected( comp.isVisible() );
+         opaque.setSelected( comp.isOpaque() );
+         focusable.setSelected( comp.isFocusable() );
+         focusTraversalKeysEnabled.setSelected( comp.getFocusTraversalKeysEnabled());
+         ignoreRepaint.setSelected( comp.getIgnoreRepaint() );
+      }
+
+      if( (fields & STATE) != 0 ) {
+         update( showing, comp.isShowing() );
+         update( focusOwner, comp.isFocusOwner() );
+         update( doubleBuffered, comp.isDoubleBuffered() );
+         update( lightweight, comp.isLightweight() );
+         update( componentOrientation, orientationToString( comp.getComponentOrientation() ));
+      }
+
+      if( (fields & IS_SET) != 0 ) {
+         update( isFontSet, comp.isFontSet() );
+         update( isBackgroundSet, comp.isBackgroundSet() );
+         update( isForegroundSet, comp.isForegroundSet() );
+         update( isMinSizeSet, comp.isMinimumSizeSet() );
+         update( isMaxSizeSet, comp.isMaximumSizeSet() );
+         update( isPrefSizeSet, comp.isPreferredSizeSet() );
+         update( isCursorSet, comp.isCursorSet() );
+      }
+
+      if( (open & REPAINTS) != 0 ) {
+         if( (fields & REPAINTS) != 0 ) {
+            update( repaints, describeRepaints() );
+         }
+         update( refreshes, refreshCount +" ("+ coalescedCount +" coalesced)" );
+      }
+   }
 
-      enabled.setSelected( comp.isEnabled() );
-      visible.setSelected( comp.isVisible() );
-      opaque.setSelected( comp.isOpaque() );
-      focusable.setSelected( comp.isFocusable() );
-      focusTraversalKeysEnabled.setSelected( comp.getFocusTraversalKeysEnabled());
-      ignoreRepaint.setSelected( comp.getIgnoreRepaint() );
+   /**
+    * Reads the size hints which are set, which only copies them, and reads
+    * the computed ones only if the target may have been invalidated since 
+    * they were last read.  Computing a hint for an invalid target runs it's
+    * layout ahead of the application's own validation, so while the target
+    * is invalid the last values are kept, marked as stale, and read once it
+    * has been validated.  Targets which can't be displayed are never 
+    * validated, so they are read anyway.
+    */
+   private void updateSizeHints() {
+      boolean valid = comp.isValid() || !comp.isDisplayable();
+      boolean computed = hintsInvalidated && valid;
+
+      if( computed || comp.isMinimumSizeSet() ) {
+         update( minSize, dimensionToPoint( comp.getMinimumSize() ));
+      }
+      if( computed || comp.isMaximumSizeSet() ) {
+         update( maxSize, dimensionToPoint( comp.getMaximumSize() ));
+      }
+      if( computed || comp.isPreferredSizeSet() ) {
+         update( prefSize, dimensionToPoint( comp.getPreferredSize() ));
+      }
+
+      if( computed ) {
+         hintsInvalidated = false;
+      }
+
+      boolean stale = hintsInvalidated && !( comp.isMinimumSizeSet() && comp.isMaximumSizeSet() && comp.isPreferredSizeSet() );
+      update( hintsState, stale ? "Stale, waiting for the component to be validated" : "Current" );
+      if( stale ) {
+         hintsTimer.start();
+      }
+      else {
+         hintsTimer.stop();
+      }
+   }
+
+   /**
+    * Records the value as the one shown by the widget and 
+    * returns true if it differs from the previous one.
+    */
+   private boolean changed( JComponent widget, Object value ) {
+      if( shown.containsKey( widget )) {
+         Object previous = shown.get( widget );
+         if( previous == null ? value == null : previous.equals( value )) {
+            return false;
+         }
+      }
+      shown.put( widget, value );
+      return true;
+   }
+
+   private void update( JLabel label, String value ) {
+      if( changed( label, value )) { label.setText( value ); }
+   }
+
+   private void update( BooleanLabel label, boolean value ) {
+      if( changed( label, value )) { label.setBoolean( value ); }
+   }
+
+   private void update( PointPanel panel, Point value ) {
+      if( changed( panel, value )) { panel.setPoint( value ); }
+   }
+
+   private String describeRepaints() {
+      RepaintProfiler profiler = RepaintProfiler.getInstalled();
+      if( profiler == null ) {
+         return "Not profiled";
+      }
 
-      showing.setBoolean( comp.isShowing() );
-      focusOwner.setBoolean( comp.isFocusOwner() );
-      doubleBuffered.setBoolean( comp.isDoubleBuffered() );
-      lightweight.setBoolean( comp.isLightweight() );
-      componentOrientation.setText( orientationToString( comp.getComponentOrientation() ));
+      RepaintProfiler.RepaintStats stats = profiler.getStats( comp );
+      if( stats == null ) {
+         return "None";
+      }
 
-      isFontSet.setBoolean( comp.isFontSet() );
-      isBackgroundSet.setBoolean( comp.isBackgroundSet() );
-      isForegroundSet.setBoolean( comp.isForegroundSet() );
-      isMinSizeSet.setBoolean( comp.isMinimumSizeSet() );
-      isMaxSizeSet.setBoolean( comp.isMaximumSizeSet() );
-      isPrefSizeSet.setBoolean( comp.isPreferredSizeSet() );
-      isCursorSet.setBoolean( comp.isCursorSet() );
+      double seconds = Math.max( profiler.getElapsedSeconds(), 0.001 );
+      return String.format( "%d (%.1f/s), %d px dirtied, %d cycles, %.1f ms",
+         stats.getDirtyCount(), stats.getDirtyCount() / seconds, stats.getDirtyArea(),
+         stats.getPaintCycles(), stats.getPaintNanos() / 1e6 
+      );
    }
 
    private static String orientationToString( ComponentOrientation orientation ) {
@@ -274,6 +676,8 @@ public class ComponentInspector extends JPanel implements IDisposable {
    private final class FontChangeListener implements IClosure<Tuple2<FontPanel,Font>> {
       @Override
       public void yield(Tuple2<FontPanel, Font> item) {
+         if( comp == null ) return;
+
          if( font == item.getFirst() ) {
             comp.setFont( item.getSecond() );
             revalidateContainer( comp );
@@ -285,6 +689,8 @@ public class ComponentInspector extends JPanel implements IDisposable {
    private final class ColorChangeListener implements IClosure<Tuple2<ColorPanel,Color>> {
       @Override
       public void yield(Tuple2<ColorPanel, Color> item) {
+         if( comp == null ) return;
+
          if( foreground == item.getFirst() ) {
             comp.setForeground( item.getSecond() );
          }
@@ -297,6 +703,8 @@ public class ComponentInspector extends JPanel implements IDisposable {
    private final class PointChangeListener implements IClosure<Tuple2<PointPanel,Point>> {
       @Override
       public void yield(Tuple2<PointPanel, Point> item) {
+         if( comp == null ) return;
+
          if( location == item.getFirst() ) {
             comp.setLocation( item.getSecond() );
          }
@@ -340,6 +748,8 @@ public class ComponentInspector extends JPanel implements IDisposable {
    private final class FieldCheckBoxListener implements ActionListener {
       @Override
       public void actionPerformed(ActionEvent e) {
+         if( comp == null ) return;
+
          if( enabled == e.getSource() ) {
             comp.setEnabled( enabled.isSelected() );
          }
@@ -369,33 +779,79 @@ public class ComponentInspector extends JPanel implements IDisposable {
       }
    }
 
+   private final class SectionBuilder implements IClosure<JPanel> {
+      private final int fields;
+
+      public SectionBuilder( int fields ) {
+         this.fields = fields;
+      }
+
+      @Override
+      public void yield( JPanel item ) {
+         createRows( fields, item );
+      }
+   }
+
+   private final class SectionListener implements IClosure<CollapsibleSection> {
+      @Override
+      public void yield( CollapsibleSection item ) {
+         updateOpen();
+      }
+   }
+
+   private final class RefreshListener implements ActionListener {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+         int fields = dirty;
+         dirty = 0;
+         ++refreshCount;
+         updateValues( fields );
+      }
+   }
+
+   private final class HintsListener implements ActionListener {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+         if( comp != null && ( comp.isValid() || !comp.isDisplayable() )) {
+            updateValues( SIZE_HINTS );
+         }
+      }
+   }
+
+   private final class ProfileListener implements ActionListener {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+         updateValues( REPAINTS );
+      }
+   }
+
    private final class CompComponentListener implements ComponentListener {
       public void componentResized(ComponentEvent e) {
-         updateValues();
+         markDirty( SIZE | SIZE_HINTS );
       }
 
       public void componentMoved(ComponentEvent e) {
-         updateValues();
+         markDirty( LOCATION | LOCATION_ON_SCREEN );
       }
 
       public void componentShown(ComponentEvent e) {
-         updateValues();
+         markDirty( FLAGS | STATE | LOCATION_ON_SCREEN );
       }
 
       public void componentHidden(ComponentEvent e) {
-         updateValues();
+         markDirty( FLAGS | STATE );
       }
    }
 
    private final class CompFocusListener implements FocusListener {
       @Override
       public void focusGained(FocusEvent e) {
-         updateValues();
+         markDirty( STATE );
       }
 
       @Override
       public void focusLost(FocusEvent e) {
-         updateValues();
+         markDirty( STATE );
       }
    }
 
@@ -405,7 +861,7 @@ public class ComponentInspector extends JPanel implements IDisposable {
 
       @Override
       public void focusLost(FocusEvent e) {
-         if( e.getSource() instanceof JComponent ) {
+         if( comp instanceof JComponent ) {
             if( alignmentX == e.getSource() ) {
                ((JComponent)comp).setAlignmentX( (Float)alignmentX.getValue() );
             }
@@ -419,6 +875,8 @@ public class ComponentInspector extends JPanel implements IDisposable {
    private final class FieldActionListener implements ActionListener {
       @Override
       public void actionPerformed(ActionEvent e) {
+         if( !(comp instanceof JComponent) ) return;
+
          if( alignmentX == e.getSource() ) {
             ((JComponent)comp).setAlignmentX( (Float)alignmentX.getValue() );
          }
@@ -430,27 +888,38 @@ public class ComponentInspector extends JPanel implements IDisposable {
 
    private final class CompPropertyChangeListener implements PropertyChangeListener{
       public void propertyChange(PropertyChangeEvent evt) {
-         updateValues();
+         Integer fields = PROPERTY_FIELDS.get( evt.getPropertyName() );
+         markDirty( fields != null ? fields : ALL );
          //		   System.out.println( "Property: "+ evt.getPropertyName() +" = "+ evt.getNewValue() );
       }
    }
 
+   private final class CompContainerListener implements ContainerListener {
+      public void componentAdded(ContainerEvent e) {
+         markDirty( SIZE_HINTS );
+      }
+
+      public void componentRemoved(ContainerEvent e) {
+         markDirty( SIZE_HINTS );
+      }
+   }
+
    private final class CompHierarchyListener implements HierarchyListener {
       @Override
       public void hierarchyChanged(HierarchyEvent e) {
-         updateValues();
+         markDirty( ALL );
       }
    }
 
    private final class CompHierarchyBoundsListener implements HierarchyBoundsListener {
       @Override
       public void ancestorMoved(HierarchyEvent e) {
-         updateValues();
+         markDirty( LOCATION_ON_SCREEN );
       }
 
       @Override
       public void ancestorResized(HierarchyEvent e) {
-         updateValues();
+         markDirty( LOCATION_ON_SCREEN );
       }
    }
 }
\ No newline at end of file
@@ -20,6 +20,8 @@ import static net.cozycode.swinginspector.components.SwingInspectorUtilities.*;
 
 import java.awt.Container;
 import java.awt.LayoutManager;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ContainerEvent;
 import java.awt.event.ContainerListener;
 import java.beans.PropertyChangeEvent;
@@ -28,23 +30,31 @@ import java.beans.PropertyChangeListener;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
-import net.cozycode.core.IDisposable;
 import net.cozycode.swing.components.BooleanLabel;
 import net.cozycode.swing.components.JTitledSeparator;
+import net.cozycode.swinginspector.IReusableInspector;
 import net.cozycode.swinginspector.Inspector;
 import net.cozycode.swinginspector.components.InsetsPanel;
+import net.cozycode.swinginspector.profiling.LayoutProfiler;
+import net.cozycode.swinginspector.profiling.ProfilingLayout;
 import net.miginfocom.swing.MigLayout;
 
 @Inspector(Container.class)
-public class ContainerInspector extends JPanel implements IDisposable {
+public class ContainerInspector extends JPanel implements IReusableInspector<Container> {
    private static final long serialVersionUID = 1L;
 
+   /** How often the layout statistics are refreshed while profiling. */
+   private static final int PROFILE_DELAY = 1000;
+
    private final MyContainerListener containerListener = new MyContainerListener();
    private final MyPropertyChangeListener propertyListener = new MyPropertyChangeListener();
 
    private final JLabel layoutClass = new JLabel();
    private final JLabel componentCount = new JLabel();
+   private final JLabel layoutCost = new JLabel();
+   private final JLabel layoutRepeats = new JLabel();
 
    private final InsetsPanel insetsPanel = new InsetsPanel();
 
@@ -52,24 +62,43 @@ public class ContainerInspector extends JPanel implements IDisposable {
    private final BooleanLabel isFocusTraversalPolicySet = new BooleanLabel();
    private final BooleanLabel isFocusTraversalPolicyProvider = new BooleanLabel();
 
-   private final Container container;
+   private final Timer profileTimer = new Timer( PROFILE_DELAY, new ProfileListener() );
+
+   private Container container;
 
    public ContainerInspector( Container container ) {
       super( new MigLayout( "wrap,fill", "[fill]" ));
-      this.container = container;
-
-      container.addContainerListener( containerListener );
-      container.addPropertyChangeListener( propertyListener );
 
       add( new JTitledSeparator( "Container" ));
       add( createContent() );
-      updateValues();
+      inspect( container );
+   }
+
+   @Override
+   public void inspect( Container target ) {
+      if( target == container ) {
+         return;
+      }
+
+      if( container != null ) {
+         profileTimer.stop();
+         container.removePropertyChangeListener( propertyListener );
+         container.removeContainerListener( containerListener );
+      }
+
+      container = target;
+
+      if( container != null ) {
+         container.addContainerListener( containerListener );
+         container.addPropertyChangeListener( propertyListener );
+         updateValues();
+         profileTimer.start();
+      }
    }
 
    @Override
    public void dispose() {
-      container.removePropertyChangeListener( propertyListener );
-      container.removeContainerListener( containerListener );
+      inspect( null );
    }
 
    private JComponent createContent() {
@@ -83,6 +112,10 @@ public class ContainerInspector extends JPanel implements IDisposable {
       addTo( pane, "Component Count:", componentCount );
       addSpacer( pane );
 
+      addTo( pane, "Layout Cost:", layoutCost );
+      addTo( pane, "Repeated in an Event:", layoutRepeats );
+      addSpacer( pane );
+
       addTo( pane, "Insets:", insetsPanel );
       addSpacer( pane );
 
@@ -96,6 +129,9 @@ public class ContainerInspector extends JPanel implements IDisposable {
 
    private void updateValues() {
       LayoutManager layout = container.getLayout();
+      if( layout instanceof ProfilingLayout ) {
+         layout = ((ProfilingLayout)layout).getDelegate();
+      }
 
       layoutClass.setText( layout != null ? layout.getClass().getName() : "null" );
       componentCount.setText( ""+ container.getComponentCount() );
@@ -106,6 +142,31 @@ public class ContainerInspector extends JPanel implements IDisposable {
       isFocusTraversalPolicySet.setBoolean( container.isFocusTraversalPolicySet() );
       isFocusTraversalPolicyProvider.setBoolean( container.isFocusTraversalPolicyProvider() );
 
+      updateProfile();
+   }
+
+   private void updateProfile() {
+      LayoutProfiler profiler = LayoutProfiler.getInstalled();
+      LayoutProfiler.LayoutStats stats = profiler != null ? profiler.getStats( container ) : null;
+
+      if( stats == null ) {
+         layoutCost.setText( profiler == null ? "Not profiled" : "Not instrumented" );
+         layoutRepeats.setText( "" );
+         return;
+      }
+
+      layoutCost.setText( String.format( "%d layouts %.2f ms (%.2f ms self), %d sizings %.2f ms (%.2f ms self)",
+         stats.getLayoutCount(), stats.getLayoutNanos() / 1e6, stats.getLayoutSelfNanos() / 1e6,
+         stats.getSizeCount(), stats.getSizeNanos() / 1e6, stats.getSizeSelfNanos() / 1e6
+      ));
+      layoutRepeats.setText( stats.getRepeatedLayoutCycles() +" times laid out, "+ 
+         stats.getRepeatedInvalidationCycles() +" times invalidated (of "+ stats.getInvalidations() +" invalidations)" );
+   }
+
+   private final class ProfileListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         updateProfile();
+      }
    }
 
    private final class MyContainerListener implements ContainerListener {
@@ -29,8 +29,8 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.border.Border;
 
-import net.cozycode.core.IDisposable;
 import net.cozycode.swing.components.JTitledSeparator;
+import net.cozycode.swinginspector.IReusableInspector;
 import net.cozycode.swinginspector.Inspector;
 import net.miginfocom.swing.MigLayout;
 
@@ -43,7 +43,7 @@ import net.miginfocom.swing.MigLayout;
  * clientProperties
  */
 @Inspector(JComponent.class)
-public class JComponentInspector extends JPanel implements IDisposable {
+public class JComponentInspector extends JPanel implements IReusableInspector<JComponent> {
    private static final long serialVersionUID = 1L;
 
    private final MyPropertyChangeListener propertyListener = new MyPropertyChangeListener();
@@ -54,23 +54,38 @@ public class JComponentInspector extends JPanel implements IDisposable {
 
    private final JCheckBox autoscrolls = new JCheckBox();
 
-   private final JComponent comp;
+   private JComponent comp;
 
    public JComponentInspector( JComponent comp ) {
       super( new MigLayout( "wrap,fill", "[fill]" ));
-      this.comp = comp;
-
-      comp.addPropertyChangeListener( propertyListener );
       autoscrolls.addActionListener( actionListener );
 
       add( new JTitledSeparator( "JComponent" ));
       add( createContent() );
-      updateValues();
+      inspect( comp );
+   }
+
+   @Override
+   public void inspect( JComponent target ) {
+      if( target == comp ) {
+         return;
+      }
+
+      if( comp != null ) {
+         comp.removePropertyChangeListener( propertyListener );
+      }
+
+      comp = target;
+
+      if( comp != null ) {
+         comp.addPropertyChangeListener( propertyListener );
+         updateValues();
+      }
    }
 
    @Override
    public void dispose() {
-      comp.removePropertyChangeListener( propertyListener );
+      inspect( null );
    }
 
    private JComponent createContent() {
@@ -101,7 +116,7 @@ public class JComponentInspector extends JPanel implements IDisposable {
    private final class FieldActionListener implements ActionListener {
       @Override
       public void actionPerformed(ActionEvent e) {
-         if( autoscrolls == e.getSource() ) {
+         if( comp != null && autoscrolls == e.getSource() ) {
             comp.setAutoscrolls( autoscrolls.isSelected() );
          }
       }
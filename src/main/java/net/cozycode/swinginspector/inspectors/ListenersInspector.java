@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.inspectors;
+
+import static net.cozycode.swinginspector.components.SwingInspectorUtilities.*;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import net.cozycode.swing.components.JTitledSeparator;
+import net.cozycode.swinginspector.IReusableInspector;
+import net.cozycode.swinginspector.Inspector;
+import net.cozycode.swinginspector.listeners.ListenerCounts;
+import net.cozycode.swinginspector.listeners.ListenerHistory;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Shows how many listeners of each type are registered on the component,
+ * refreshed once a second.  Each refresh is recorded in the shared 
+ * ListenerHistory, so a component whose listeners keep accumulating is
+ * flagged while it's being watched.
+ */
+@Inspector(Component.class)
+public class ListenersInspector extends JPanel implements IReusableInspector<Component> {
+   private static final long serialVersionUID = 1L;
+   private static final int REFRESH_DELAY = 1000;
+
+   private final JPanel counts = new JPanel( new MigLayout(  
+      "wrap, fill, insets 0 10 0 0", 
+      "[align right]6[grow,fill]",
+      "[align top]"
+   ));
+   private final JLabel total = new JLabel();
+   private final JLabel growth = new JLabel();
+
+   private final Timer refreshTimer = new Timer( REFRESH_DELAY, new RefreshListener() );
+
+   /** The labels of the rows shown, so they are only rebuilt when the types change. */
+   private final List<String> shown = new ArrayList<String>();
+   private final List<JLabel> values = new ArrayList<JLabel>();
+
+   private Component comp;
+
+   public ListenersInspector( Component comp ) {
+      super( new MigLayout( "wrap,fill", "[fill]" ));
+
+      add( new JTitledSeparator( "Listeners" ));
+      add( counts );
+      rebuild( new ArrayList<String>() );
+      inspect( comp );
+   }
+
+   @Override
+   public void inspect( Component target ) {
+      if( target == comp ) {
+         return;
+      }
+
+      refreshTimer.stop();
+      comp = target;
+
+      if( comp != null ) {
+         updateValues();
+         refreshTimer.start();
+      }
+   }
+
+   @Override
+   public void dispose() {
+      inspect( null );
+   }
+
+   private void updateValues() {
+      ListenerCounts listeners = ListenerCounts.count( comp );
+      ListenerHistory.Growth history = ListenerHistory.getShared().record( comp, listeners );
+
+      ArrayList<String> labels = new ArrayList<String>();
+      ArrayList<String> texts = new ArrayList<String>();
+      for( int i = 0; i < listeners.getTypes().size(); ++i ) {
+         int count = listeners.getCount( i );
+         int own = listeners.getInspectorCount( i );
+         if( count > 0 || own > 0 ) {
+            labels.add( listeners.getTypes().get( i ).getSimpleName() +":" );
+            texts.add( own > 0 ? count +"  (and "+ own +" of the inspector's)" : ""+ count );
+         }
+      }
+
+      if( !labels.equals( shown )) {
+         rebuild( labels );
+      }
+      for( int i = 0; i < texts.size(); ++i ) {
+         values.get( i ).setText( texts.get( i ));
+      }
+
+      total.setText( ""+ listeners.getTotal() );
+      growth.setText( history.isGrowing()
+         ? "Growing: "+ history.getFirst() +" to "+ history.getLast() +" over "+ history.getSampleCount() +" samples"
+         : history.getGrowth() == 0 ? "None" : String.format( "%+d since first seen", history.getGrowth() )
+      );
+   }
+
+   private void rebuild( List<String> labels ) {
+      counts.removeAll();
+      shown.clear();
+      values.clear();
+
+      for( String label : labels ) {
+         JLabel value = new JLabel();
+         addTo( counts, label, value );
+         shown.add( label );
+         values.add( value );
+      }
+      addSpacer( counts );
+
+      addTo( counts, "Total:", total );
+      addTo( counts, "Growth:", growth );
+      addSpacer( counts );
+
+      revalidate();
+      repaint();
+   }
+
+   private final class RefreshListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         if( comp != null ) {
+            updateValues();
+         }
+      }
+   }
+}
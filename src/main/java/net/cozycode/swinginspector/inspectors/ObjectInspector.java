@@ -30,14 +30,14 @@ import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 
-import net.cozycode.core.IDisposable;
 import net.cozycode.swing.components.JTitledSeparator;
+import net.cozycode.swinginspector.IReusableInspector;
 import net.cozycode.swinginspector.Inspector;
 import net.miginfocom.swing.MigLayout;
 
 
 @Inspector(Object.class)
-public class ObjectInspector extends JPanel implements IDisposable {
+public class ObjectInspector extends JPanel implements IReusableInspector<Object> {
    private static final long serialVersionUID = 1L;
    private static final JCheckBox showPackages = strip( mildFont( new JCheckBox( "Show Packages", true )));
    private static final JCheckBox showSuperClasses = strip( mildFont( new JCheckBox( "Show Super Classes", true )));
@@ -49,24 +49,50 @@ public class ObjectInspector extends JPanel implements IDisposable {
       showSuperClasses.setBorder( BorderFactory.createEmptyBorder( 5, 0, 5, 0 ));
    }
 
-   private final Object obj;
    private final MyActionListener actionListener = new MyActionListener();
 
+   private Object obj;
+
    public ObjectInspector( Object obj ) {
       super( new MigLayout( "wrap, fill", "[fill]" ));
-      this.obj = obj;
+      inspect( obj );
+   }
+
+   @Override
+   public void inspect( Object target ) {
+      if( target == obj ) {
+         return;
+      }
+
+      Class<?> previous = obj != null ? obj.getClass() : null;
+      obj = target;
 
-      showPackages.addActionListener( actionListener );
-      showSuperClasses.addActionListener( actionListener );
-      showInterfaces.addActionListener( actionListener );
+      if( obj == null ) {
+         removeAll();
+         showPackages.removeActionListener( actionListener );
+         showSuperClasses.removeActionListener( actionListener );
+         showInterfaces.removeActionListener( actionListener );
+         return;
+      }
+
+      if( previous == null ) {
+         showPackages.addActionListener( actionListener );
+         showSuperClasses.addActionListener( actionListener );
+         showInterfaces.addActionListener( actionListener );
+      }
 
-      recreateContent();
+      // The content only describes the class, so it's kept for objects of the same class.
+      if( previous != obj.getClass() ) {
+         recreateContent();
+      }
    }
 
    private void recreateContent() {
       removeAll();
       add( new JTitledSeparator( "Object" ));
       add( createContent( obj ));
+      revalidate();
+      repaint();
    }
 
    private JComponent createContent( Object obj ) {
@@ -128,9 +154,6 @@ public class ObjectInspector extends JPanel implements IDisposable {
 
    @Override
    public void dispose() {
-      removeAll();
-      showPackages.removeActionListener( actionListener );
-      showSuperClasses.removeActionListener( actionListener );
-      showInterfaces.removeActionListener( actionListener );
+      inspect( null );
    }
 }
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.leaks;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.HierarchyEvent;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.swing.CellRendererPane;
+import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
+
+import net.cozycode.swinginspector.util.WeakIdentityMap;
+
+/**
+ * Tracks every component which is added to a hierarchy, through the 
+ * HierarchyEvents it receives, and finds the ones which have been taken 
+ * out of every window but are still reachable.  Those are usually kept 
+ * alive by a listener registered on something which outlives them.<br />
+ * <br />
+ * Components are held by weak references registered with a ReferenceQueue,
+ * so tracking doesn't keep anything alive and collected components are 
+ * counted as the queue is drained.  The stack which first added a component
+ * is recorded for one in every 'sample interval' components, and leaks are
+ * reported grouped by class and by that stack.<br />
+ * <br />
+ * Only components which have been displayable are reported, so UIs which 
+ * are built ahead of time but not shown yet aren't mistaken for leaks.
+ * Components added to a CellRendererPane are ignored, since renderers are
+ * taken out of the hierarchy after every paint by design, and so are the 
+ * items of hidden popup menus, which closing a menu detaches.  Like the rest
+ * of Swing, this class is meant to be used from the event dispatch thread.
+ */
+public class ComponentLeakDetector {
+   private static final int DEFAULT_SAMPLE_INTERVAL = 16;
+   private static final int SITE_DEPTH = 8;
+   private static final int MAX_SAMPLES = 10;
+
+   private static ComponentLeakDetector installed = null;
+
+   private final TrackingListener trackingListener = new TrackingListener();
+   private final ReferenceQueue<Component> queue = new ReferenceQueue<Component>();
+   private final WeakIdentityMap<Component, Tracked> tracked = new WeakIdentityMap<Component, Tracked>();
+   private final HashMap<String, Site> sites = new HashMap<String, Site>();
+
+   private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+   private int untilSample = 0;
+   private long trackedCount = 0;
+   private long collectedCount = 0;
+
+
+   private ComponentLeakDetector() {
+      /* use install() */
+   }
+
+   /** Starts tracking every component currently in a window and every one added from now on. */
+   public static ComponentLeakDetector install() {
+      if( installed == null ) {
+         installed = new ComponentLeakDetector();
+         Toolkit.getDefaultToolkit().addAWTEventListener( installed.trackingListener, AWTEvent.HIERARCHY_EVENT_MASK );
+         for( Window w : Window.getWindows() ) {
+            installed.trackAll( w );
+         }
+      }
+      return installed;
+   }
+
+   /** Stops tracking and forgets everything tracked so far. */
+   public static void uninstall() {
+      if( installed != null ) {
+         Toolkit.getDefaultToolkit().removeAWTEventListener( installed.trackingListener );
+         installed.tracked.clear();
+         installed = null;
+      }
+   }
+
+   /** The installed detector, or null if components aren't being tracked. */
+   public static ComponentLeakDetector getInstalled() {
+      return installed;
+   }
+
+   /** Record the stack of one in every 'interval' components.  1 records them all. */
+   public void setSampleInterval( int interval ) {
+      this.sampleInterval = Math.max( 1, interval );
+      this.untilSample = 0;
+   }
+
+   public int getSampleInterval() {
+      return sampleInterval;
+   }
+
+   /** The number of components tracked since installation. */
+   public long getTrackedCount() {
+      return trackedCount;
+   }
+
+   /** The number of tracked components which have been garbage collected. */
+   public long getCollectedCount() {
+      drain();
+      return collectedCount;
+   }
+
+   /** The number of tracked components which haven't been collected yet. */
+   public int getLiveCount() {
+      drain();
+      return tracked.size();
+   }
+
+   /**
+    * Asks for a few garbage collections, so that only strongly reachable 
+    * components remain, and then finds the leaks.
+    */
+   public List<LeakGroup> collectAndFindLeaks() {
+      for( int i = 0; i < 3; ++i ) {
+         System.gc();
+         System.runFinalization();
+      }
+      return findLeaks();
+   }
+
+   /**
+    * Finds the tracked components which have been displayable but are now
+    * neither displayable nor in a window.  A window is reported itself once
+    * it's been disposed, and the components in it are not.  The largest 
+    * groups come first.
+    */
+   public List<LeakGroup> findLeaks() {
+      drain();
+
+      HashMap<List<Object>, LeakGroup> groups = new HashMap<List<Object>, LeakGroup>();
+      for( Tracked t : tracked.values() ) {
+         Component c = t.get();
+         if( c == null || !t.displayed || !isDetached( c ) || isInHiddenPopup( c )) {
+            continue;
+         }
+
+         List<Object> key = Arrays.<Object>asList( t.className, t.site );
+         LeakGroup group = groups.get( key );
+         if( group == null ) {
+            group = new LeakGroup( t.className, t.site );
+            groups.put( key, group );
+         }
+         group.add( c );
+      }
+
+      ArrayList<LeakGroup> leaks = new ArrayList<LeakGroup>( groups.values() );
+      Collections.sort( leaks, new Comparator<LeakGroup>() {
+         public int compare( LeakGroup a, LeakGroup b ) {
+            return a.count == b.count ? a.className.compareTo( b.className ) : b.count - a.count;
+         }
+      });
+      return leaks;
+   }
+
+   private static boolean isDetached( Component c ) {
+      return !c.isDisplayable() && ( c instanceof Window || SwingUtilities.getWindowAncestor( c ) == null );
+   }
+
+   private void trackAll( Component c ) {
+      if( isRenderer( c )) {
+         return;
+      }
+      track( c, false );
+      if( c.isDisplayable() ) {
+         tracked.get( c ).displayed = true;
+      }
+      if( c instanceof Container ) {
+         for( Component child : ((Container)c).getComponents() ) {
+            trackAll( child );
+         }
+      }
+   }
+
+   private void track( Component c, boolean sample ) {
+      if( tracked.containsKey( c )) {
+         return;
+      }
+      drain();
+
+      Site site = null;
+      if( sample && --untilSample < 0 ) {
+         untilSample = sampleInterval - 1;
+         site = intern( new Throwable().getStackTrace() );
+      }
+
+      tracked.put( c, new Tracked( c, queue, site ));
+      ++trackedCount;
+   }
+
+   /** Counts the tracked components which have been collected. */
+   private void drain() {
+      for( Reference<? extends Component> ref = queue.poll(); ref != null; ref = queue.poll() ) {
+         ++collectedCount;
+      }
+   }
+
+   /** 
+    * Keys the stack by it's first frames outside of AWT, Swing and this 
+    * class, which is where the application added the component.
+    */
+   private Site intern( StackTraceElement[] stack ) {
+      int start = 0;
+      while( start < stack.length && isInternal( stack[ start ].getClassName() )) {
+         ++start;
+      }
+
+      StackTraceElement[] frames = Arrays.copyOfRange( stack, start, Math.min( stack.length, start + SITE_DEPTH ));
+      String key = Arrays.toString( frames );
+      Site site = sites.get( key );
+      if( site == null ) {
+         site = new Site( frames );
+         sites.put( key, site );
+      }
+      return site;
+   }
+
+   /** Whether the component's top level ancestor is a popup menu which isn't showing. */
+   private static boolean isInHiddenPopup( Component c ) {
+      Component top = c;
+      while( top.getParent() != null ) {
+         top = top.getParent();
+      }
+      return top instanceof JPopupMenu && !top.isVisible();
+   }
+
+   private static boolean isRenderer( Component c ) {
+      return c.getParent() instanceof CellRendererPane;
+   }
+
+   private static boolean isInternal( String className ) {
+      return className.startsWith( "java.awt." ) 
+         || className.startsWith( "javax.swing." ) 
+         || className.startsWith( "sun." )
+         || className.startsWith( ComponentLeakDetector.class.getName() );
+   }
+
+   private final class TrackingListener implements AWTEventListener {
+      public void eventDispatched( AWTEvent event ) {
+         if( !( event instanceof HierarchyEvent )) {
+            return;
+         }
+
+         HierarchyEvent e = (HierarchyEvent)event;
+         boolean added = ( e.getChangeFlags() & HierarchyEvent.PARENT_CHANGED ) != 0;
+         // Renderers also see displayability changes when their pane is added
+         if( e.getChangedParent() instanceof CellRendererPane ) {
+            return;
+         }
+
+         Component c = e.getComponent();
+         if( c != null && !isRenderer( c )) {
+            // Only the changed component's own event has the stack of interest
+            track( c, added && e.getChanged() == c );
+
+            long shown = HierarchyEvent.DISPLAYABILITY_CHANGED | HierarchyEvent.SHOWING_CHANGED;
+            if(( e.getChangeFlags() & shown ) != 0 && c.isDisplayable() ) {
+               tracked.get( c ).displayed = true;
+            }
+         }
+      }
+   }
+
+   private static final class Tracked extends WeakReference<Component> {
+      private final String className;
+      private final Site site;
+      /** Whether the component has been displayable, only those can leak. */
+      private boolean displayed = false;
+
+      public Tracked( Component c, ReferenceQueue<Component> queue, Site site ) {
+         super( c, queue );
+         this.className = c.getClass().getName();
+         this.site = site;
+      }
+   }
+
+   /** Where components were first added to a hierarchy. */
+   public static final class Site {
+      private final StackTraceElement[] frames;
+
+      private Site( StackTraceElement[] frames ) {
+         this.frames = frames;
+      }
+
+      public StackTraceElement[] getFrames() {
+         return frames.clone();
+      }
+
+      @Override
+      public String toString() {
+         return frames.length == 0 ? "unknown" : frames[0].toString();
+      }
+   }
+
+   /** The detached components of one class, first added at one site. */
+   public static final class LeakGroup {
+      private final String className;
+      private final Site site;
+      private final ArrayList<WeakReference<Component>> samples = new ArrayList<WeakReference<Component>>();
+      private int count = 0;
+
+      private LeakGroup( String className, Site site ) {
+         this.className = className;
+         this.site = site;
+      }
+
+      private void add( Component c ) {
+         if( samples.size() < MAX_SAMPLES ) {
+            samples.add( new WeakReference<Component>( c ));
+         }
+         ++count;
+      }
+
+      public String getClassName() {
+         return className;
+      }
+
+      /** Where they were first added, or null when it wasn't sampled. */
+      public Site getSite() {
+         return site;
+      }
+
+      public int getCount() {
+         return count;
+      }
+
+      /** Up to MAX_SAMPLES of the components, which are still reachable. */
+      public List<Component> getSamples() {
+         ArrayList<Component> list = new ArrayList<Component>();
+         for( WeakReference<Component> ref : samples ) {
+            Component c = ref.get();
+            if( c != null ) {
+               list.add( c );
+            }
+         }
+         return list;
+      }
+   }
+}
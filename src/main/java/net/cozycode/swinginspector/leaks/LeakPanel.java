@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.leaks;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Lists the components which the ComponentLeakDetector found to be out of 
+ * every window but still reachable, grouped by class and by where they were
+ * added.  Scanning is done on request, since it collects garbage first.
+ * Double clicking a row inspects one of it's components.
+ */
+public class LeakPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+
+   private final IClosure<Component> inspector;
+   private final LeakTableModel model = new LeakTableModel();
+   private final JTable table = new JTable( model );
+
+   private final JButton toggle = new JButton();
+   private final JButton scan = new JButton( "Collect and Scan" );
+   private final JLabel summary = new JLabel();
+
+   /**
+    * @param inspector - called with a component of a row which is double clicked
+    */
+   public LeakPanel( IClosure<Component> inspector ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][grow,fill]" ));
+      this.inspector = inspector;
+
+      toggle.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            if( ComponentLeakDetector.getInstalled() == null ) {
+               ComponentLeakDetector.install();
+            }
+            else {
+               ComponentLeakDetector.uninstall();
+               model.setRows( new ArrayList<ComponentLeakDetector.LeakGroup>() );
+            }
+            updateValues();
+         }
+      });
+
+      scan.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            ComponentLeakDetector detector = ComponentLeakDetector.getInstalled();
+            if( detector != null ) {
+               model.setRows( detector.collectAndFindLeaks() );
+            }
+            updateValues();
+         }
+      });
+
+      table.addMouseListener( new TableMouseListener() );
+      table.setAutoCreateRowSorter( true );
+
+      add( new JTitledSeparator( "Detached Components" ), "split 3" );
+      add( toggle, "growx 0" );
+      add( scan, "growx 0" );
+      add( summary );
+      add( new JScrollPane( table ));
+   }
+
+   @Override
+   public void addNotify() {
+      super.addNotify();
+      updateValues();
+   }
+
+   private void updateValues() {
+      ComponentLeakDetector detector = ComponentLeakDetector.getInstalled();
+      toggle.setText( detector == null ? "Start" : "Stop" );
+      scan.setEnabled( detector != null );
+
+      if( detector == null ) {
+         summary.setText( "The leak detector is not installed" );
+         return;
+      }
+
+      int detached = 0;
+      for( int row = 0; row < model.getRowCount(); ++row ) {
+         detached += model.getGroup( row ).getCount();
+      }
+      summary.setText( String.format( "%d tracked, %d collected, %d detached but reachable",
+         detector.getTrackedCount(), detector.getCollectedCount(), detached ));
+   }
+
+   private final class TableMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked( MouseEvent e ) {
+         int row = table.getSelectedRow();
+         if( e.getClickCount() == 2 && row >= 0 ) {
+            List<Component> samples = model.getGroup( table.convertRowIndexToModel( row )).getSamples();
+            if( !samples.isEmpty() ) {
+               inspector.yield( samples.get( 0 ));
+            }
+         }
+      }
+   }
+
+   private static final class LeakTableModel extends AbstractTableModel {
+      private static final long serialVersionUID = 1L;
+      private static final String[] COLUMNS = { "Class", "Detached", "Added At" };
+
+      private List<ComponentLeakDetector.LeakGroup> rows = new ArrayList<ComponentLeakDetector.LeakGroup>();
+
+      public void setRows( List<ComponentLeakDetector.LeakGroup> rows ) {
+         this.rows = rows;
+         fireTableDataChanged();
+      }
+
+      public ComponentLeakDetector.LeakGroup getGroup( int row ) {
+         return rows.get( row );
+      }
+
+      public int getRowCount() {
+         return rows.size();
+      }
+
+      public int getColumnCount() {
+         return COLUMNS.length;
+      }
+
+      @Override
+      public String getColumnName( int column ) {
+         return COLUMNS[ column ];
+      }
+
+      @Override
+      public Class<?> getColumnClass( int column ) {
+         return column == 1 ? Integer.class : String.class;
+      }
+
+      public Object getValueAt( int row, int column ) {
+         ComponentLeakDetector.LeakGroup group = rows.get( row );
+         switch( column ) {
+            case 0: return group.getClassName();
+            case 1: return group.getCount();
+            case 2: return group.getSite() == null ? "(not sampled)" : group.getSite().toString();
+            default: return null;
+         }
+      }
+   }
+}
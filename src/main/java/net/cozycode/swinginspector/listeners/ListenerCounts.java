@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.listeners;
+
+import java.awt.Component;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EventListener;
+import java.util.EventListenerProxy;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.JComponent;
+import javax.swing.event.EventListenerList;
+
+/**
+ * The number of listeners of each type registered on a component.<br />
+ * <br />
+ * The types are those of the component's public add*Listener() methods,
+ * found once per class, and any others in a JComponent's EventListenerList.
+ * Each is counted with Component.getListeners().  Listeners which belong to
+ * the inspector itself are counted separately, so that inspecting a 
+ * component doesn't make it look like it's leaking.
+ */
+public final class ListenerCounts {
+   private static final String INSPECTOR_PACKAGE = "net.cozycode.swinginspector.";
+   private static final Map<Class<?>, List<Class<? extends EventListener>>> TYPES 
+      = new HashMap<Class<?>, List<Class<? extends EventListener>>>();
+
+   private static Field listenerListField = null;
+   private static boolean listenerListFieldFailed = false;
+
+   private final List<Class<? extends EventListener>> types;
+   private final int[] counts;
+   private final int[] inspectorCounts;
+   private final int total;
+
+
+   private ListenerCounts( List<Class<? extends EventListener>> types, int[] counts, int[] inspectorCounts ) {
+      this.types = types;
+      this.counts = counts;
+      this.inspectorCounts = inspectorCounts;
+
+      int sum = 0;
+      for( int count : counts ) {
+         sum += count;
+      }
+      this.total = sum;
+   }
+
+   /** Counts the listeners registered on 'c'.  Only call on the EDT. */
+   public static ListenerCounts count( Component c ) {
+      Set<Class<? extends EventListener>> all = new LinkedHashSet<Class<? extends EventListener>>( getListenerTypes( c.getClass() ));
+      if( c instanceof JComponent ) {
+         all.addAll( getListenerListTypes( (JComponent)c ));
+      }
+
+      List<Class<? extends EventListener>> types = new ArrayList<Class<? extends EventListener>>( all );
+      int[] counts = new int[ types.size() ];
+      int[] inspectorCounts = new int[ types.size() ];
+      for( int i = 0; i < counts.length; ++i ) {
+         EventListener[] listeners;
+         try {
+            listeners = c.getListeners( types.get( i ));
+         }
+         catch( RuntimeException e ) {
+            // Some components reject types they don't support
+            continue;
+         }
+
+         for( EventListener listener : listeners ) {
+            if( unwrap( listener ).getClass().getName().startsWith( INSPECTOR_PACKAGE )) {
+               ++inspectorCounts[i];
+            }
+            else {
+               ++counts[i];
+            }
+         }
+      }
+      return new ListenerCounts( types, counts, inspectorCounts );
+   }
+
+   /** 
+    * The listener inside any proxies, such as those added for a property 
+    * name by addPropertyChangeListener( name, listener ).
+    */
+   private static EventListener unwrap( EventListener listener ) {
+      while( listener instanceof EventListenerProxy ) {
+         listener = ((EventListenerProxy<?>)listener).getListener();
+      }
+      return listener;
+   }
+
+   /** 
+    * The listener types accepted by the public add*Listener() methods of the
+    * class, sorted by name.  Found once per class.
+    */
+   public static List<Class<? extends EventListener>> getListenerTypes( Class<?> clazz ) {
+      List<Class<? extends EventListener>> types = TYPES.get( clazz );
+      if( types != null ) {
+         return types;
+      }
+
+      Set<Class<? extends EventListener>> found = new LinkedHashSet<Class<? extends EventListener>>();
+      for( Method method : clazz.getMethods() ) {
+         Class<?>[] params = method.getParameterTypes();
+         if( method.getName().startsWith( "add" ) && method.getName().endsWith( "Listener" ) 
+               && params.length == 1 && EventListener.class.isAssignableFrom( params[0] )
+               && !Modifier.isStatic( method.getModifiers() )) {
+            found.add( params[0].asSubclass( EventListener.class ));
+         }
+      }
+
+      types = new ArrayList<Class<? extends EventListener>>( found );
+      Collections.sort( types, new Comparator<Class<?>>() {
+         public int compare( Class<?> a, Class<?> b ) {
+            return a.getSimpleName().compareTo( b.getSimpleName() );
+         }
+      });
+      types = Collections.unmodifiableList( types );
+      TYPES.put( clazz, types );
+      return types;
+   }
+
+   /** 
+    * The types in the JComponent's own EventListenerList, which can hold types 
+    * with no add method.  Empty when the list can't be reached by reflection.
+    */
+   private static List<Class<? extends EventListener>> getListenerListTypes( JComponent c ) {
+      ArrayList<Class<? extends EventListener>> types = new ArrayList<Class<? extends EventListener>>();
+      if( listenerListField == null && !listenerListFieldFailed ) {
+         try {
+            listenerListField = JComponent.class.getDeclaredField( "listenerList" );
+            listenerListField.setAccessible( true );
+         }
+         catch( Exception e ) {
+            // Not accessible on this platform, the add methods will have to do
+            listenerListField = null;
+            listenerListFieldFailed = true;
+         }
+      }
+
+      if( listenerListField != null ) {
+         try {
+            EventListenerList list = (EventListenerList)listenerListField.get( c );
+            Object[] pairs = list.getListenerList();
+            for( int i = 0; i < pairs.length; i += 2 ) {
+               types.add( ((Class<?>)pairs[i] ).asSubclass( EventListener.class ));
+            }
+         }
+         catch( IllegalAccessException e ) {
+            listenerListFieldFailed = true;
+         }
+      }
+      return types;
+   }
+
+   public List<Class<? extends EventListener>> getTypes() {
+      return types;
+   }
+
+   /** The number of listeners of the type at 'index', not counting the inspector's. */
+   public int getCount( int index ) {
+      return counts[ index ];
+   }
+
+   /** The number of the inspector's own listeners of the type at 'index'. */
+   public int getInspectorCount( int index ) {
+      return inspectorCounts[ index ];
+   }
+
+   /** The number of listeners of all types, not counting the inspector's. */
+   public int getTotal() {
+      return total;
+   }
+
+   /** The index of the type with the most listeners, or -1 when there are none. */
+   public int getLargest() {
+      int largest = -1;
+      for( int i = 0; i < counts.length; ++i ) {
+         if( counts[i] > 0 && ( largest < 0 || counts[i] > counts[ largest ] )) {
+            largest = i;
+         }
+      }
+      return largest;
+   }
+}
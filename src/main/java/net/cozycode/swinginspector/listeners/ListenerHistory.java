@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.listeners;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.cozycode.swinginspector.util.WeakIdentityMap;
+
+/**
+ * Remembers how the number of listeners on each component has changed from
+ * one sample to the next, to find those whose listeners keep accumulating.
+ * A component is flagged as growing once it's total has gone up in 
+ * GROWING_SAMPLES samples without ever going down, which is what an add 
+ * with no matching remove looks like.<br />
+ * <br />
+ * Components are held weakly.  The inspector samples the component it is 
+ * showing and a scan samples every component in every window.  Like the 
+ * rest of Swing, this class is meant to be used from the event dispatch 
+ * thread.
+ */
+public class ListenerHistory {
+   public static final int GROWING_SAMPLES = 3;
+
+   private static final ListenerHistory shared = new ListenerHistory();
+
+   private final WeakIdentityMap<Component, Growth> history = new WeakIdentityMap<Component, Growth>();
+
+
+   /** The history used by the inspector. */
+   public static ListenerHistory getShared() {
+      return shared;
+   }
+
+   /** Records a sample of the component's listener count and returns it's history. */
+   public Growth record( Component c, ListenerCounts counts ) {
+      Growth growth = history.get( c );
+      if( growth == null ) {
+         growth = new Growth( c, counts.getTotal() );
+         history.put( c, growth );
+      }
+      growth.record( counts );
+      return growth;
+   }
+
+   /** The component's history, or null if it's never been sampled. */
+   public Growth get( Component c ) {
+      return history.get( c );
+   }
+
+   public void clear() {
+      history.clear();
+   }
+
+   /**
+    * Samples every component in every window except 'ignored' and ranks 
+    * them, growing components first, then by how much they've grown and 
+    * then by how many listeners they have.  Only call on the EDT.
+    */
+   public List<Growth> scan( Window ignored, int limit ) {
+      ArrayList<Growth> all = new ArrayList<Growth>();
+      for( Window window : Window.getWindows() ) {
+         if( window != ignored && window.isDisplayable() ) {
+            scan( window, all );
+         }
+      }
+
+      Collections.sort( all, new Comparator<Growth>() {
+         public int compare( Growth a, Growth b ) {
+            if( a.isGrowing() != b.isGrowing() ) {
+               return a.isGrowing() ? -1 : 1;
+            }
+            if( a.getGrowth() != b.getGrowth() ) {
+               return b.getGrowth() - a.getGrowth();
+            }
+            return b.getLast() - a.getLast();
+         }
+      });
+      return all.size() > limit ? new ArrayList<Growth>( all.subList( 0, limit )) : all;
+   }
+
+   private void scan( Component c, List<Growth> all ) {
+      all.add( record( c, ListenerCounts.count( c )));
+      if( c instanceof Container ) {
+         for( Component child : ((Container)c).getComponents() ) {
+            scan( child, all );
+         }
+      }
+   }
+
+   /** The samples of one component's listener count. */
+   public static final class Growth {
+      private final WeakReference<Component> component;
+      private final int first;
+      private int last;
+      private int increases = 0;
+      private boolean decreased = false;
+      private int samples = 0;
+      private String largest = null;
+      private int largestCount = 0;
+
+      private Growth( Component c, int first ) {
+         this.component = new WeakReference<Component>( c );
+         this.first = first;
+         this.last = first;
+      }
+
+      private void record( ListenerCounts counts ) {
+         int total = counts.getTotal();
+         if( total > last ) {
+            ++increases;
+         }
+         else if( total < last ) {
+            decreased = true;
+         }
+         last = total;
+         ++samples;
+
+         int index = counts.getLargest();
+         largest = index < 0 ? null : counts.getTypes().get( index ).getSimpleName();
+         largestCount = index < 0 ? 0 : counts.getCount( index );
+      }
+
+      public Component getComponent() {
+         return component.get();
+      }
+
+      /** The total when first sampled. */
+      public int getFirst() {
+         return first;
+      }
+
+      /** The total when last sampled. */
+      public int getLast() {
+         return last;
+      }
+
+      /** How far the total has grown since the first sample. */
+      public int getGrowth() {
+         return last - first;
+      }
+
+      public int getSampleCount() {
+         return samples;
+      }
+
+      /** The number of samples in which the total went up. */
+      public int getIncreases() {
+         return increases;
+      }
+
+      /** Whether the total has only ever gone up, at least GROWING_SAMPLES times. */
+      public boolean isGrowing() {
+         return !decreased && increases >= GROWING_SAMPLES;
+      }
+
+      /** The simple name of the type with the most listeners at the last sample, or null. */
+      public String getLargestType() {
+         return largest;
+      }
+
+      public int getLargestCount() {
+         return largestCount;
+      }
+   }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.listeners;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Ranks the components in every window by how their listeners have grown
+ * from one scan to the next, with those that only ever grow first.  Scan 
+ * a few times around the action which is suspected of leaking listeners.
+ * Double clicking a row inspects it's component.
+ */
+public class ListenerPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+   private static final int MAX_ROWS = 200;
+
+   private final IClosure<Component> inspector;
+   private final ListenerTableModel model = new ListenerTableModel();
+   private final JTable table = new JTable( model );
+
+   private final JButton scan = new JButton( "Scan" );
+   private final JButton clear = new JButton( "Clear History" );
+   private final JLabel summary = new JLabel( "Not scanned yet" );
+   private int scans = 0;
+
+   /**
+    * @param inspector - called with the component of a row which is double clicked
+    */
+   public ListenerPanel( IClosure<Component> inspector ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][grow,fill]" ));
+      this.inspector = inspector;
+
+      scan.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            List<ListenerHistory.Growth> rows = ListenerHistory.getShared().scan( SwingUtilities.getWindowAncestor( ListenerPanel.this ), MAX_ROWS );
+            model.setRows( rows );
+
+            int growing = 0;
+            for( ListenerHistory.Growth growth : rows ) {
+               growing += growth.isGrowing() ? 1 : 0;
+            }
+            ++scans;
+            summary.setText( "Scan "+ scans +": "+ growing +" components have only gained listeners in the last "+ ListenerHistory.GROWING_SAMPLES +" or more changes" );
+         }
+      });
+
+      clear.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            ListenerHistory.getShared().clear();
+            model.setRows( new ArrayList<ListenerHistory.Growth>() );
+            scans = 0;
+            summary.setText( "Not scanned yet" );
+         }
+      });
+
+      table.addMouseListener( new TableMouseListener() );
+      table.setAutoCreateRowSorter( true );
+
+      add( new JTitledSeparator( "Listener Growth" ), "split 3" );
+      add( scan, "growx 0" );
+      add( clear, "growx 0" );
+      add( summary );
+      add( new JScrollPane( table ));
+   }
+
+   private final class TableMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked( MouseEvent e ) {
+         int row = table.getSelectedRow();
+         if( e.getClickCount() == 2 && row >= 0 ) {
+            Component c = model.getComponent( table.convertRowIndexToModel( row ));
+            if( c != null ) {
+               inspector.yield( c );
+            }
+         }
+      }
+   }
+
+   private static final class ListenerTableModel extends AbstractTableModel {
+      private static final long serialVersionUID = 1L;
+      private static final String[] COLUMNS = { 
+         "Component", "Listeners", "Growth", "Increases", "Growing", "Most Common" 
+      };
+
+      private List<ListenerHistory.Growth> rows = new ArrayList<ListenerHistory.Growth>();
+
+      public void setRows( List<ListenerHistory.Growth> rows ) {
+         this.rows = rows;
+         fireTableDataChanged();
+      }
+
+      public Component getComponent( int row ) {
+         return rows.get( row ).getComponent();
+      }
+
+      public int getRowCount() {
+         return rows.size();
+      }
+
+      public int getColumnCount() {
+         return COLUMNS.length;
+      }
+
+      @Override
+      public String getColumnName( int column ) {
+         return COLUMNS[ column ];
+      }
+
+      @Override
+      public Class<?> getColumnClass( int column ) {
+         switch( column ) {
+            case 1: case 2: case 3: return Integer.class;
+            case 4: return Boolean.class;
+            default: return String.class;
+         }
+      }
+
+      public Object getValueAt( int row, int column ) {
+         ListenerHistory.Growth growth = rows.get( row );
+         switch( column ) {
+            case 0: return describe( growth.getComponent() );
+            case 1: return growth.getLast();
+            case 2: return growth.getGrowth();
+            case 3: return growth.getIncreases();
+            case 4: return growth.isGrowing();
+            case 5: return growth.getLargestType() == null ? "" : growth.getLargestType() +" ("+ growth.getLargestCount() +")";
+            default: return null;
+         }
+      }
+
+      private static String describe( Component c ) {
+         if( c == null ) {
+            return "(collected)";
+         }
+
+         String type = c.getClass().getSimpleName();
+         if( type.length() == 0 ) {
+            type = c.getClass().getName();
+         }
+
+         String name = c.getName();
+         return type + ( name != null ? " \""+ name +"\"" : "" );
+      }
+   }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.monitor;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long events wait in the EventQueue before they are dispatched.
+ * <br />
+ * A daemon thread posts a probe at a fixed rate and the probe records, when 
+ * it's dispatched, how long it waited in a LatencyHistogram.  Only one probe
+ * is outstanding at a time, so a stalled EDT doesn't have probes pile up 
+ * behind it.  While a probe is overdue by more than the stall threshold, the
+ * EDT's stack is sampled every period and the samples are grouped by stack.
+ * <br />
+ * The probe does a few clock reads and an array increment, so at the default
+ * rate it costs the EDT far less than 1% of it's time.  The time spent in 
+ * probes is measured and reported by getOverhead().  The histogram and stall
+ * samples are read from the EDT.
+ */
+public class EdtLatencyMonitor {
+   public static final long DEFAULT_PERIOD_MILLIS = 20;
+   public static final long DEFAULT_STALL_THRESHOLD_MILLIS = 100;
+
+   /** The number of frames which identify a stack when grouping samples. */
+   private static final int STACK_KEY_DEPTH = 12;
+
+   private final long periodNanos;
+   private final long thresholdNanos;
+
+   /** Latencies in microseconds, only touched on the EDT. */
+   private final LatencyHistogram histogram = new LatencyHistogram();
+
+   /** Stall samples by stack, guarded by itself. */
+   private final Map<String, StallSample> stalls = new HashMap<String, StallSample>();
+
+   private volatile Probe outstanding = null;
+   private volatile Thread edt = null;
+   private Thread sampler = null;
+
+   private long probeNanos = 0;
+   private long startNanos = System.nanoTime();
+
+   public EdtLatencyMonitor() {
+      this( DEFAULT_PERIOD_MILLIS, DEFAULT_STALL_THRESHOLD_MILLIS );
+   }
+
+   public EdtLatencyMonitor( long periodMillis, long stallThresholdMillis ) {
+      this.periodNanos = TimeUnit.MILLISECONDS.toNanos( periodMillis );
+      this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos( stallThresholdMillis );
+   }
+
+   public synchronized void start() {
+      if( sampler != null ) {
+         return;
+      }
+
+      sampler = new Thread( new Sampler(), "EDT Latency Monitor" );
+      sampler.setDaemon( true );
+      sampler.start();
+   }
+
+   public synchronized void stop() {
+      if( sampler != null ) {
+         sampler.interrupt();
+         sampler = null;
+      }
+   }
+
+   public synchronized boolean isRunning() {
+      return sampler != null;
+   }
+
+   /** The queue latencies seen so far, in microseconds.  Only use on the EDT. */
+   public LatencyHistogram getHistogram() {
+      return histogram;
+   }
+
+   /** The fraction of EDT time spent running probes since the last reset.  Only use on the EDT. */
+   public double getOverhead() {
+      long elapsed = System.nanoTime() - startNanos;
+      return elapsed > 0 ? (double)probeNanos / elapsed : 0;
+   }
+
+   /** The stall samples, the most frequent first. */
+   public List<StallSample> getStalls() {
+      ArrayList<StallSample> list;
+      synchronized( stalls ) {
+         list = new ArrayList<StallSample>( stalls.size() );
+         for( StallSample sample : stalls.values() ) {
+            list.add( sample.copy() );
+         }
+      }
+
+      Collections.sort( list, new Comparator<StallSample>() {
+         @Override
+         public int compare( StallSample a, StallSample b ) {
+            if( a.getCount() != b.getCount() ) {
+               return a.getCount() > b.getCount() ? -1 : 1;
+            }
+            return a.getWorstMillis() > b.getWorstMillis() ? -1 : a.getWorstMillis() < b.getWorstMillis() ? 1 : 0;
+         }
+      });
+      return list;
+   }
+
+   /** Clears the histogram and stall samples.  Only use on the EDT. */
+   public void reset() {
+      histogram.reset();
+      probeNanos = 0;
+      startNanos = System.nanoTime();
+      synchronized( stalls ) {
+         stalls.clear();
+      }
+   }
+
+   private void sampleStall( long overdueNanos ) {
+      Thread thread = edt;
+      if( thread == null ) {
+         return;
+      }
+
+      StackTraceElement[] trace = thread.getStackTrace();
+      if( trace.length == 0 ) {
+         return;
+      }
+
+      StringBuilder key = new StringBuilder();
+      for( int i = 0; i < trace.length && i < STACK_KEY_DEPTH; ++i ) {
+         key.append( trace[i] ).append( '\n' );
+      }
+
+      long millis = TimeUnit.NANOSECONDS.toMillis( overdueNanos );
+      synchronized( stalls ) {
+         StallSample sample = stalls.get( key.toString() );
+         if( sample == null ) {
+            stalls.put( key.toString(), new StallSample( trace, millis ));
+         }
+         else {
+            sample.add( millis );
+         }
+      }
+   }
+
+   /** Posted to the EventQueue, records how long it waited. */
+   private final class Probe implements Runnable {
+      private final long posted = System.nanoTime();
+
+      public void run() {
+         long start = System.nanoTime();
+         edt = Thread.currentThread();
+
+         histogram.recordCorrected( 
+            TimeUnit.NANOSECONDS.toMicros( start - posted ), 
+            TimeUnit.NANOSECONDS.toMicros( periodNanos ) 
+         );
+         outstanding = null;
+
+         probeNanos += System.nanoTime() - start;
+      }
+   }
+
+   private final class Sampler implements Runnable {
+      public void run() {
+         try {
+            while( !Thread.currentThread().isInterrupted() ) {
+               TimeUnit.NANOSECONDS.sleep( periodNanos );
+
+               Probe probe = outstanding;
+               if( probe == null ) {
+                  outstanding = new Probe();
+                  EventQueue.invokeLater( outstanding );
+               }
+               else {
+                  long overdue = System.nanoTime() - probe.posted;
+                  if( overdue >= thresholdNanos ) {
+                     sampleStall( overdue );
+                  }
+               }
+            }
+         }
+         catch( InterruptedException e ) {
+            // stopped
+         }
+      }
+   }
+
+   /** The EDT stack seen while the EDT was stalled, and how often it was seen. */
+   public static final class StallSample {
+      private final StackTraceElement[] trace;
+      private int count;
+      private long worstMillis;
+
+      StallSample( StackTraceElement[] trace, long millis ) {
+         this.trace = trace;
+         this.count = 1;
+         this.worstMillis = millis;
+      }
+
+      void add( long millis ) {
+         ++count;
+         worstMillis = Math.max( worstMillis, millis );
+      }
+
+      StallSample copy() {
+         StallSample copy = new StallSample( trace, worstMillis );
+         copy.count = count;
+         return copy;
+      }
+
+      public StackTraceElement[] getTrace() {
+         return trace.clone();
+      }
+
+      /** The number of samples which saw this stack. */
+      public int getCount() {
+         return count;
+      }
+
+      /** How long the EDT had been stalled at the longest sample. */
+      public long getWorstMillis() {
+         return worstMillis;
+      }
+   }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.monitor;
+
+import java.util.Arrays;
+
+/**
+ * A log-linear histogram of non-negative values, after HdrHistogram.<br />
+ * <br />
+ * Values are grouped into buckets by power of two and each bucket is split 
+ * into 64 equal sub-buckets, so every recorded value is kept to within 1.6%
+ * whatever it's magnitude, in a fixed array and without allocating.  Values 
+ * below 128 are exact.  Not thread safe.
+ */
+public class LatencyHistogram {
+   private static final int SUB_BUCKET_BITS = 7;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+   private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS + 1;
+
+   private final long[] counts = new long[ ( BUCKET_COUNT + 1 ) * SUB_BUCKET_HALF ];
+   private long total = 0;
+   private long min = Long.MAX_VALUE;
+   private long max = 0;
+
+   public void record( long value ) {
+      record( value, 1 );
+   }
+
+   /**
+    * Records the value, plus the values which would have been recorded had
+    * sampling not been held up by it.  When a probe sent every 'interval' is
+    * delayed, the probes which should have been sent meanwhile would have 
+    * seen 'interval' less delay each.  Without these, stalls are under 
+    * represented in the percentiles.
+    */
+   public void recordCorrected( long value, long interval ) {
+      record( value );
+      if( interval <= 0 ) {
+         return;
+      }
+      for( long missed = value - interval; missed >= interval; missed -= interval ) {
+         record( missed );
+      }
+   }
+
+   private void record( long value, long count ) {
+      if( value < 0 ) {
+         throw new IllegalArgumentException( "Negative value: "+ value );
+      }
+
+      counts[ indexOf( value ) ] += count;
+      total += count;
+      min = Math.min( min, value );
+      max = Math.max( max, value );
+   }
+
+   public long getCount() {
+      return total;
+   }
+
+   public long getMin() {
+      return total == 0 ? 0 : min;
+   }
+
+   public long getMax() {
+      return max;
+   }
+
+   /**
+    * The value which 'percentile' percent of the recorded values are at or
+    * below, to the precision of the histogram.
+    */
+   public long getValueAtPercentile( double percentile ) {
+      if( total == 0 ) {
+         return 0;
+      }
+
+      long rank = Math.max( 1, (long)Math.ceil( Math.min( percentile, 100.0 ) / 100.0 * total ));
+      long seen = 0;
+      for( int i = 0; i < counts.length; ++i ) {
+         seen += counts[i];
+         if( seen >= rank ) {
+            return Math.min( highestEquivalent( i ), max );
+         }
+      }
+      return max;
+   }
+
+   public void reset() {
+      Arrays.fill( counts, 0 );
+      total = 0;
+      min = Long.MAX_VALUE;
+      max = 0;
+   }
+
+   private static int indexOf( long value ) {
+      int bucket = Math.max( 0, 63 - Long.numberOfLeadingZeros( value ) - ( SUB_BUCKET_BITS - 1 ));
+      int sub = (int)( value >>> bucket );
+      return bucket * SUB_BUCKET_HALF + sub;
+   }
+
+   private static long highestEquivalent( int index ) {
+      if( index < SUB_BUCKET_COUNT ) {
+         return index;
+      }
+
+      int bucket = index / SUB_BUCKET_HALF - 1;
+      long sub = index - bucket * SUB_BUCKET_HALF;
+      return (( sub + 1 ) << bucket ) - 1;
+   }
+}
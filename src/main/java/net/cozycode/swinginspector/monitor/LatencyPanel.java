@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.monitor;
+
+import static net.cozycode.swinginspector.components.SwingInspectorUtilities.*;
+
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Shows the EDT queue latency percentiles and the stacks most often seen
+ * while the EDT was stalled.  Refreshes once a second while displayed.
+ */
+public class LatencyPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+   private static final int REFRESH_DELAY = 1000;
+   private static final int MAX_STACKS = 10;
+   private static final int MAX_FRAMES = 25;
+
+   private final EdtLatencyMonitor monitor;
+   private final Timer refreshTimer = new Timer( REFRESH_DELAY, new RefreshListener() );
+
+   private final JLabel p50 = new JLabel();
+   private final JLabel p99 = new JLabel();
+   private final JLabel max = new JLabel();
+   private final JLabel count = new JLabel();
+   private final JLabel overhead = new JLabel();
+   private final JTextArea stacks = new JTextArea();
+
+   public LatencyPanel( EdtLatencyMonitor monitor ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][][grow,fill]" ));
+      this.monitor = monitor;
+
+      stacks.setEditable( false );
+      stacks.setFont( new Font( Font.MONOSPACED, Font.PLAIN, 12 ));
+
+      JButton reset = new JButton( "Reset" );
+      reset.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            LatencyPanel.this.monitor.reset();
+            updateValues();
+         }
+      });
+
+      add( new JTitledSeparator( "Event Queue Latency" ));
+      add( createContent() );
+      add( new JTitledSeparator( "Stalled EDT Stacks" ), "split 2" );
+      add( reset, "growx 0" );
+      add( new JScrollPane( stacks ));
+   }
+
+   @Override
+   public void addNotify() {
+      super.addNotify();
+      updateValues();
+      refreshTimer.start();
+   }
+
+   @Override
+   public void removeNotify() {
+      refreshTimer.stop();
+      super.removeNotify();
+   }
+
+   private JComponent createContent() {
+      JPanel pane = new JPanel( new MigLayout(  
+         "wrap, fill, insets 0 10 0 0", 
+         "[align right]6[grow,fill]",
+         "[align top]"
+      ));
+
+      addTo( pane, "p50:", p50 );
+      addTo( pane, "p99:", p99 );
+      addTo( pane, "Max:", max );
+      addTo( pane, "Samples:", count );
+      addTo( pane, "Monitor Overhead:", overhead );
+      return pane;
+   }
+
+   private void updateValues() {
+      LatencyHistogram histogram = monitor.getHistogram();
+      p50.setText( formatMicros( histogram.getValueAtPercentile( 50 )));
+      p99.setText( formatMicros( histogram.getValueAtPercentile( 99 )));
+      max.setText( formatMicros( histogram.getMax() ));
+      count.setText( ""+ histogram.getCount() );
+      overhead.setText( String.format( "%.3f%% of EDT time", monitor.getOverhead() * 100 ));
+
+      StringBuilder text = new StringBuilder();
+      List<EdtLatencyMonitor.StallSample> samples = monitor.getStalls();
+      for( int i = 0; i < samples.size() && i < MAX_STACKS; ++i ) {
+         EdtLatencyMonitor.StallSample sample = samples.get( i );
+         text.append( sample.getCount() ).append( " samples, stalled up to " ).append( sample.getWorstMillis() ).append( " ms\n" );
+
+         StackTraceElement[] trace = sample.getTrace();
+         for( int j = 0; j < trace.length && j < MAX_FRAMES; ++j ) {
+            text.append( "    at " ).append( trace[j] ).append( '\n' );
+         }
+         text.append( '\n' );
+      }
+
+      if( !text.toString().equals( stacks.getText() )) {
+         stacks.setText( text.toString() );
+         stacks.setCaretPosition( 0 );
+      }
+   }
+
+   private static String formatMicros( long micros ) {
+      return String.format( "%.2f ms", micros / 1000.0 );
+   }
+
+   private final class RefreshListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         updateValues();
+      }
+   }
+}
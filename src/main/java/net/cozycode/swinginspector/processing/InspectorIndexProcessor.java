@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.processing;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an IInspectorProvider which registers every class annotated with
+ * @Inspector, along with the META-INF/services entry which lets ServiceLoader 
+ * find it.  The inspectors are then discovered at startup without scanning
+ * the classpath.<br />
+ * <br />
+ * The provider is generated as 'GeneratedInspectorProvider' in the package 
+ * of the first inspector (by name).  Jars which share that package should 
+ * pick another name with -Aswinginspector.provider=fully.qualified.Name
+ */
+@SupportedAnnotationTypes( InspectorIndexProcessor.INSPECTOR_ANNOTATION )
+@SupportedOptions( InspectorIndexProcessor.PROVIDER_OPTION )
+public class InspectorIndexProcessor extends AbstractProcessor {
+   static final String INSPECTOR_ANNOTATION = "net.cozycode.swinginspector.Inspector";
+   static final String PROVIDER_OPTION = "swinginspector.provider";
+
+   private static final String PROVIDER_INTERFACE = "net.cozycode.swinginspector.IInspectorProvider";
+   private static final String FACTORY_CLASS = "net.cozycode.swinginspector.InspectorFactory";
+   private static final String DEFAULT_PROVIDER_NAME = "GeneratedInspectorProvider";
+
+   private boolean written = false;
+
+   @Override
+   public SourceVersion getSupportedSourceVersion() {
+      return SourceVersion.latestSupported();
+   }
+
+   @Override
+   public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+      TypeElement annotation = processingEnv.getElementUtils().getTypeElement( INSPECTOR_ANNOTATION );
+      if( annotation == null ) {
+         return false;
+      }
+
+      List<TypeElement> inspectors = new ArrayList<TypeElement>();
+      for( Element element : roundEnv.getElementsAnnotatedWith( annotation )) {
+         if( isValid( element )) {
+            inspectors.add( (TypeElement)element );
+         }
+      }
+
+      if( inspectors.isEmpty() ) {
+         return true;
+      }
+
+      // Everything is written in one go so that the index is a single class.
+      // Inspectors generated by other processors in later rounds aren't seen.
+      if( written ) {
+         for( TypeElement inspector : inspectors ) {
+            warning( inspector, "@Inspector class generated in a later round is not indexed" );
+         }
+         return true;
+      }
+
+      Collections.sort( inspectors, new Comparator<TypeElement>() {
+         @Override
+         public int compare( TypeElement a, TypeElement b ) {
+            return a.getQualifiedName().toString().compareTo( b.getQualifiedName().toString() );
+         }
+      });
+
+      try {
+         String provider = getProviderName( inspectors.get( 0 ));
+         writeProvider( provider, inspectors );
+         writeServiceEntry( provider, inspectors );
+         written = true;
+      }
+      catch( IOException e ) {
+         processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, "Unable to write the inspector index: "+ e );
+      }
+
+      return true;
+   }
+
+   private boolean isValid( Element element ) {
+      if( element.getKind() != ElementKind.CLASS ) {
+         error( element, "@Inspector may only be applied to classes" );
+         return false;
+      }
+      if( !element.getModifiers().contains( Modifier.PUBLIC ) || element.getModifiers().contains( Modifier.ABSTRACT )) {
+         error( element, "@Inspector classes must be public and concrete" );
+         return false;
+      }
+      if( element.getEnclosingElement().getKind() != ElementKind.PACKAGE && !element.getModifiers().contains( Modifier.STATIC )) {
+         error( element, "nested @Inspector classes must be static" );
+         return false;
+      }
+
+      TypeMirror jcomponent = processingEnv.getElementUtils().getTypeElement( "javax.swing.JComponent" ).asType();
+      if( !processingEnv.getTypeUtils().isAssignable( element.asType(), jcomponent )) {
+         error( element, "@Inspector classes must extend javax.swing.JComponent" );
+         return false;
+      }
+      return true;
+   }
+
+   private String getProviderName( TypeElement first ) {
+      String option = processingEnv.getOptions().get( PROVIDER_OPTION );
+      if( option != null ) {
+         return option;
+      }
+
+      PackageElement pkg = processingEnv.getElementUtils().getPackageOf( first );
+      return pkg.isUnnamed()
+         ? DEFAULT_PROVIDER_NAME
+         : pkg.getQualifiedName() +"."+ DEFAULT_PROVIDER_NAME;
+   }
+
+   private void writeProvider( String provider, List<TypeElement> inspectors ) throws IOException {
+      int dot = provider.lastIndexOf( '.' );
+      String pkg = dot >= 0 ? provider.substring( 0, dot ) : null;
+      String simpleName = provider.substring( dot + 1 );
+
+      Writer writer = processingEnv.getFiler().createSourceFile( provider, inspectors.toArray( new Element[ inspectors.size() ])).openWriter();
+      PrintWriter out = new PrintWriter( writer );
+      try {
+         if( pkg != null ) {
+            out.println( "package "+ pkg +";" );
+            out.println();
+         }
+         out.println( "/** Generated by "+ InspectorIndexProcessor.class.getName() +" from the @Inspector annotations. */" );
+         out.println( "public final class "+ simpleName +" implements "+ PROVIDER_INTERFACE +" {" );
+         out.println( "   public void register( "+ FACTORY_CLASS +" factory ) {" );
+         for( TypeElement inspector : inspectors ) {
+            out.println( "      factory.add( "+ getInspectedType( inspector ) +".class, "+ getSourceName( inspector ) +".class );" );
+         }
+         out.println( "   }" );
+         out.println( "}" );
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   private void writeServiceEntry( String provider, List<TypeElement> inspectors ) throws IOException {
+      FileObject file = processingEnv.getFiler().createResource( 
+         StandardLocation.CLASS_OUTPUT, 
+         "", 
+         "META-INF/services/"+ PROVIDER_INTERFACE,
+         inspectors.toArray( new Element[ inspectors.size() ])
+      );
+
+      PrintWriter out = new PrintWriter( file.openWriter() );
+      try {
+         out.println( provider );
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   /**
+    * Reads the annotation's value through the mirror API, since the 
+    * class it names may not have been compiled yet.
+    */
+   private String getInspectedType( TypeElement inspector ) {
+      for( AnnotationMirror mirror : inspector.getAnnotationMirrors() ) {
+         TypeElement type = (TypeElement)mirror.getAnnotationType().asElement();
+         if( type.getQualifiedName().contentEquals( INSPECTOR_ANNOTATION )) {
+            for( Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet() ) {
+               if( entry.getKey().getSimpleName().contentEquals( "value" )) {
+                  TypeMirror value = (TypeMirror)entry.getValue().getValue();
+                  return getSourceName( (TypeElement)((DeclaredType)value).asElement() );
+               }
+            }
+         }
+      }
+      throw new IllegalStateException( "No @Inspector value on "+ inspector );
+   }
+
+   /** The name to use in source, which for nested classes is the canonical name. */
+   private static String getSourceName( TypeElement type ) {
+      return type.getQualifiedName().toString();
+   }
+
+   private void error( Element element, String message ) {
+      processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, message, element );
+   }
+
+   private void warning( Element element, String message ) {
+      processingEnv.getMessager().printMessage( Diagnostic.Kind.WARNING, message, element );
+   }
+}
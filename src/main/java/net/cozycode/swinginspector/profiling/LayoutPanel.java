@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.profiling;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Lists the containers which spend the most time in their own layout, 
+ * according to the installed LayoutProfiler.  Double clicking a row 
+ * inspects it's container.  Refreshes once a second while displayed.
+ */
+public class LayoutPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+   private static final int REFRESH_DELAY = 1000;
+   private static final int MAX_ROWS = 100;
+
+   private final IClosure<Component> inspector;
+   private final Timer refreshTimer = new Timer( REFRESH_DELAY, new RefreshListener() );
+   private final LayoutTableModel model = new LayoutTableModel();
+   private final JTable table = new JTable( model );
+
+   private final JButton toggle = new JButton();
+   private final JButton reset = new JButton( "Reset" );
+   private final JLabel summary = new JLabel();
+
+   /**
+    * @param inspector - called with the container of a row which is double clicked
+    */
+   public LayoutPanel( IClosure<Component> inspector ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][grow,fill]" ));
+      this.inspector = inspector;
+
+      toggle.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            if( LayoutProfiler.getInstalled() == null ) {
+               LayoutProfiler.install( SwingUtilities.getWindowAncestor( LayoutPanel.this ));
+            }
+            else {
+               LayoutProfiler.uninstall();
+            }
+            updateValues();
+         }
+      });
+
+      reset.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            LayoutProfiler profiler = LayoutProfiler.getInstalled();
+            if( profiler != null ) {
+               profiler.reset();
+            }
+            updateValues();
+         }
+      });
+
+      table.addMouseListener( new TableMouseListener() );
+      table.setAutoCreateRowSorter( true );
+
+      add( new JTitledSeparator( "Layout Cost" ), "split 3" );
+      add( toggle, "growx 0" );
+      add( reset, "growx 0" );
+      add( summary );
+      add( new JScrollPane( table ));
+   }
+
+   @Override
+   public void addNotify() {
+      super.addNotify();
+      updateValues();
+      refreshTimer.start();
+   }
+
+   @Override
+   public void removeNotify() {
+      refreshTimer.stop();
+      super.removeNotify();
+   }
+
+   private void updateValues() {
+      LayoutProfiler profiler = LayoutProfiler.getInstalled();
+      toggle.setText( profiler == null ? "Start" : "Stop" );
+      reset.setEnabled( profiler != null );
+
+      if( profiler == null ) {
+         summary.setText( "The layout profiler is not installed" );
+         model.setRows( new ArrayList<LayoutProfiler.LayoutStats>() );
+         return;
+      }
+
+      summary.setText( String.format( "%d panels instrumented, %.1f ms in layout over %.0f s, worst event %.2f ms",
+         profiler.getContainerCount(), 
+         profiler.getTotalNanos() / 1e6, 
+         profiler.getElapsedSeconds(),
+         profiler.getMaxCycleNanos() / 1e6
+      ));
+      model.setRows( profiler.getHottest( MAX_ROWS ));
+   }
+
+   private final class RefreshListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         updateValues();
+      }
+   }
+
+   private final class TableMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked( MouseEvent e ) {
+         int row = table.getSelectedRow();
+         if( e.getClickCount() == 2 && row >= 0 ) {
+            inspector.yield( model.getContainer( table.convertRowIndexToModel( row )));
+         }
+      }
+   }
+
+   private static final class LayoutTableModel extends AbstractTableModel {
+      private static final long serialVersionUID = 1L;
+      private static final String[] COLUMNS = { 
+         "Container", "Layout", "Self ms", "Layouts", "Layout ms", "Sizings", "Sizing ms", "Invalidations", "Repeated" 
+      };
+
+      private List<LayoutProfiler.LayoutStats> rows = new ArrayList<LayoutProfiler.LayoutStats>();
+
+      public void setRows( List<LayoutProfiler.LayoutStats> rows ) {
+         this.rows = rows;
+         fireTableDataChanged();
+      }
+
+      public Container getContainer( int row ) {
+         return rows.get( row ).getContainer();
+      }
+
+      public int getRowCount() {
+         return rows.size();
+      }
+
+      public int getColumnCount() {
+         return COLUMNS.length;
+      }
+
+      @Override
+      public String getColumnName( int column ) {
+         return COLUMNS[ column ];
+      }
+
+      @Override
+      public Class<?> getColumnClass( int column ) {
+         switch( column ) {
+            case 0: case 1: case 8: return String.class;
+            case 2: case 4: case 6: return Double.class;
+            default: return Long.class;
+         }
+      }
+
+      public Object getValueAt( int row, int column ) {
+         LayoutProfiler.LayoutStats stats = rows.get( row );
+         switch( column ) {
+            case 0: return describe( stats.getContainer() );
+            case 1: return stats.getLayout() == null ? "null" : stats.getLayout().getClass().getSimpleName();
+            case 2: return millis( stats.getSelfNanos() );
+            case 3: return stats.getLayoutCount();
+            case 4: return millis( stats.getLayoutNanos() );
+            case 5: return stats.getSizeCount();
+            case 6: return millis( stats.getSizeNanos() );
+            case 7: return stats.getInvalidations();
+            case 8: return describeRepeats( stats );
+            default: return null;
+         }
+      }
+
+      private static double millis( long nanos ) {
+         return Math.round( nanos / 1e4 ) / 100.0;
+      }
+
+      private static String describeRepeats( LayoutProfiler.LayoutStats stats ) {
+         if( !stats.isRepeated() ) {
+            return "";
+         }
+         return stats.getRepeatedLayoutCycles() +" laid out, "+ stats.getRepeatedInvalidationCycles() +" invalidated";
+      }
+
+      private static String describe( Component c ) {
+         String type = c.getClass().getSimpleName();
+         if( type.length() == 0 ) {
+            type = c.getClass().getName();
+         }
+
+         String name = c.getName();
+         return type + ( name != null ? " \""+ name +"\"" : "" );
+      }
+   }
+}
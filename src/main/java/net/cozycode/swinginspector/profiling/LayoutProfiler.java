@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.profiling;
+
+import java.awt.AWTEvent;
+import java.awt.CardLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.EventQueue;
+import java.awt.LayoutManager;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ContainerEvent;
+import java.awt.event.WindowEvent;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import net.cozycode.swinginspector.util.ComponentSlots;
+import net.cozycode.swinginspector.util.WeakIdentityMap;
+
+/**
+ * Times the layout of every JPanel by wrapping it's LayoutManager in a
+ * ProfilingLayout.  Panels added while profiling are wrapped as they are 
+ * added.<br />
+ * <br />
+ * Only JPanels are instrumented, since many of Swing's own containers cast 
+ * their layout to the class they installed.  For the same reason, 
+ * application code which casts a panel's layout (to change MigLayout 
+ * constraints, for instance) will fail while the profiler is installed.
+ * CardLayouts are left alone, as they refuse to work for a container whose
+ * getLayout() isn't them.<br />
+ * <br />
+ * An event cycle is the dispatch of one AWTEvent.  Containers laid out or
+ * invalidated more than once in a cycle are counted, as that usually means
+ * the same work is being done twice.  Like the rest of Swing, this is only
+ * to be used from the event dispatch thread.
+ */
+public class LayoutProfiler {
+   private static LayoutProfiler installed = null;
+
+   /** Windows which are never instrumented, by any profiler. */
+   private static final WeakIdentityMap<Window, Boolean> alwaysIgnored = new WeakIdentityMap<Window, Boolean>();
+
+   private final InstrumentListener instrumentListener = new InstrumentListener();
+   private final WeakIdentityMap<Window, Boolean> ignored = new WeakIdentityMap<Window, Boolean>();
+
+   /** The instrumented containers, held weakly. */
+   private final ComponentSlots containers = new ComponentSlots( 256 );
+
+   /** The time spent in nested layouts at each depth of the current one. */
+   private long[] childNanos = new long[ 32 ];
+   private int depth = -1;
+
+   private WeakReference<AWTEvent> lastEvent = null;
+   private int cycle = 1;
+   private long cycleNanos = 0;
+   private long maxCycleNanos = 0;
+   private long totalNanos = 0;
+   private long startNanos = System.nanoTime();
+
+
+   private LayoutProfiler() { 
+      /* use install() */ 
+   }
+
+   /**
+    * Instruments every JPanel in every window, except the ignored ones, 
+    * and keeps doing so as panels are added.
+    */
+   public static LayoutProfiler install( Window... ignoredWindows ) {
+      if( installed == null ) {
+         installed = new LayoutProfiler();
+         for( Window w : ignoredWindows ) {
+            installed.ignored.put( w, Boolean.TRUE );
+         }
+
+         Toolkit.getDefaultToolkit().addAWTEventListener( installed.instrumentListener, 
+            AWTEvent.CONTAINER_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK );
+         for( Window w : Window.getWindows() ) {
+            installed.instrument( w );
+         }
+      }
+      return installed;
+   }
+
+   /** Stops profiling and gives every instrumented panel back it's own layout. */
+   public static void uninstall() {
+      if( installed == null ) {
+         return;
+      }
+
+      Toolkit.getDefaultToolkit().removeAWTEventListener( installed.instrumentListener );
+      for( int slot = 0; slot < installed.containers.getHighWater(); ++slot ) {
+         Component c = installed.containers.get( slot );
+         if( c instanceof Container ) {
+            restore( (Container)c );
+         }
+      }
+      installed.containers.clear();
+      installed = null;
+   }
+
+   /**
+    * Keeps the window from being instrumented by this and every later 
+    * profiler, and restores any panels in it which already are.  Meant for
+    * the inspector's own windows, which should be registered as soon as 
+    * they are created.
+    */
+   public static void ignoreWindow( Window window ) {
+      alwaysIgnored.put( window, Boolean.TRUE );
+      if( installed != null ) {
+         restoreSubtree( window );
+      }
+   }
+
+   private static void restoreSubtree( Component c ) {
+      if( c instanceof Container ) {
+         restore( (Container)c );
+         for( Component child : ((Container)c).getComponents() ) {
+            restoreSubtree( child );
+         }
+      }
+   }
+
+   private static void restore( Container container ) {
+      LayoutManager layout = container.getLayout();
+      if( layout instanceof ProfilingLayout ) {
+         container.setLayout( ((ProfilingLayout)layout).getDelegate() );
+      }
+   }
+
+   /** The installed profiler, or null if layouts aren't being profiled. */
+   public static LayoutProfiler getInstalled() {
+      return installed;
+   }
+
+   /** The statistics of the container, or null if it isn't instrumented. */
+   public LayoutStats getStats( Container c ) {
+      ProfilingLayout layout = getProfilingLayout( c );
+      return layout == null ? null : new LayoutStats( c, layout );
+   }
+
+   /** The instrumented containers with the most self time, most first. */
+   public List<LayoutStats> getHottest( int limit ) {
+      ArrayList<LayoutStats> all = new ArrayList<LayoutStats>();
+      for( int slot = 0; slot < containers.getHighWater(); ++slot ) {
+         Component c = containers.get( slot );
+         ProfilingLayout layout = c instanceof Container ? getProfilingLayout( (Container)c ) : null;
+         if( layout != null && ( layout.layoutCount > 0 || layout.sizeCount > 0 || layout.invalidations > 0 )) {
+            all.add( new LayoutStats( (Container)c, layout ));
+         }
+      }
+
+      Collections.sort( all, new Comparator<LayoutStats>() {
+         @Override
+         public int compare( LayoutStats a, LayoutStats b ) {
+            long x = a.getSelfNanos();
+            long y = b.getSelfNanos();
+            return x > y ? -1 : x < y ? 1 : 0;
+         }
+      });
+      return all.size() > limit ? new ArrayList<LayoutStats>( all.subList( 0, limit )) : all;
+   }
+
+   /** The total time spent in instrumented layouts, not counting nested ones twice. */
+   public long getTotalNanos() {
+      return totalNanos;
+   }
+
+   /** The most layout time spent within a single event cycle. */
+   public long getMaxCycleNanos() {
+      return Math.max( maxCycleNanos, cycleNanos );
+   }
+
+   /** The number of instrumented containers. */
+   public int getContainerCount() {
+      return containers.size();
+   }
+
+   public double getElapsedSeconds() {
+      return ( System.nanoTime() - startNanos ) / 1e9;
+   }
+
+   public void reset() {
+      for( int slot = 0; slot < containers.getHighWater(); ++slot ) {
+         Component c = containers.get( slot );
+         ProfilingLayout layout = c instanceof Container ? getProfilingLayout( (Container)c ) : null;
+         if( layout != null ) {
+            layout.reset();
+         }
+      }
+      cycleNanos = 0;
+      maxCycleNanos = 0;
+      totalNanos = 0;
+      startNanos = System.nanoTime();
+   }
+
+   private ProfilingLayout getProfilingLayout( Container c ) {
+      LayoutManager layout = c.getLayout();
+      return layout instanceof ProfilingLayout && ((ProfilingLayout)layout).getProfiler() == this
+         ? (ProfilingLayout)layout
+         : null;
+   }
+
+   private boolean isIgnored( Window window ) {
+      return ignored.containsKey( window ) || alwaysIgnored.containsKey( window );
+   }
+
+   private void instrument( Component c ) {
+      if( c instanceof Window && isIgnored( (Window)c )) {
+         return;
+      }
+
+      if( c instanceof JPanel ) {
+         JPanel panel = (JPanel)c;
+         LayoutManager layout = panel.getLayout();
+         if( layout != null && !( layout instanceof ProfilingLayout ) && !( layout instanceof CardLayout )) {
+            panel.setLayout( new ProfilingLayout( layout, this ));
+            if( containers.find( panel ) < 0 ) {
+               containers.add( panel );
+            }
+         }
+      }
+
+      if( c instanceof Container ) {
+         for( Component child : ((Container)c).getComponents() ) {
+            instrument( child );
+         }
+      }
+   }
+
+   boolean isProfiling() {
+      return EventQueue.isDispatchThread();
+   }
+
+   /** The number of the current event cycle. */
+   int getCycle() {
+      AWTEvent event = EventQueue.getCurrentEvent();
+      AWTEvent last = lastEvent == null ? null : lastEvent.get();
+      if( event != last ) {
+         lastEvent = event == null ? null : new WeakReference<AWTEvent>( event );
+         ++cycle;
+         maxCycleNanos = Math.max( maxCycleNanos, cycleNanos );
+         cycleNanos = 0;
+      }
+      return cycle;
+   }
+
+   /** Starts timing a layout, returns false if it isn't to be timed. */
+   boolean enter() {
+      if( !isProfiling() ) {
+         return false;
+      }
+
+      getCycle();
+      if( ++depth == childNanos.length ) {
+         childNanos = Arrays.copyOf( childNanos, childNanos.length * 2 );
+      }
+      childNanos[ depth ] = 0;
+      return true;
+   }
+
+   /** Finishes timing a layout and returns it's self time. */
+   long exit( long elapsed ) {
+      long self = elapsed - childNanos[ depth-- ];
+      if( depth >= 0 ) {
+         childNanos[ depth ] += elapsed;
+      }
+      else {
+         cycleNanos += elapsed;
+         totalNanos += elapsed;
+      }
+      return self;
+   }
+
+   private final class InstrumentListener implements AWTEventListener {
+      public void eventDispatched( AWTEvent event ) {
+         Component added = null;
+         if( event.getID() == ContainerEvent.COMPONENT_ADDED ) {
+            added = ((ContainerEvent)event).getChild();
+         }
+         else if( event.getID() == WindowEvent.WINDOW_OPENED ) {
+            added = ((WindowEvent)event).getWindow();
+         }
+
+         if( added != null ) {
+            Window window = added instanceof Window ? (Window)added : SwingUtilities.getWindowAncestor( added );
+            if( window == null || !isIgnored( window )) {
+               instrument( added );
+            }
+            else {
+               // Panels built before they joined an ignored window were instrumented
+               restoreSubtree( added );
+            }
+         }
+      }
+   }
+
+   /** A snapshot of the layout statistics of one container. */
+   public static final class LayoutStats {
+      private final Container container;
+      private final long layoutCount;
+      private final long layoutNanos;
+      private final long layoutSelfNanos;
+      private final long sizeCount;
+      private final long sizeNanos;
+      private final long sizeSelfNanos;
+      private final long invalidations;
+      private final long repeatedLayoutCycles;
+      private final long repeatedInvalidationCycles;
+
+      LayoutStats( Container container, ProfilingLayout layout ) {
+         this.container = container;
+         this.layoutCount = layout.layoutCount;
+         this.layoutNanos = layout.layoutNanos;
+         this.layoutSelfNanos = layout.layoutSelfNanos;
+         this.sizeCount = layout.sizeCount;
+         this.sizeNanos = layout.sizeNanos;
+         this.sizeSelfNanos = layout.sizeSelfNanos;
+         this.invalidations = layout.invalidations;
+         this.repeatedLayoutCycles = layout.repeatedLayoutCycles;
+         this.repeatedInvalidationCycles = layout.repeatedInvalidationCycles;
+      }
+
+      public Container getContainer() {
+         return container;
+      }
+
+      /** The layout manager which was wrapped. */
+      public LayoutManager getLayout() {
+         LayoutManager layout = container.getLayout();
+         return layout instanceof ProfilingLayout ? ((ProfilingLayout)layout).getDelegate() : layout;
+      }
+
+      /** The number of calls to layoutContainer(), which doLayout() makes. */
+      public long getLayoutCount() {
+         return layoutCount;
+      }
+
+      /** The time spent in layoutContainer(), including nested layouts. */
+      public long getLayoutNanos() {
+         return layoutNanos;
+      }
+
+      /** The time spent in layoutContainer(), excluding nested layouts. */
+      public long getLayoutSelfNanos() {
+         return layoutSelfNanos;
+      }
+
+      /** The number of preferred, minimum and maximum size calculations. */
+      public long getSizeCount() {
+         return sizeCount;
+      }
+
+      /** The time spent calculating sizes, including nested layouts. */
+      public long getSizeNanos() {
+         return sizeNanos;
+      }
+
+      /** The time spent calculating sizes, excluding nested layouts. */
+      public long getSizeSelfNanos() {
+         return sizeSelfNanos;
+      }
+
+      public long getSelfNanos() {
+         return layoutSelfNanos + sizeSelfNanos;
+      }
+
+      public long getInvalidations() {
+         return invalidations;
+      }
+
+      /** The number of event cycles in which it was laid out more than once. */
+      public long getRepeatedLayoutCycles() {
+         return repeatedLayoutCycles;
+      }
+
+      /** The number of event cycles in which it was invalidated more than once. */
+      public long getRepeatedInvalidationCycles() {
+         return repeatedInvalidationCycles;
+      }
+
+      public boolean isRepeated() {
+         return repeatedLayoutCycles > 0 || repeatedInvalidationCycles > 0;
+      }
+   }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.profiling;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.LayoutManager;
+import java.awt.LayoutManager2;
+
+/**
+ * Wraps a container's LayoutManager to time it.  Each instrumented container
+ * gets it's own wrapper, which holds that container's statistics, even if
+ * the wrapped manager is shared.<br />
+ * <br />
+ * Times are both inclusive, and self, which excludes the time spent laying
+ * out and sizing nested instrumented containers.  Only calls on the event 
+ * dispatch thread are timed.
+ */
+public class ProfilingLayout implements LayoutManager2 {
+   private final LayoutManager delegate;
+   private final LayoutProfiler profiler;
+
+   long layoutCount;
+   long layoutNanos;
+   long layoutSelfNanos;
+
+   long sizeCount;
+   long sizeNanos;
+   long sizeSelfNanos;
+
+   long invalidations;
+   long repeatedLayoutCycles;
+   long repeatedInvalidationCycles;
+
+   private int layoutCycle;
+   private int layoutsInCycle;
+   private int invalidationCycle;
+   private int invalidationsInCycle;
+
+   ProfilingLayout( LayoutManager delegate, LayoutProfiler profiler ) {
+      this.delegate = delegate;
+      this.profiler = profiler;
+   }
+
+   LayoutProfiler getProfiler() {
+      return profiler;
+   }
+
+   /** The wrapped layout manager. */
+   public LayoutManager getDelegate() {
+      return delegate;
+   }
+
+   public void layoutContainer( Container parent ) {
+      if( !profiler.enter() ) {
+         delegate.layoutContainer( parent );
+         return;
+      }
+
+      int cycle = profiler.getCycle();
+      if( cycle != layoutCycle ) {
+         layoutCycle = cycle;
+         layoutsInCycle = 0;
+      }
+      if( ++layoutsInCycle == 2 ) {
+         ++repeatedLayoutCycles;
+      }
+
+      long start = System.nanoTime();
+      try {
+         delegate.layoutContainer( parent );
+      }
+      finally {
+         long elapsed = System.nanoTime() - start;
+         ++layoutCount;
+         layoutNanos += elapsed;
+         layoutSelfNanos += profiler.exit( elapsed );
+      }
+   }
+
+   public Dimension preferredLayoutSize( Container parent ) {
+      if( !profiler.enter() ) {
+         return delegate.preferredLayoutSize( parent );
+      }
+
+      long start = System.nanoTime();
+      try {
+         return delegate.preferredLayoutSize( parent );
+      }
+      finally {
+         recordSize( System.nanoTime() - start );
+      }
+   }
+
+   public Dimension minimumLayoutSize( Container parent ) {
+      if( !profiler.enter() ) {
+         return delegate.minimumLayoutSize( parent );
+      }
+
+      long start = System.nanoTime();
+      try {
+         return delegate.minimumLayoutSize( parent );
+      }
+      finally {
+         recordSize( System.nanoTime() - start );
+      }
+   }
+
+   public Dimension maximumLayoutSize( Container target ) {
+      if( delegate instanceof LayoutManager2 ) {
+         if( !profiler.enter() ) {
+            return ((LayoutManager2)delegate).maximumLayoutSize( target );
+         }
+
+         long start = System.nanoTime();
+         try {
+            return ((LayoutManager2)delegate).maximumLayoutSize( target );
+         }
+         finally {
+            recordSize( System.nanoTime() - start );
+         }
+      }
+      return new Dimension( Short.MAX_VALUE, Short.MAX_VALUE );
+   }
+
+   private void recordSize( long elapsed ) {
+      ++sizeCount;
+      sizeNanos += elapsed;
+      sizeSelfNanos += profiler.exit( elapsed );
+   }
+
+   /** Called by Container.invalidate(), which is how repeated invalidation is seen. */
+   public void invalidateLayout( Container target ) {
+      if( profiler.isProfiling() ) {
+         ++invalidations;
+
+         int cycle = profiler.getCycle();
+         if( cycle != invalidationCycle ) {
+            invalidationCycle = cycle;
+            invalidationsInCycle = 0;
+         }
+         if( ++invalidationsInCycle == 2 ) {
+            ++repeatedInvalidationCycles;
+         }
+      }
+
+      if( delegate instanceof LayoutManager2 ) {
+         ((LayoutManager2)delegate).invalidateLayout( target );
+      }
+   }
+
+   public void addLayoutComponent( Component comp, Object constraints ) {
+      if( delegate instanceof LayoutManager2 ) {
+         ((LayoutManager2)delegate).addLayoutComponent( comp, constraints );
+      }
+      else if( constraints instanceof String ) {
+         delegate.addLayoutComponent( (String)constraints, comp );
+      }
+   }
+
+   public void addLayoutComponent( String name, Component comp ) {
+      delegate.addLayoutComponent( name, comp );
+   }
+
+   public void removeLayoutComponent( Component comp ) {
+      delegate.removeLayoutComponent( comp );
+   }
+
+   public float getLayoutAlignmentX( Container target ) {
+      return delegate instanceof LayoutManager2 ? ((LayoutManager2)delegate).getLayoutAlignmentX( target ) : 0.5f;
+   }
+
+   public float getLayoutAlignmentY( Container target ) {
+      return delegate instanceof LayoutManager2 ? ((LayoutManager2)delegate).getLayoutAlignmentY( target ) : 0.5f;
+   }
+
+   void reset() {
+      layoutCount = layoutNanos = layoutSelfNanos = 0;
+      sizeCount = sizeNanos = sizeSelfNanos = 0;
+      invalidations = repeatedLayoutCycles = repeatedInvalidationCycles = 0;
+      layoutsInCycle = invalidationsInCycle = 0;
+   }
+
+   @Override
+   public String toString() {
+      return delegate.toString();
+   }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.profiling;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Lists the components which ask to be repainted most often, according to
+ * the installed RepaintProfiler.  Double clicking a row inspects it's 
+ * component.  Refreshes once a second while displayed.
+ */
+public class RepaintPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+   private static final int REFRESH_DELAY = 1000;
+   private static final int MAX_ROWS = 100;
+
+   private final IClosure<Component> inspector;
+   private final Timer refreshTimer = new Timer( REFRESH_DELAY, new RefreshListener() );
+   private final RepaintTableModel model = new RepaintTableModel();
+   private final JTable table = new JTable( model );
+
+   private final JButton toggle = new JButton();
+   private final JButton reset = new JButton( "Reset" );
+   private final JLabel summary = new JLabel();
+
+   /**
+    * @param inspector - called with the component of a row which is double clicked
+    */
+   public RepaintPanel( IClosure<Component> inspector ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][grow,fill]" ));
+      this.inspector = inspector;
+
+      toggle.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            if( RepaintProfiler.getInstalled() == null ) {
+               RepaintProfiler.install();
+            }
+            else {
+               RepaintProfiler.uninstall();
+            }
+            updateValues();
+         }
+      });
+
+      reset.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            RepaintProfiler profiler = RepaintProfiler.getInstalled();
+            if( profiler != null ) {
+               profiler.reset();
+            }
+            updateValues();
+         }
+      });
+
+      table.addMouseListener( new TableMouseListener() );
+      table.setAutoCreateRowSorter( true );
+
+      add( new JTitledSeparator( "Hottest Repainters" ), "split 3" );
+      add( toggle, "growx 0" );
+      add( reset, "growx 0" );
+      add( summary );
+      add( new JScrollPane( table ));
+   }
+
+   @Override
+   public void addNotify() {
+      super.addNotify();
+      updateValues();
+      refreshTimer.start();
+   }
+
+   @Override
+   public void removeNotify() {
+      refreshTimer.stop();
+      super.removeNotify();
+   }
+
+   private void updateValues() {
+      RepaintProfiler profiler = RepaintProfiler.getInstalled();
+      toggle.setText( profiler == null ? "Start" : "Stop" );
+      reset.setEnabled( profiler != null );
+
+      if( profiler == null ) {
+         summary.setText( "The repaint profiler is not installed" );
+         model.setRows( new ArrayList<RepaintProfiler.RepaintStats>(), 1 );
+         return;
+      }
+
+      double seconds = Math.max( profiler.getElapsedSeconds(), 0.001 );
+      long cycles = profiler.getCycleCount();
+      summary.setText( profiler.isTimingPaints()
+         ? String.format( "%d paint cycles (%.1f/s), %.2f ms average, %.2f ms max",
+              cycles, cycles / seconds,
+              cycles == 0 ? 0 : profiler.getCycleNanos() / 1e6 / cycles,
+              profiler.getMaxCycleNanos() / 1e6 )
+         : "Paint times aren't available with the application's own RepaintManager"
+      );
+      model.setRows( profiler.getHottest( MAX_ROWS ), seconds );
+   }
+
+   private final class RefreshListener implements ActionListener {
+      public void actionPerformed( ActionEvent e ) {
+         updateValues();
+      }
+   }
+
+   private final class TableMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked( MouseEvent e ) {
+         int row = table.getSelectedRow();
+         if( e.getClickCount() == 2 && row >= 0 ) {
+            Component c = model.getComponent( table.convertRowIndexToModel( row ));
+            if( c != null ) {
+               inspector.yield( c );
+            }
+         }
+      }
+   }
+
+   private static final class RepaintTableModel extends AbstractTableModel {
+      private static final long serialVersionUID = 1L;
+      private static final String[] COLUMNS = { 
+         "Component", "Repaints/s", "Repaints", "Dirty Pixels", "Paint Cycles", "Paint ms" 
+      };
+
+      private List<RepaintProfiler.RepaintStats> rows = new ArrayList<RepaintProfiler.RepaintStats>();
+      private double seconds = 1;
+
+      public void setRows( List<RepaintProfiler.RepaintStats> rows, double seconds ) {
+         this.rows = rows;
+         this.seconds = seconds;
+         fireTableDataChanged();
+      }
+
+      public Component getComponent( int row ) {
+         return rows.get( row ).getComponent();
+      }
+
+      public int getRowCount() {
+         return rows.size();
+      }
+
+      public int getColumnCount() {
+         return COLUMNS.length;
+      }
+
+      @Override
+      public String getColumnName( int column ) {
+         return COLUMNS[ column ];
+      }
+
+      @Override
+      public Class<?> getColumnClass( int column ) {
+         return column == 0 ? String.class : column == 1 || column == 5 ? Double.class : Long.class;
+      }
+
+      public Object getValueAt( int row, int column ) {
+         RepaintProfiler.RepaintStats stats = rows.get( row );
+         switch( column ) {
+            case 0: return describe( stats.getComponent() );
+            case 1: return Math.round( stats.getDirtyCount() / seconds * 10 ) / 10.0;
+            case 2: return stats.getDirtyCount();
+            case 3: return stats.getDirtyArea();
+            case 4: return stats.getPaintCycles();
+            case 5: return Math.round( stats.getPaintNanos() / 1e4 ) / 100.0;
+            default: return null;
+         }
+      }
+
+      private static String describe( Component c ) {
+         String type = c.getClass().getSimpleName();
+         if( type.length() == 0 ) {
+            type = c.getClass().getName();
+         }
+
+         String name = c.getName();
+         return type + ( name != null ? " \""+ name +"\"" : "" );
+      }
+   }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.profiling;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+
+import net.cozycode.swinginspector.util.ComponentSlots;
+
+/**
+ * A RepaintManager which records, for each component, how often it asks to 
+ * be repainted, the area it dirties, and the time taken by the paint cycles
+ * it's dirty regions were painted in.<br />
+ * <br />
+ * When the RepaintManager being replaced is Swing's own, this simply extends
+ * it.  When the application has installed it's own, every call is forwarded
+ * to it instead.  In that case it's manager paints the regions itself, so
+ * only the dirty regions are recorded, not the paint times.<br />
+ * <br />
+ * Statistics are kept in primitive arrays indexed by ComponentSlots, so 
+ * recording a repaint only allocates the first time a component is seen.
+ */
+public class RepaintProfiler extends RepaintManager {
+   private static final int INITIAL_CAPACITY = 1024;
+
+   private static RepaintProfiler installed = null;
+
+   private final RepaintManager previous;
+   private final RepaintManager delegate;
+
+   private final ComponentSlots slots = new ComponentSlots( INITIAL_CAPACITY );
+
+   // Per slot statistics, guarded by this.
+   private long[] dirtyCounts;
+   private long[] dirtyAreas;
+   private long[] paintCycles;
+   private long[] paintNanos;
+   private int[] lastCycle;
+
+   /** The slots dirtied since the last paint cycle started, and a spare for swapping. */
+   private int[] pending = new int[ 64 ];
+   private int[] painting = new int[ 64 ];
+   private int pendingCount = 0;
+
+   private int cycle = 1;
+   private long cycleCount = 0;
+   private long cycleNanos = 0;
+   private long maxCycleNanos = 0;
+   private long startNanos = System.nanoTime();
+
+
+   private RepaintProfiler( RepaintManager previous ) {
+      this.previous = previous;
+      this.delegate = previous.getClass() == RepaintManager.class ? null : previous;
+      allocate( slots.getCapacity() );
+   }
+
+   /**
+    * Replaces the current RepaintManager with a profiler, 
+    * unless one is installed already, and returns it.
+    */
+   public static synchronized RepaintProfiler install() {
+      RepaintManager current = RepaintManager.currentManager( (Component)null );
+      if( current instanceof RepaintProfiler ) {
+         installed = (RepaintProfiler)current;
+         return installed;
+      }
+
+      installed = new RepaintProfiler( current );
+      RepaintManager.setCurrentManager( installed );
+      return installed;
+   }
+
+   /** Restores the RepaintManager which was replaced by the profiler. */
+   public static synchronized void uninstall() {
+      if( installed != null ) {
+         if( RepaintManager.currentManager( (Component)null ) == installed ) {
+            RepaintManager.setCurrentManager( installed.previous );
+         }
+         installed = null;
+      }
+   }
+
+   /** The installed profiler, or null if profiling is off. */
+   public static synchronized RepaintProfiler getInstalled() {
+      return installed;
+   }
+
+   /** Whether paint times are measured, which they can't be when forwarding to a custom manager. */
+   public boolean isTimingPaints() {
+      return delegate == null;
+   }
+
+   @Override
+   public void addDirtyRegion( JComponent c, int x, int y, int w, int h ) {
+      record( c, w, h );
+      if( delegate != null ) {
+         delegate.addDirtyRegion( c, x, y, w, h );
+      }
+      else {
+         super.addDirtyRegion( c, x, y, w, h );
+      }
+   }
+
+   @Override
+   public void addDirtyRegion( Window window, int x, int y, int w, int h ) {
+      record( window, w, h );
+      if( delegate != null ) {
+         delegate.addDirtyRegion( window, x, y, w, h );
+      }
+      else {
+         super.addDirtyRegion( window, x, y, w, h );
+      }
+   }
+
+   @Override
+   public void paintDirtyRegions() {
+      int count;
+      synchronized( this ) {
+         int[] swap = painting;
+         painting = pending;
+         pending = swap;
+         count = pendingCount;
+         pendingCount = 0;
+         ++cycle;
+      }
+
+      long start = System.nanoTime();
+      if( delegate != null ) {
+         delegate.paintDirtyRegions();
+      }
+      else {
+         super.paintDirtyRegions();
+      }
+      long elapsed = System.nanoTime() - start;
+
+      synchronized( this ) {
+         ++cycleCount;
+         cycleNanos += elapsed;
+         maxCycleNanos = Math.max( maxCycleNanos, elapsed );
+         for( int i = 0; i < count; ++i ) {
+            ++paintCycles[ painting[i] ];
+            paintNanos[ painting[i] ] += elapsed;
+         }
+      }
+   }
+
+   private synchronized void record( Component c, int w, int h ) {
+      if( c == null || w <= 0 || h <= 0 ) {
+         return;
+      }
+
+      int slot = slots.find( c );
+      if( slot < 0 ) {
+         slot = slots.add( c );
+         if( slots.getCapacity() > dirtyCounts.length ) {
+            allocate( slots.getCapacity() );
+         }
+         dirtyCounts[ slot ] = 0;
+         dirtyAreas[ slot ] = 0;
+         paintCycles[ slot ] = 0;
+         paintNanos[ slot ] = 0;
+         lastCycle[ slot ] = 0;
+      }
+
+      ++dirtyCounts[ slot ];
+      dirtyAreas[ slot ] += (long)w * h;
+
+      if( lastCycle[ slot ] != cycle ) {
+         lastCycle[ slot ] = cycle;
+         if( pendingCount == pending.length ) {
+            pending = Arrays.copyOf( pending, pending.length * 2 );
+            painting = Arrays.copyOf( painting, pending.length );
+         }
+         pending[ pendingCount++ ] = slot;
+      }
+   }
+
+   private void allocate( int capacity ) {
+      dirtyCounts = dirtyCounts == null ? new long[ capacity ] : Arrays.copyOf( dirtyCounts, capacity );
+      dirtyAreas = dirtyAreas == null ? new long[ capacity ] : Arrays.copyOf( dirtyAreas, capacity );
+      paintCycles = paintCycles == null ? new long[ capacity ] : Arrays.copyOf( paintCycles, capacity );
+      paintNanos = paintNanos == null ? new long[ capacity ] : Arrays.copyOf( paintNanos, capacity );
+      lastCycle = lastCycle == null ? new int[ capacity ] : Arrays.copyOf( lastCycle, capacity );
+   }
+
+   /** The statistics for the component, or null if it hasn't asked to be repainted. */
+   public synchronized RepaintStats getStats( Component c ) {
+      int slot = slots.find( c );
+      return slot < 0 ? null : createStats( c, slot );
+   }
+
+   /** The components which have asked to be repainted most often, most first. */
+   public List<RepaintStats> getHottest( int limit ) {
+      ArrayList<RepaintStats> all = new ArrayList<RepaintStats>();
+      synchronized( this ) {
+         for( int slot = 0; slot < slots.getHighWater(); ++slot ) {
+            Component c = slots.get( slot );
+            if( c != null && dirtyCounts[ slot ] > 0 ) {
+               all.add( createStats( c, slot ));
+            }
+         }
+      }
+
+      Collections.sort( all, new Comparator<RepaintStats>() {
+         @Override
+         public int compare( RepaintStats a, RepaintStats b ) {
+            return a.getDirtyCount() > b.getDirtyCount() ? -1 : a.getDirtyCount() < b.getDirtyCount() ? 1 : 0;
+         }
+      });
+      return all.size() > limit ? new ArrayList<RepaintStats>( all.subList( 0, limit )) : all;
+   }
+
+   private RepaintStats createStats( Component c, int slot ) {
+      return new RepaintStats( c, dirtyCounts[ slot ], dirtyAreas[ slot ], paintCycles[ slot ], paintNanos[ slot ] );
+   }
+
+   /** The time since profiling started or was reset, for turning counts into rates. */
+   public synchronized double getElapsedSeconds() {
+      return ( System.nanoTime() - startNanos ) / 1e9;
+   }
+
+   public synchronized long getCycleCount() {
+      return cycleCount;
+   }
+
+   public synchronized long getCycleNanos() {
+      return cycleNanos;
+   }
+
+   public synchronized long getMaxCycleNanos() {
+      return maxCycleNanos;
+   }
+
+   public synchronized void reset() {
+      slots.clear();
+      Arrays.fill( dirtyCounts, 0 );
+      Arrays.fill( dirtyAreas, 0 );
+      Arrays.fill( paintCycles, 0 );
+      Arrays.fill( paintNanos, 0 );
+      Arrays.fill( lastCycle, 0 );
+      pendingCount = 0;
+      cycleCount = 0;
+      cycleNanos = 0;
+      maxCycleNanos = 0;
+      startNanos = System.nanoTime();
+   }
+
+   // The rest only forwards to a custom manager.
+
+   @Override
+   public void addInvalidComponent( JComponent invalidComponent ) {
+      if( delegate != null ) { delegate.addInvalidComponent( invalidComponent ); }
+      else { super.addInvalidComponent( invalidComponent ); }
+   }
+
+   @Override
+   public void removeInvalidComponent( JComponent component ) {
+      if( delegate != null ) { delegate.removeInvalidComponent( component ); }
+      else { super.removeInvalidComponent( component ); }
+   }
+
+   @Override
+   public Rectangle getDirtyRegion( JComponent aComponent ) {
+      return delegate != null ? delegate.getDirtyRegion( aComponent ) : super.getDirtyRegion( aComponent );
+   }
+
+   @Override
+   public void markCompletelyDirty( JComponent aComponent ) {
+      if( delegate != null ) { delegate.markCompletelyDirty( aComponent ); }
+      else { super.markCompletelyDirty( aComponent ); }
+   }
+
+   @Override
+   public void markCompletelyClean( JComponent aComponent ) {
+      if( delegate != null ) { delegate.markCompletelyClean( aComponent ); }
+      else { super.markCompletelyClean( aComponent ); }
+   }
+
+   @Override
+   public boolean isCompletelyDirty( JComponent aComponent ) {
+      return delegate != null ? delegate.isCompletelyDirty( aComponent ) : super.isCompletelyDirty( aComponent );
+   }
+
+   @Override
+   public void validateInvalidComponents() {
+      if( delegate != null ) { delegate.validateInvalidComponents(); }
+      else { super.validateInvalidComponents(); }
+   }
+
+   @Override
+   public Image getOffscreenBuffer( Component c, int proposedWidth, int proposedHeight ) {
+      return delegate != null 
+         ? delegate.getOffscreenBuffer( c, proposedWidth, proposedHeight ) 
+         : super.getOffscreenBuffer( c, proposedWidth, proposedHeight );
+   }
+
+   @Override
+   public Image getVolatileOffscreenBuffer( Component c, int proposedWidth, int proposedHeight ) {
+      return delegate != null 
+         ? delegate.getVolatileOffscreenBuffer( c, proposedWidth, proposedHeight ) 
+         : super.getVolatileOffscreenBuffer( c, proposedWidth, proposedHeight );
+   }
+
+   @Override
+   public void setDoubleBufferMaximumSize( Dimension d ) {
+      if( delegate != null ) { delegate.setDoubleBufferMaximumSize( d ); }
+      else { super.setDoubleBufferMaximumSize( d ); }
+   }
+
+   @Override
+   public Dimension getDoubleBufferMaximumSize() {
+      return delegate != null ? delegate.getDoubleBufferMaximumSize() : super.getDoubleBufferMaximumSize();
+   }
+
+   @Override
+   public void setDoubleBufferingEnabled( boolean aFlag ) {
+      if( delegate != null ) { delegate.setDoubleBufferingEnabled( aFlag ); }
+      else { super.setDoubleBufferingEnabled( aFlag ); }
+   }
+
+   @Override
+   public boolean isDoubleBufferingEnabled() {
+      return delegate != null ? delegate.isDoubleBufferingEnabled() : super.isDoubleBufferingEnabled();
+   }
+
+   /** A snapshot of the repaint statistics for one component. */
+   public static final class RepaintStats {
+      private final Component component;
+      private final long dirtyCount;
+      private final long dirtyArea;
+      private final long paintCycles;
+      private final long paintNanos;
+
+      RepaintStats( Component component, long dirtyCount, long dirtyArea, long paintCycles, long paintNanos ) {
+         this.component = component;
+         this.dirtyCount = dirtyCount;
+         this.dirtyArea = dirtyArea;
+         this.paintCycles = paintCycles;
+         this.paintNanos = paintNanos;
+      }
+
+      public Component getComponent() {
+         return component;
+      }
+
+      /** The number of times it asked to be repainted. */
+      public long getDirtyCount() {
+         return dirtyCount;
+      }
+
+      /** The total area, in pixels, of the regions it dirtied. */
+      public long getDirtyArea() {
+         return dirtyArea;
+      }
+
+      /** The number of paint cycles which painted it's dirty regions. */
+      public long getPaintCycles() {
+         return paintCycles;
+      }
+
+      /** The total time of those paint cycles. */
+      public long getPaintNanos() {
+         return paintNanos;
+      }
+   }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.search;
+
+import java.awt.AWTEvent;
+import java.awt.Button;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.EventQueue;
+import java.awt.Label;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ContainerEvent;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.swing.AbstractButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+
+/**
+ * An index of every component under Window.getWindows(), keyed by lower case
+ * terms: the simple and fully qualified class name, getName(), the text of 
+ * labels, buttons and text fields, and the values of any registered client 
+ * properties.<br />
+ * <br />
+ * The index is built with one walk when it's installed and is then kept up to 
+ * date by a single AWTEventListener on container and window events, so a query
+ * only looks at the distinct terms and never walks the hierarchy.  Components
+ * added to a container outside the index aren't indexed, so UIs which are 
+ * built but never shown aren't held; their subtree is indexed when it's 
+ * added to an indexed container or it's window is opened.<br />
+ * <br />
+ * Names and the text of Swing labels and buttons are re-read when they fire
+ * a property change, and the text of text fields when their document changes.
+ * AWT labels and buttons don't report text changes, so before each query 
+ * their text is compared with the text they were indexed with, and only the 
+ * changed ones are re-read.  Client properties * are only read when a component joins the hierarchy.  Swing doesn't expose
+ * a way to enumerate them, so only the keys registered with 
+ * addClientPropertyKey() are indexed.
+ */
+public class ComponentIndex {
+   private static final int MAX_TEXT_LENGTH = 256;
+   private static final String[] NO_TERMS = new String[0];
+
+   private final TreeMap<String, Set<Component>> terms = new TreeMap<String, Set<Component>>();
+   private final IdentityHashMap<Component, String[]> indexed = new IdentityHashMap<Component, String[]>();
+   private final ArrayList<Object> clientPropertyKeys = new ArrayList<Object>();
+   private final IndexListener listener = new IndexListener();
+   private final TermListener termListener = new TermListener();
+
+   /** The listeners on the documents of the indexed text fields. */
+   private final IdentityHashMap<JTextField, FieldListener> fieldListeners = new IdentityHashMap<JTextField, FieldListener>();
+
+   /** The indexed AWT labels and buttons, with the text they were indexed with. */
+   private final IdentityHashMap<Component, String> awtText = new IdentityHashMap<Component, String>();
+
+   private Window ignored = null;
+   private boolean installed = false;
+
+   /**
+    * Indexes every window and starts listening for changes.
+    */
+   public void install() {
+      if( installed ) {
+         return;
+      }
+      installed = true;
+
+      Toolkit.getDefaultToolkit().addAWTEventListener( listener, AWTEvent.CONTAINER_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK );
+      for( Window window : Window.getWindows() ) {
+         add( window );
+      }
+   }
+
+   /**
+    * Stops listening for changes and releases everything which was indexed.
+    */
+   public void uninstall() {
+      if( !installed ) {
+         return;
+      }
+      installed = false;
+
+      Toolkit.getDefaultToolkit().removeAWTEventListener( listener );
+      for( Component c : new ArrayList<Component>( indexed.keySet() )) {
+         unindex( c );
+      }
+      terms.clear();
+      indexed.clear();
+   }
+
+   /**
+    * Components inside this window are not indexed.  This is 
+    * meant for keeping the inspector out of it's own results.
+    */
+   public void setIgnoredWindow( Window window ) {
+      this.ignored = window;
+      if( window != null ) {
+         unindexSubtree( window );
+      }
+   }
+
+   /**
+    * Adds a client property key whose values are indexed.  
+    * Only applies to components indexed after the call.
+    */
+   public void addClientPropertyKey( Object key ) {
+      clientPropertyKeys.add( key );
+   }
+
+   /** The number of components in the index. */
+   public int size() {
+      return indexed.size();
+   }
+
+   /**
+    * Returns the components with a term which contains the query, ignoring case.
+    * Terms which start with the query are listed first.  At most 'limit' 
+    * components are returned.
+    */
+   public List<Component> find( String query, int limit ) {
+      String key = query.trim().toLowerCase( Locale.ENGLISH );
+      if( key.length() == 0 ) {
+         return Collections.emptyList();
+      }
+
+      reindexChangedAwtText();
+
+      // Components don't override equals(), so the set compares identity.
+      LinkedHashSet<Component> found = new LinkedHashSet<Component>();
+
+      SortedMap<String, Set<Component>> prefixed = terms.subMap( key, key + Character.MAX_VALUE );
+      for( Set<Component> matches : prefixed.values() ) {
+         if( !addAll( found, matches, limit )) {
+            return new ArrayList<Component>( found );
+         }
+      }
+
+      for( Map.Entry<String, Set<Component>> entry : terms.entrySet() ) {
+         String term = entry.getKey();
+         if( !term.startsWith( key ) && term.contains( key )) {
+            if( !addAll( found, entry.getValue(), limit )) {
+               break;
+            }
+         }
+      }
+
+      return new ArrayList<Component>( found );
+   }
+
+   /** 
+    * Reads the terms of the AWT labels and buttons whose text has changed.
+    * They keep the string they were given, so comparing identity is enough.
+    */
+   private void reindexChangedAwtText() {
+      List<Component> changed = null;
+      for( Map.Entry<Component, String> entry : awtText.entrySet() ) {
+         if( getText( entry.getKey() ) != entry.getValue() ) {
+            if( changed == null ) {
+               changed = new ArrayList<Component>();
+            }
+            changed.add( entry.getKey() );
+         }
+      }
+
+      if( changed != null ) {
+         for( Component c : changed ) {
+            reindex( c );
+         }
+      }
+   }
+
+   /**
+    * Adds the matches until the limit is reached.
+    * Returns false once the limit has been reached.
+    */
+   private boolean addAll( Set<Component> found, Set<Component> matches, int limit ) {
+      for( Component c : matches ) {
+         if( found.size() >= limit ) {
+            return false;
+         }
+         if( !isIgnored( c )) {
+            found.add( c );
+         }
+      }
+      return found.size() < limit;
+   }
+
+   /**
+    * Indexes the component and everything below it, unless it's in the ignored window.
+    */
+   private void add( Component component ) {
+      if( !isIgnored( component )) {
+         indexSubtree( component );
+      }
+   }
+
+   /**
+    * Whether the component is in the ignored window.  Checked again when 
+    * querying, as components can be indexed while they're still detached
+    * and then added to the ignored window as part of a larger subtree.
+    */
+   private boolean isIgnored( Component component ) {
+      return ignored != null && SwingUtilities.isDescendingFrom( component, ignored );
+   }
+
+   private void indexSubtree( Component component ) {
+      index( component );
+
+      if( component instanceof Container ) {
+         Container container = (Container)component;
+         int count = container.getComponentCount();
+         for( int i = 0; i < count; ++i ) {
+            indexSubtree( container.getComponent( i ));
+         }
+      }
+   }
+
+   private void unindexSubtree( Component component ) {
+      unindex( component );
+
+      if( component instanceof Container ) {
+         Container container = (Container)component;
+         int count = container.getComponentCount();
+         for( int i = 0; i < count; ++i ) {
+            unindexSubtree( container.getComponent( i ));
+         }
+      }
+   }
+
+   private void index( Component component ) {
+      if( indexed.containsKey( component )) {
+         return;
+      }
+
+      component.addPropertyChangeListener( "name", termListener );
+      component.addPropertyChangeListener( "text", termListener );
+      if( component instanceof JTextField ) {
+         JTextField field = (JTextField)component;
+         FieldListener fieldListener = new FieldListener( field );
+         field.addPropertyChangeListener( "document", termListener );
+         field.getDocument().addDocumentListener( fieldListener );
+         fieldListeners.put( field, fieldListener );
+      }
+      addTerms( component );
+   }
+
+   private void addTerms( Component component ) {
+      String[] keys = termsFor( component );
+      indexed.put( component, keys );
+      if( component instanceof Label || component instanceof Button ) {
+         awtText.put( component, getText( component ));
+      }
+
+      for( String term : keys ) {
+         Set<Component> set = terms.get( term );
+         if( set == null ) {
+            set = Collections.newSetFromMap( new IdentityHashMap<Component, Boolean>() );
+            terms.put( term, set );
+         }
+         set.add( component );
+      }
+   }
+
+   private void unindex( Component component ) {
+      if( !indexed.containsKey( component )) {
+         return;
+      }
+
+      component.removePropertyChangeListener( "name", termListener );
+      component.removePropertyChangeListener( "text", termListener );
+      FieldListener fieldListener = fieldListeners.remove( component );
+      if( fieldListener != null ) {
+         JTextField field = (JTextField)component;
+         field.removePropertyChangeListener( "document", termListener );
+         field.getDocument().removeDocumentListener( fieldListener );
+      }
+      awtText.remove( component );
+      removeTerms( component );
+   }
+
+   /** Reads the terms of an indexed component again. */
+   private void reindex( Component component ) {
+      if( indexed.containsKey( component )) {
+         removeTerms( component );
+         addTerms( component );
+      }
+   }
+
+   private void removeTerms( Component component ) {
+      String[] keys = indexed.remove( component );
+      for( String term : keys ) {
+         Set<Component> set = terms.get( term );
+         if( set != null ) {
+            set.remove( component );
+            if( set.isEmpty() ) {
+               terms.remove( term );
+            }
+         }
+      }
+   }
+
+   private String[] termsFor( Component component ) {
+      ArrayList<String> keys = new ArrayList<String>( 4 );
+
+      Class<?> clazz = component.getClass();
+      addTerm( keys, clazz.getName() );
+      addTerm( keys, clazz.getSimpleName() );
+      addTerm( keys, component.getName() );
+      addTerm( keys, getText( component ));
+
+      if( component instanceof JComponent && !clientPropertyKeys.isEmpty() ) {
+         JComponent jc = (JComponent)component;
+         for( Object key : clientPropertyKeys ) {
+            Object value = jc.getClientProperty( key );
+            if( value != null ) {
+               addTerm( keys, String.valueOf( value ));
+            }
+         }
+      }
+
+      return keys.isEmpty() ? NO_TERMS : keys.toArray( new String[ keys.size() ]);
+   }
+
+   private static void addTerm( List<String> keys, String term ) {
+      if( term == null ) {
+         return;
+      }
+
+      term = term.trim();
+      if( term.length() == 0 || term.length() > MAX_TEXT_LENGTH ) {
+         return;
+      }
+
+      term = term.toLowerCase( Locale.ENGLISH );
+      if( !keys.contains( term )) {
+         keys.add( term );
+      }
+   }
+
+   /**
+    * Returns the text of the components which have a short, 
+    * meaningful one.  Other text components could hold entire 
+    * documents, so they are left out.
+    */
+   public static String getText( Component component ) {
+      if( component instanceof AbstractButton ) { return ((AbstractButton)component).getText(); }
+      if( component instanceof JLabel ) { return ((JLabel)component).getText(); }
+      if( component instanceof JTextField ) { return ((JTextField)component).getText(); }
+      if( component instanceof Label ) { return ((Label)component).getText(); }
+      if( component instanceof Button ) { return ((Button)component).getLabel(); }
+      return null;
+   }
+
+   private final class TermListener implements PropertyChangeListener {
+      @Override
+      public void propertyChange( PropertyChangeEvent event ) {
+         Component c = (Component)event.getSource();
+         if( "document".equals( event.getPropertyName() )) {
+            FieldListener fieldListener = fieldListeners.get( c );
+            if( fieldListener != null && event.getOldValue() != null ) {
+               ((Document)event.getOldValue()).removeDocumentListener( fieldListener );
+            }
+            if( fieldListener != null && event.getNewValue() != null ) {
+               ((Document)event.getNewValue()).addDocumentListener( fieldListener );
+            }
+         }
+         reindex( c );
+      }
+   }
+
+   /** Reindexes the field on the EDT, as documents can be changed on any thread. */
+   private final class FieldListener implements DocumentListener, Runnable {
+      private final JTextField field;
+
+      public FieldListener( JTextField field ) {
+         this.field = field;
+      }
+
+      public void insertUpdate( DocumentEvent e ) { changed(); }
+      public void removeUpdate( DocumentEvent e ) { changed(); }
+      public void changedUpdate( DocumentEvent e ) { }
+
+      private void changed() {
+         if( EventQueue.isDispatchThread() ) {
+            run();
+         }
+         else {
+            EventQueue.invokeLater( this );
+         }
+      }
+
+      public void run() {
+         reindex( field );
+      }
+   }
+
+   private final class IndexListener implements AWTEventListener {
+      @Override
+      public void eventDispatched( AWTEvent event ) {
+         switch( event.getID() ) {
+            case ContainerEvent.COMPONENT_ADDED:
+               ContainerEvent e = (ContainerEvent)event;
+               if( indexed.containsKey( e.getContainer() )) {
+                  add( e.getChild() );
+               }
+               break;
+
+            case ContainerEvent.COMPONENT_REMOVED:
+               unindexSubtree( ((ContainerEvent)event).getChild() );
+               break;
+
+            case WindowEvent.WINDOW_OPENED:
+               add( ((WindowEvent)event).getWindow() );
+               break;
+
+            case WindowEvent.WINDOW_CLOSED:
+               unindexSubtree( ((WindowEvent)event).getWindow() );
+               break;
+
+            default:
+               break;
+         }
+      }
+   }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.search;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.WindowEvent;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Finds the component under a point on the screen, looking through the 
+ * windows from the top down.<br />
+ * <br />
+ * Each window's visible components are kept in a grid of cells, listing 
+ * the components which overlap each cell in hierarchy order.  A lookup 
+ * only looks at the components in one cell and picks the same component 
+ * as SwingUtilities.getDeepestComponentAt() would.  A window's grid is 
+ * dropped when any component in it is moved, resized, shown, hidden, added
+ * or removed, and rebuilt on the next lookup in that window.<br />
+ * <br />
+ * AWT has no way to ask for the stacking order of windows, so it's 
+ * inferred: always on top windows first, then the most recently activated,
+ * each preceded by the windows it owns, which stay above their owner.  
+ * Like the rest of Swing, this class is meant to be used from the event 
+ * dispatch thread.
+ */
+public class HitTester {
+   private static final int CELL_SIZE = 64;
+
+   private final IdentityHashMap<Window, Grid> grids = new IdentityHashMap<Window, Grid>();
+
+   /** The activated windows, most recent first. */
+   private final ArrayList<WeakReference<Window>> activations = new ArrayList<WeakReference<Window>>();
+   private final HitListener listener = new HitListener();
+   private boolean installed = false;
+
+   private int builds = 0;
+
+
+   /** Starts listening for changes to the windows and their components. */
+   public void install() {
+      if( installed ) {
+         return;
+      }
+      installed = true;
+
+      Toolkit.getDefaultToolkit().addAWTEventListener( listener, 
+         AWTEvent.COMPONENT_EVENT_MASK | AWTEvent.CONTAINER_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK );
+      for( Window window : Window.getWindows() ) {
+         if( window.isFocused() ) {
+            activated( window );
+         }
+      }
+   }
+
+   /** Stops listening and releases the grids. */
+   public void uninstall() {
+      if( !installed ) {
+         return;
+      }
+      installed = false;
+
+      Toolkit.getDefaultToolkit().removeAWTEventListener( listener );
+      grids.clear();
+      activations.clear();
+   }
+
+   /** The number of grids which have been built, for seeing how often they're invalidated. */
+   public int getBuildCount() {
+      return builds;
+   }
+
+   /**
+    * The deepest visible component under the point on the screen, in the 
+    * topmost showing window which contains it, or null when there is none.
+    */
+   public Component getComponentAt( Point screen ) {
+      for( Window window : getStackingOrder() ) {
+         if( !window.isShowing() ) {
+            continue;
+         }
+
+         Point location = window.getLocationOnScreen();
+         Component found = getComponentAt( window, screen.x - location.x, screen.y - location.y );
+         if( found != null ) {
+            return found;
+         }
+      }
+      return null;
+   }
+
+   /** The deepest visible component at the point in the window's coordinates, or null. */
+   public Component getComponentAt( Window window, int x, int y ) {
+      Grid grid = grids.get( window );
+      if( grid == null ) {
+         grid = new Grid( window );
+         ++builds;
+         if( installed ) {
+            grids.put( window, grid );
+         }
+      }
+      return grid.find( x, y );
+   }
+
+   /**
+    * Every window, from the one believed to be on top to the one at the 
+    * bottom.  Windows which have never been activated come after those which
+    * have, newest first.
+    */
+   public List<Window> getStackingOrder() {
+      final IdentityHashMap<Window, Integer> ranks = new IdentityHashMap<Window, Integer>();
+      for( WeakReference<Window> ref : activations ) {
+         Window window = ref.get();
+         if( window != null && !ranks.containsKey( window )) {
+            ranks.put( window, ranks.size() );
+         }
+      }
+
+      Window[] all = Window.getWindows();
+      final IdentityHashMap<Window, Integer> ages = new IdentityHashMap<Window, Integer>();
+      for( int i = 0; i < all.length; ++i ) {
+         ages.put( all[i], all.length - i );
+      }
+
+      Comparator<Window> topFirst = new Comparator<Window>() {
+         public int compare( Window a, Window b ) {
+            Integer rankA = ranks.get( a );
+            Integer rankB = ranks.get( b );
+            if( rankA != null && rankB != null ) {
+               return rankA - rankB;
+            }
+            if( rankA != null || rankB != null ) {
+               return rankA != null ? -1 : 1;
+            }
+            return age( a ) - age( b );
+         }
+
+         private int age( Window w ) {
+            Integer age = ages.get( w );
+            return age == null ? 0 : age;
+         }
+      };
+
+      Window[] sorted = all.clone();
+      Arrays.sort( sorted, topFirst );
+
+      ArrayList<Window> order = new ArrayList<Window>();
+      IdentityHashMap<Window, Boolean> seen = new IdentityHashMap<Window, Boolean>();
+      for( Window window : sorted ) {
+         if( window.isAlwaysOnTop() ) {
+            addWithOwned( window, topFirst, order, seen );
+         }
+      }
+      for( Window window : sorted ) {
+         addWithOwned( window, topFirst, order, seen );
+      }
+      return order;
+   }
+
+   /** Adds the windows owned by 'window', top first, and then the window itself. */
+   private static void addWithOwned( Window window, Comparator<Window> topFirst, List<Window> order, IdentityHashMap<Window, Boolean> seen ) {
+      if( seen.containsKey( window )) {
+         return;
+      }
+      seen.put( window, Boolean.TRUE );
+
+      Window[] owned = window.getOwnedWindows();
+      Arrays.sort( owned, topFirst );
+      for( Window child : owned ) {
+         addWithOwned( child, topFirst, order, seen );
+      }
+      order.add( window );
+   }
+
+   private void activated( Window window ) {
+      removeActivation( window );
+      activations.add( 0, new WeakReference<Window>( window ));
+   }
+
+   private void removeActivation( Window window ) {
+      for( int i = activations.size() - 1; i >= 0; --i ) {
+         Window w = activations.get( i ).get();
+         if( w == null || w == window ) {
+            activations.remove( i );
+         }
+      }
+   }
+
+   private void invalidate( Component c ) {
+      Window window = c instanceof Window ? (Window)c : SwingUtilities.getWindowAncestor( c );
+      if( window != null ) {
+         grids.remove( window );
+      }
+   }
+
+   private final class HitListener implements AWTEventListener {
+      public void eventDispatched( AWTEvent event ) {
+         if( event.getID() == WindowEvent.WINDOW_ACTIVATED ) {
+            activated( ((WindowEvent)event).getWindow() );
+         }
+         else if( event.getID() == WindowEvent.WINDOW_CLOSED ) {
+            Window window = ((WindowEvent)event).getWindow();
+            removeActivation( window );
+            grids.remove( window );
+         }
+         else if( !( event instanceof WindowEvent ) && event.getSource() instanceof Component ) {
+            invalidate( (Component)event.getSource() );
+         }
+      }
+   }
+
+   /** 
+    * The visible components of a window in pre-order, with their bounds in
+    * the window's coordinates, and the cells each of them overlaps.
+    */
+   private static final class Grid {
+      private Component[] components = new Component[ 256 ];
+      private int[] parents = new int[ 256 ];
+      private int[] xs = new int[ 256 ];
+      private int[] ys = new int[ 256 ];
+      private int[] widths = new int[ 256 ];
+      private int[] heights = new int[ 256 ];
+      private int size = 0;
+
+      private final int width;
+      private final int height;
+      private final int columns;
+      private final int rows;
+
+      /** The components of cell 'c' are cellItems[ cellStarts[c] ] up to cellItems[ cellStarts[c+1] ]. */
+      private final int[] cellStarts;
+      private final int[] cellItems;
+
+      public Grid( Component root ) {
+         width = root.getWidth();
+         height = root.getHeight();
+         columns = Math.max( 1, ( width + CELL_SIZE - 1 ) / CELL_SIZE );
+         rows = Math.max( 1, ( height + CELL_SIZE - 1 ) / CELL_SIZE );
+
+         add( root, -1, 0, 0 );
+
+         // Count the components in each cell, then place them in pre-order
+         cellStarts = new int[ columns * rows + 1 ];
+         for( int i = 0; i < size; ++i ) {
+            forEachCell( i, null );
+         }
+         for( int c = 0; c < columns * rows; ++c ) {
+            cellStarts[ c + 1 ] += cellStarts[c];
+         }
+         cellItems = new int[ cellStarts[ columns * rows ]];
+         int[] fill = Arrays.copyOf( cellStarts, columns * rows );
+         for( int i = 0; i < size; ++i ) {
+            forEachCell( i, fill );
+         }
+      }
+
+      private void add( Component c, int parent, int x, int y ) {
+         if( size == components.length ) {
+            int capacity = size * 2;
+            components = Arrays.copyOf( components, capacity );
+            parents = Arrays.copyOf( parents, capacity );
+            xs = Arrays.copyOf( xs, capacity );
+            ys = Arrays.copyOf( ys, capacity );
+            widths = Arrays.copyOf( widths, capacity );
+            heights = Arrays.copyOf( heights, capacity );
+         }
+
+         int i = size++;
+         components[i] = c;
+         parents[i] = parent;
+         xs[i] = x;
+         ys[i] = y;
+         widths[i] = c.getWidth();
+         heights[i] = c.getHeight();
+
+         if( c instanceof Container ) {
+            Container container = (Container)c;
+            for( int child = 0, count = container.getComponentCount(); child < count; ++child ) {
+               Component comp = container.getComponent( child );
+               if( comp.isVisible() ) {
+                  add( comp, i, x + comp.getX(), y + comp.getY() );
+               }
+            }
+         }
+      }
+
+      /** Counts the component in each cell it overlaps, or places it when 'fill' is given. */
+      private void forEachCell( int i, int[] fill ) {
+         int left = Math.max( 0, xs[i] );
+         int top = Math.max( 0, ys[i] );
+         int right = Math.min( width, xs[i] + widths[i] ) - 1;
+         int bottom = Math.min( height, ys[i] + heights[i] ) - 1;
+         if( right < left || bottom < top ) {
+            return;
+         }
+
+         for( int row = top / CELL_SIZE; row <= bottom / CELL_SIZE; ++row ) {
+            for( int column = left / CELL_SIZE; column <= right / CELL_SIZE; ++column ) {
+               int cell = row * columns + column;
+               if( fill == null ) {
+                  ++cellStarts[ cell + 1 ];
+               }
+               else {
+                  cellItems[ fill[ cell ]++ ] = i;
+               }
+            }
+         }
+      }
+
+      /**
+       * Walks the cell's components in pre-order, descending into the first 
+       * child of the current component which contains the point, just as 
+       * getDeepestComponentAt() does.  Later siblings, and everything under 
+       * children that were passed over, no longer have the current component 
+       * as their parent and so are skipped.
+       */
+      public Component find( int x, int y ) {
+         if( x < 0 || y < 0 || x >= width || y >= height ) {
+            return null;
+         }
+
+         int cell = ( y / CELL_SIZE ) * columns + x / CELL_SIZE;
+         int current = -1;
+         for( int item = cellStarts[ cell ]; item < cellStarts[ cell + 1 ]; ++item ) {
+            int i = cellItems[ item ];
+            if( parents[i] == current && contains( i, x, y )) {
+               current = i;
+            }
+         }
+         return current < 0 ? null : components[ current ];
+      }
+
+      private boolean contains( int i, int x, int y ) {
+         int localX = x - xs[i];
+         int localY = y - ys[i];
+         return localX >= 0 && localY >= 0 && localX < widths[i] && localY < heights[i]
+            && components[i].contains( localX, localY );
+      }
+   }
+}
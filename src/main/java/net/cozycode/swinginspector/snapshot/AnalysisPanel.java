@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import net.cozycode.constructs.IClosure;
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Runs a HierarchyAnalysis of every window, except the one the panel is in,
+ * and lists what it found.  Double clicking a finding inspects it's 
+ * component, if the hierarchy hasn't changed since.
+ */
+public class AnalysisPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+   private static final int COMMON_CLASSES = 10;
+
+   private final IClosure<Component> inspector;
+   private final FindingTableModel model = new FindingTableModel();
+   private final JTable table = new JTable( model );
+
+   private final JButton analyze = new JButton( "Analyze" );
+   private final JLabel summary = new JLabel( "Not analyzed yet" );
+
+   private HierarchyAnalysis analysis = null;
+
+   /**
+    * @param inspector - called with the component of a row which is double clicked
+    */
+   public AnalysisPanel( IClosure<Component> inspector ) {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][grow,fill]" ));
+      this.inspector = inspector;
+
+      analyze.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            analyze.setEnabled( false );
+            summary.setText( "Analyzing..." );
+            HierarchyAnalysis.analyzeWindows( SwingUtilities.getWindowAncestor( AnalysisPanel.this ), new AnalysisListener() );
+         }
+      });
+
+      table.addMouseListener( new TableMouseListener() );
+      table.setAutoCreateRowSorter( true );
+
+      add( new JTitledSeparator( "Hierarchy Analysis" ), "split 2" );
+      add( analyze, "growx 0" );
+      add( summary );
+      add( new JScrollPane( table ));
+   }
+
+   private void setAnalysis( HierarchyAnalysis analysis ) {
+      this.analysis = analysis;
+      analyze.setEnabled( true );
+      summary.setText( String.format( 
+         "%d components, %d containers, depth %d (%.1f average).  Captured in %.1f ms on the EDT, analyzed in %.1f ms off it.",
+         analysis.getComponentCount(), analysis.getContainerCount(), 
+         analysis.getMaxDepth(), analysis.getAverageDepth(),
+         analysis.getCaptureNanos() / 1e6, analysis.getAnalysisNanos() / 1e6 
+      ));
+
+      HierarchySnapshot snapshot = analysis.getSnapshot();
+      ArrayList<Finding> findings = new ArrayList<Finding>();
+
+      for( String className : analysis.getCommonClasses( COMMON_CLASSES )) {
+         findings.add( new Finding( "Common Class", -1, className, analysis.getClassCount( className ) +" instances" ));
+      }
+
+      for( int i : analysis.getHiddenButSized() ) {
+         findings.add( new Finding( "Hidden but Sized", i, describe( snapshot, i ), 
+            analysis.getSubtreeSize( i ) +" components, "+ analysis.getHiddenButSizedCount() +" such in all" ));
+      }
+
+      for( int i : analysis.getZeroSized() ) {
+         findings.add( new Finding( "Showing with No Size", i, describe( snapshot, i ), 
+            analysis.getZeroSizedCount() +" such in all" ));
+      }
+
+      for( int i : analysis.getDuplicates() ) {
+         findings.add( new Finding( "Duplicate Sibling", i, describe( snapshot, i ), 
+            analysis.getDuplicateCount() +" such in all" ));
+      }
+
+      model.setRows( findings );
+   }
+
+   private static String describe( HierarchySnapshot snapshot, int index ) {
+      String type = snapshot.getClassName( index );
+      type = type.substring( type.lastIndexOf( '.' ) + 1 );
+
+      String name = snapshot.getName( index );
+      return type + ( name != null ? " \""+ name +"\"" : "" );
+   }
+
+   private final class AnalysisListener implements IClosure<HierarchyAnalysis> {
+      @Override
+      public void yield( HierarchyAnalysis item ) {
+         setAnalysis( item );
+      }
+   }
+
+   private final class TableMouseListener extends MouseAdapter {
+      @Override
+      public void mouseClicked( MouseEvent e ) {
+         int row = table.getSelectedRow();
+         if( e.getClickCount() == 2 && row >= 0 && analysis != null ) {
+            int index = model.getFinding( table.convertRowIndexToModel( row )).index;
+            Component c = index < 0 ? null : analysis.find( index );
+            if( c != null ) {
+               inspector.yield( c );
+            }
+         }
+      }
+   }
+
+   private static final class Finding {
+      private final String kind;
+      private final int index;
+      private final String component;
+      private final String detail;
+
+      public Finding( String kind, int index, String component, String detail ) {
+         this.kind = kind;
+         this.index = index;
+         this.component = component;
+         this.detail = detail;
+      }
+   }
+
+   private static final class FindingTableModel extends AbstractTableModel {
+      private static final long serialVersionUID = 1L;
+      private static final String[] COLUMNS = { "Finding", "Component", "Detail" };
+
+      private List<Finding> rows = new ArrayList<Finding>();
+
+      public void setRows( List<Finding> rows ) {
+         this.rows = rows;
+         fireTableDataChanged();
+      }
+
+      public Finding getFinding( int row ) {
+         return rows.get( row );
+      }
+
+      public int getRowCount() {
+         return rows.size();
+      }
+
+      public int getColumnCount() {
+         return COLUMNS.length;
+      }
+
+      @Override
+      public String getColumnName( int column ) {
+         return COLUMNS[ column ];
+      }
+
+      public Object getValueAt( int row, int column ) {
+         Finding finding = rows.get( row );
+         switch( column ) {
+            case 0: return finding.kind;
+            case 1: return finding.component;
+            case 2: return finding.detail;
+            default: return null;
+         }
+      }
+   }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.swing.SwingUtilities;
+
+import net.cozycode.constructs.IClosure;
+
+/**
+ * Whole hierarchy statistics worked out from a snapshot, away from the
+ * event dispatch thread: how many components there are and of which 
+ * classes, how deep the hierarchy goes, which components are hidden but 
+ * still hold a size, which are shown with no size, and which duplicate an
+ * earlier sibling's class, name and non-empty bounds.<br />
+ * <br />
+ * analyzeWindows() captures the structure on the EDT, which is a single 
+ * pass over the live components, then analyzes it on a ForkJoinPool and 
+ * hands the result back on the EDT.  The per component checks are split 
+ * into ranges analyzed in parallel; depths and subtree sizes depend on the
+ * parent, so they're one quick pass over the parent column.
+ */
+public final class HierarchyAnalysis {
+   private static final ForkJoinPool pool = new ForkJoinPool();
+   private static final int CHUNK = 4096;
+   private static final int MAX_FINDINGS = 100;
+
+   private final HierarchySnapshot snapshot;
+   private final long captureNanos;
+   private final long analysisNanos;
+
+   private final int containers;
+   private final int maxDepth;
+   private final double averageDepth;
+   private final int[] depthCounts;
+   private final int[] classCounts;
+   private final int[] subtreeSizes;
+
+   private final int[] hidden;
+   private final int hiddenCount;
+   private final int hiddenSubtreeTotal;
+   private final int[] zeroSized;
+   private final int zeroSizedCount;
+   private final int[] duplicates;
+   private final int duplicateCount;
+
+
+   private HierarchyAnalysis( HierarchySnapshot snapshot, long captureNanos, long startNanos ) {
+      this.snapshot = snapshot;
+      this.captureNanos = captureNanos;
+
+      int size = snapshot.size();
+      int[] depths = new int[ size ];
+      subtreeSizes = new int[ size ];
+
+      // Parents come first, so depths can be filled in forwards...
+      int deepest = 0;
+      long depthSum = 0;
+      for( int i = 0; i < size; ++i ) {
+         int parent = snapshot.getParent( i );
+         depths[i] = parent < 0 ? 0 : depths[ parent ] + 1;
+         deepest = Math.max( deepest, depths[i] );
+         depthSum += depths[i];
+      }
+      // ...and subtree sizes backwards
+      for( int i = size - 1; i >= 0; --i ) {
+         subtreeSizes[i] += 1;
+         int parent = snapshot.getParent( i );
+         if( parent >= 0 ) {
+            subtreeSizes[ parent ] += subtreeSizes[i];
+         }
+      }
+
+      depthCounts = new int[ deepest + 1 ];
+      for( int depth : depths ) {
+         ++depthCounts[ depth ];
+      }
+      maxDepth = deepest;
+      averageDepth = size == 0 ? 0 : (double)depthSum / size;
+
+      long[] siblingKeys = new long[ size ];
+      Partial result = pool.invoke( new ChunkTask( snapshot, siblingKeys, 0, size ));
+      containers = result.containers;
+      classCounts = result.classCounts;
+      hiddenCount = result.hidden.count;
+      zeroSizedCount = result.zeroSized.count;
+      hidden = largestFirst( result.hidden.toArray() );
+      zeroSized = result.zeroSized.first( MAX_FINDINGS );
+
+      IndexList found = findDuplicates( siblingKeys );
+      duplicateCount = found.count;
+      duplicates = found.first( MAX_FINDINGS );
+
+      int total = 0;
+      for( int i : result.hidden.toArray() ) {
+         total += subtreeSizes[i];
+      }
+      hiddenSubtreeTotal = total;
+
+      analysisNanos = System.nanoTime() - startNanos;
+   }
+
+   /** Analyzes the snapshot on the pool, blocking until it's done.  Can be called from any thread. */
+   public static HierarchyAnalysis analyze( HierarchySnapshot snapshot ) {
+      return new HierarchyAnalysis( snapshot, 0, System.nanoTime() );
+   }
+
+   /**
+    * Captures the structure of every window except 'ignored', then analyzes
+    * it on the pool and calls 'done' on the EDT.  Only the capture blocks 
+    * the EDT.  Must be called on the EDT.
+    */
+   public static void analyzeWindows( Window ignored, final IClosure<HierarchyAnalysis> done ) {
+      long start = System.nanoTime();
+      final HierarchySnapshot snapshot = HierarchySnapshot.captureWindowStructure( ignored );
+      final long captureNanos = System.nanoTime() - start;
+
+      pool.execute( new Runnable() {
+         public void run() {
+            final HierarchyAnalysis analysis = new HierarchyAnalysis( snapshot, captureNanos, System.nanoTime() );
+            SwingUtilities.invokeLater( new Runnable() {
+               public void run() {
+                  done.yield( analysis );
+               }
+            });
+         }
+      });
+   }
+
+   /** 
+    * Finds the live component captured at 'index' by following the same 
+    * child positions from the window.  Returns null if the hierarchy has 
+    * changed so that the component is no longer there.  Only call on the EDT.
+    */
+   public Component find( int index ) {
+      int depth = 0;
+      for( int i = index; snapshot.getParent( i ) >= 0; i = snapshot.getParent( i )) {
+         ++depth;
+      }
+
+      int[] path = new int[ depth + 1 ];
+      for( int i = index, d = depth; d >= 0; i = snapshot.getParent( i ), --d ) {
+         path[d] = i;
+      }
+
+      Component c = null;
+      for( Window window : Window.getWindows() ) {
+         if( System.identityHashCode( window ) == snapshot.getIdentity( path[0] )) {
+            c = window;
+         }
+      }
+
+      for( int d = 1; d < path.length && c != null; ++d ) {
+         c = findChild( c, path[ d - 1 ], path[d] );
+      }
+      return c;
+   }
+
+   private Component findChild( Component parent, int parentIndex, int childIndex ) {
+      if( !( parent instanceof Container )) {
+         return null;
+      }
+
+      int position = 0;
+      for( int i = snapshot.getFirstChild( parentIndex ); i != childIndex; i = snapshot.getNextSibling( i )) {
+         ++position;
+      }
+
+      Container container = (Container)parent;
+      if( position >= container.getComponentCount() ) {
+         return null;
+      }
+      Component child = container.getComponent( position );
+      return System.identityHashCode( child ) == snapshot.getIdentity( childIndex ) ? child : null;
+   }
+
+   public HierarchySnapshot getSnapshot() {
+      return snapshot;
+   }
+
+   /** The time the EDT spent capturing, zero when the snapshot was supplied. */
+   public long getCaptureNanos() {
+      return captureNanos;
+   }
+
+   /** The time spent analyzing, off the EDT. */
+   public long getAnalysisNanos() {
+      return analysisNanos;
+   }
+
+   public int getComponentCount() {
+      return snapshot.size();
+   }
+
+   public int getContainerCount() {
+      return containers;
+   }
+
+   public int getMaxDepth() {
+      return maxDepth;
+   }
+
+   public double getAverageDepth() {
+      return averageDepth;
+   }
+
+   /** The number of components at each depth, windows being at depth 0. */
+   public int[] getDepthCounts() {
+      return depthCounts.clone();
+   }
+
+   /** The number of components in the subtree of the one at 'index', including itself. */
+   public int getSubtreeSize( int index ) {
+      return subtreeSizes[ index ];
+   }
+
+   /** The class names with the most instances, most first. */
+   public List<String> getCommonClasses( int limit ) {
+      Integer[] ids = new Integer[ classCounts.length ];
+      for( int i = 0; i < ids.length; ++i ) {
+         ids[i] = i;
+      }
+      Arrays.sort( ids, new Comparator<Integer>() {
+         public int compare( Integer a, Integer b ) {
+            return classCounts[b] - classCounts[a];
+         }
+      });
+
+      ArrayList<String> classes = new ArrayList<String>();
+      for( int i = 0; i < ids.length && classes.size() < limit && classCounts[ ids[i] ] > 0; ++i ) {
+         classes.add( snapshot.getStringAt( ids[i] ));
+      }
+      return classes;
+   }
+
+   public int getClassCount( String className ) {
+      for( int i = 0; i < snapshot.getStringCount(); ++i ) {
+         if( snapshot.getStringAt( i ).equals( className )) {
+            return i < classCounts.length ? classCounts[i] : 0;
+         }
+      }
+      return 0;
+   }
+
+   /** 
+    * Components which aren't visible but still have a size, largest subtree 
+    * first.  They and everything in them are kept and laid out without being 
+    * seen.  At most MAX_FINDINGS are returned.
+    */
+   public int[] getHiddenButSized() {
+      return hidden.clone();
+   }
+
+   public int getHiddenButSizedCount() {
+      return hiddenCount;
+   }
+
+   /** The number of components in the subtrees of all hidden but sized components. */
+   public int getHiddenSubtreeTotal() {
+      return hiddenSubtreeTotal;
+   }
+
+   /** Components which are showing but have no width or height.  At most MAX_FINDINGS. */
+   public int[] getZeroSized() {
+      return zeroSized.clone();
+   }
+
+   public int getZeroSizedCount() {
+      return zeroSizedCount;
+   }
+
+   /** Sized components with the same class, name and bounds as an earlier sibling.  At most MAX_FINDINGS. */
+   public int[] getDuplicates() {
+      return duplicates.clone();
+   }
+
+   public int getDuplicateCount() {
+      return duplicateCount;
+   }
+
+   /**
+    * Finds the components whose sibling key was already seen, using an open
+    * addressing table of the keys so nothing is boxed.  Zero means no key.
+    */
+   private static IndexList findDuplicates( long[] keys ) {
+      int capacity = Integer.highestOneBit( Math.max( 16, keys.length * 2 )) << 1;
+      long[] table = new long[ capacity ];
+      int mask = capacity - 1;
+
+      IndexList found = new IndexList();
+      for( int i = 0; i < keys.length; ++i ) {
+         long key = keys[i];
+         if( key == 0 ) {
+            continue;
+         }
+
+         int slot = (int)( key ^ ( key >>> 32 )) & mask;
+         while( table[ slot ] != 0 && table[ slot ] != key ) {
+            slot = ( slot + 1 ) & mask;
+         }
+         if( table[ slot ] == key ) {
+            found.add( i );
+         }
+         else {
+            table[ slot ] = key;
+         }
+      }
+      return found;
+   }
+
+   private int[] largestFirst( int[] indexes ) {
+      Integer[] boxed = new Integer[ indexes.length ];
+      for( int i = 0; i < indexes.length; ++i ) {
+         boxed[i] = indexes[i];
+      }
+      Arrays.sort( boxed, new Comparator<Integer>() {
+         public int compare( Integer a, Integer b ) {
+            return subtreeSizes[b] - subtreeSizes[a];
+         }
+      });
+
+      int[] sorted = new int[ Math.min( boxed.length, MAX_FINDINGS ) ];
+      for( int i = 0; i < sorted.length; ++i ) {
+         sorted[i] = boxed[i];
+      }
+      return sorted;
+   }
+
+   /** A growable list of component indexes. */
+   private static final class IndexList {
+      private int[] items = new int[ 16 ];
+      private int count = 0;
+
+      public void add( int index ) {
+         if( count == items.length ) {
+            items = Arrays.copyOf( items, count * 2 );
+         }
+         items[ count++ ] = index;
+      }
+
+      public void addAll( IndexList other ) {
+         for( int i = 0; i < other.count; ++i ) {
+            add( other.items[i] );
+         }
+      }
+
+      public int[] toArray() {
+         return Arrays.copyOf( items, count );
+      }
+
+      public int[] first( int limit ) {
+         return Arrays.copyOf( items, Math.min( count, limit ));
+      }
+   }
+
+   /** The findings for a range of components. */
+   private static final class Partial {
+      private final int[] classCounts;
+      private final IndexList hidden = new IndexList();
+      private final IndexList zeroSized = new IndexList();
+      private int containers = 0;
+
+      public Partial( int stringCount ) {
+         classCounts = new int[ stringCount ];
+      }
+
+      /** Adds the findings of the range which follows this one. */
+      public Partial merge( Partial next ) {
+         for( int i = 0; i < classCounts.length; ++i ) {
+            classCounts[i] += next.classCounts[i];
+         }
+         containers += next.containers;
+         hidden.addAll( next.hidden );
+         zeroSized.addAll( next.zeroSized );
+         return this;
+      }
+   }
+
+   private static final class ChunkTask extends RecursiveTask<Partial> {
+      private static final long serialVersionUID = 1L;
+
+      private final HierarchySnapshot snapshot;
+      private final long[] siblingKeys;
+      private final int from;
+      private final int to;
+
+      /** Fills in the sibling keys of the range, each task writing only it's own. */
+      public ChunkTask( HierarchySnapshot snapshot, long[] siblingKeys, int from, int to ) {
+         this.snapshot = snapshot;
+         this.siblingKeys = siblingKeys;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected Partial compute() {
+         if( to - from > CHUNK ) {
+            int middle = ( from + to ) >>> 1;
+            ChunkTask second = new ChunkTask( snapshot, siblingKeys, middle, to );
+            second.fork();
+            Partial first = new ChunkTask( snapshot, siblingKeys, from, middle ).compute();
+            return first.merge( second.join() );
+         }
+
+         Partial partial = new Partial( snapshot.getStringCount() );
+         for( int i = from; i < to; ++i ) {
+            int flags = snapshot.get( HierarchySnapshot.FLAGS, i );
+            int width = snapshot.get( HierarchySnapshot.WIDTH, i );
+            int height = snapshot.get( HierarchySnapshot.HEIGHT, i );
+            int parent = snapshot.getParent( i );
+
+            ++partial.classCounts[ snapshot.get( HierarchySnapshot.CLASS, i ) ];
+            if(( flags & HierarchySnapshot.CONTAINER ) != 0 ) {
+               ++partial.containers;
+            }
+            if(( flags & HierarchySnapshot.VISIBLE ) == 0 && width > 0 && height > 0 && parent >= 0 ) {
+               partial.hidden.add( i );
+            }
+            if(( flags & HierarchySnapshot.SHOWING ) != 0 && ( width == 0 || height == 0 )) {
+               partial.zeroSized.add( i );
+            }
+
+            // Siblings which haven't been laid out yet all look alike, so only sized ones count
+            if( parent >= 0 && width > 0 && height > 0 ) {
+               long key = mix( parent, snapshot.get( HierarchySnapshot.CLASS, i ));
+               key = mix( key, snapshot.get( HierarchySnapshot.NAME, i ));
+               key = mix( key, snapshot.get( HierarchySnapshot.X, i ));
+               key = mix( key, snapshot.get( HierarchySnapshot.Y, i ));
+               key = mix( key, width );
+               key = mix( key, height );
+               siblingKeys[i] = key == 0 ? 1 : key;
+            }
+         }
+         return partial;
+      }
+
+      private static long mix( long h, int value ) {
+         h ^= value;
+         h *= 0x9E3779B97F4A7C15L;
+         return h ^ ( h >>> 29 );
+      }
+   }
+}
@@ -0,0 +1,784 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Insets;
+import java.awt.LayoutManager;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.swing.JComponent;
+import javax.swing.border.Border;
+
+import net.cozycode.swinginspector.profiling.ProfilingLayout;
+
+/**
+ * A copy of a component hierarchy and the properties the inspectors show,
+ * which can be written to and read from a compact binary form.<br />
+ * <br />
+ * Components are stored in pre-order, one int column per property, so 
+ * index 'i' of every column describes the same component.  Strings (class
+ * names, names, fonts) are interned in a table and referred to by index.  
+ * On disk each column is written in turn, mostly as zig-zag varints, with
+ * parents stored as the distance back to the parent, which is usually one
+ * byte.  The header records which JVM captured it, see isSameSession().<br />
+ * <br />
+ * Capturing reads the live components and so must be done on the event 
+ * dispatch thread.  Everything else only reads the captured columns.
+ */
+public final class HierarchySnapshot {
+   private static final int MAGIC = 0x5357534E; // "SWSN"
+   private static final int VERSION = 1;
+   private static final int STRUCTURE_ONLY_FLAG = 1;
+   private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+   /** Identifies this JVM, as identity hashes only mean something within one. */
+   private static final long SESSION = new Random().nextLong();
+
+   // Columns
+   public static final int PARENT = 0;
+   public static final int IDENTITY = 1;
+   public static final int CLASS = 2;
+   public static final int NAME = 3;
+   public static final int X = 4;
+   public static final int Y = 5;
+   public static final int WIDTH = 6;
+   public static final int HEIGHT = 7;
+   public static final int MIN_WIDTH = 8;
+   public static final int MIN_HEIGHT = 9;
+   public static final int MAX_WIDTH = 10;
+   public static final int MAX_HEIGHT = 11;
+   public static final int PREF_WIDTH = 12;
+   public static final int PREF_HEIGHT = 13;
+   public static final int FONT = 14;
+   public static final int FOREGROUND = 15;
+   public static final int BACKGROUND = 16;
+   public static final int FLAGS = 17;
+   public static final int ALIGNMENT_X = 18;
+   public static final int ALIGNMENT_Y = 19;
+   public static final int LAYOUT = 20;
+   public static final int BORDER = 21;
+   public static final int UI_CLASS = 22;
+   public static final int INSETS_TOP = 23;
+   public static final int INSETS_LEFT = 24;
+   public static final int INSETS_BOTTOM = 25;
+   public static final int INSETS_RIGHT = 26;
+   public static final int COLUMN_COUNT = 27;
+
+   private static final String[] COLUMN_NAMES = {
+      "Parent", "Identity", "Class", "Name", "X", "Y", "Width", "Height",
+      "Min Width", "Min Height", "Max Width", "Max Height", "Pref Width", "Pref Height",
+      "Font", "Foreground", "Background", "Flags", "Alignment X", "Alignment Y",
+      "Layout", "Border", "UI Class", "Insets Top", "Insets Left", "Insets Bottom", "Insets Right"
+   };
+
+   /** Columns holding indexes into the string table. */
+   private static final boolean[] STRING = new boolean[ COLUMN_COUNT ];
+   static {
+      STRING[ CLASS ] = true;
+      STRING[ NAME ] = true;
+      STRING[ FONT ] = true;
+      STRING[ LAYOUT ] = true;
+      STRING[ BORDER ] = true;
+      STRING[ UI_CLASS ] = true;
+   }
+
+   /** Columns written as four raw bytes, as varints would only make them longer. */
+   private static final boolean[] RAW = new boolean[ COLUMN_COUNT ];
+   static {
+      RAW[ IDENTITY ] = true;
+      RAW[ FOREGROUND ] = true;
+      RAW[ BACKGROUND ] = true;
+      RAW[ ALIGNMENT_X ] = true;
+      RAW[ ALIGNMENT_Y ] = true;
+   }
+
+   // Flags
+   public static final int ENABLED            = 1 << 0;
+   public static final int VISIBLE            = 1 << 1;
+   public static final int OPAQUE             = 1 << 2;
+   public static final int FOCUSABLE          = 1 << 3;
+   public static final int SHOWING            = 1 << 4;
+   public static final int FOCUS_OWNER        = 1 << 5;
+   public static final int DOUBLE_BUFFERED    = 1 << 6;
+   public static final int LIGHTWEIGHT        = 1 << 7;
+   public static final int VALID              = 1 << 8;
+   public static final int FONT_SET           = 1 << 9;
+   public static final int FOREGROUND_SET     = 1 << 10;
+   public static final int BACKGROUND_SET     = 1 << 11;
+   public static final int MIN_SIZE_SET       = 1 << 12;
+   public static final int MAX_SIZE_SET       = 1 << 13;
+   public static final int PREF_SIZE_SET      = 1 << 14;
+   public static final int CURSOR_SET         = 1 << 15;
+   public static final int HAS_FOREGROUND     = 1 << 16;
+   public static final int HAS_BACKGROUND     = 1 << 17;
+   public static final int CONTAINER          = 1 << 18;
+   public static final int FOCUS_CYCLE_ROOT   = 1 << 19;
+   public static final int JCOMPONENT         = 1 << 20;
+   public static final int AUTOSCROLLS        = 1 << 21;
+
+   private final long timestamp;
+   private final long session;
+   private final int size;
+   private final int[][] columns;
+   private final String[] strings;
+   private final boolean structureOnly;
+
+   private int[] firstChildren = null;
+   private int[] nextSiblings = null;
+
+
+   private HierarchySnapshot( long timestamp, long session, int size, int[][] columns, String[] strings, boolean structureOnly ) {
+      this.timestamp = timestamp;
+      this.session = session;
+      this.size = size;
+      this.columns = columns;
+      this.strings = strings;
+      this.structureOnly = structureOnly;
+   }
+
+   /** Captures the hierarchies under the roots, one after another.  Only call on the EDT. */
+   public static HierarchySnapshot capture( Component... roots ) {
+      return capture( false, roots );
+   }
+
+   /**
+    * Captures only the structure of the hierarchies under the roots: the 
+    * parents, identities, classes, names, bounds and flags, except for
+    * HAS_FOREGROUND and HAS_BACKGROUND.  That leaves out the size hints, 
+    * which can run layout code, and everything else which has to be looked
+    * up, so the capture is a single quick pass.  The other columns are left
+    * as zero, or -1 for strings.  Only call on the EDT.
+    */
+   public static HierarchySnapshot captureStructure( Component... roots ) {
+      return capture( true, roots );
+   }
+
+   private static HierarchySnapshot capture( boolean structureOnly, Component... roots ) {
+      Capture capture = new Capture( structureOnly );
+      for( Component root : roots ) {
+         capture.add( root, -1 );
+      }
+      return capture.finish();
+   }
+
+   /** 
+    * Captures every displayable window except 'ignored', which is normally
+    * the inspector's own.  Only call on the EDT.
+    */
+   public static HierarchySnapshot captureWindows( Window ignored ) {
+      return capture( false, getWindows( ignored ));
+   }
+
+   /** Captures the structure of every displayable window except 'ignored'.  Only call on the EDT. */
+   public static HierarchySnapshot captureWindowStructure( Window ignored ) {
+      return capture( true, getWindows( ignored ));
+   }
+
+   private static Component[] getWindows( Window ignored ) {
+      ArrayList<Component> windows = new ArrayList<Component>();
+      for( Window window : Window.getWindows() ) {
+         if( window != ignored && window.isDisplayable() ) {
+            windows.add( window );
+         }
+      }
+      return windows.toArray( new Component[ windows.size() ] );
+   }
+
+   public static String getColumnName( int column ) {
+      return COLUMN_NAMES[ column ];
+   }
+
+   /** Whether the column holds indexes into the string table rather than values. */
+   public static boolean isStringColumn( int column ) {
+      return STRING[ column ];
+   }
+
+   /** The number of components. */
+   public int size() {
+      return size;
+   }
+
+   /** Whether only the structure was captured, see captureStructure(). */
+   public boolean isStructureOnly() {
+      return structureOnly;
+   }
+
+   /** When it was captured, in System.currentTimeMillis() terms. */
+   public long getTimestamp() {
+      return timestamp;
+   }
+
+   /**
+    * Whether both snapshots were captured by the same JVM, which is the only
+    * case in which their identity hashes can be compared.
+    */
+   public boolean isSameSession( HierarchySnapshot other ) {
+      return session == other.session;
+   }
+
+   public int get( int column, int index ) {
+      return columns[ column ][ index ];
+   }
+
+   /** The string a string column refers to, or null. */
+   public String getString( int column, int index ) {
+      int id = columns[ column ][ index ];
+      return id < 0 ? null : strings[ id ];
+   }
+
+   /** The index of the component's parent, or -1 for a root. */
+   public int getParent( int index ) {
+      return columns[ PARENT ][ index ];
+   }
+
+   /** The index of the component's first child, or -1. */
+   public int getFirstChild( int index ) {
+      linkChildren();
+      return firstChildren[ index ];
+   }
+
+   /** The index of the component's next sibling, or -1. */
+   public int getNextSibling( int index ) {
+      linkChildren();
+      return nextSiblings[ index ];
+   }
+
+   /** The System.identityHashCode() of the component when it was captured. */
+   public int getIdentity( int index ) {
+      return columns[ IDENTITY ][ index ];
+   }
+
+   public String getClassName( int index ) {
+      return getString( CLASS, index );
+   }
+
+   public String getName( int index ) {
+      return getString( NAME, index );
+   }
+
+   public Rectangle getBounds( int index ) {
+      return new Rectangle( 
+         columns[ X ][ index ], columns[ Y ][ index ], 
+         columns[ WIDTH ][ index ], columns[ HEIGHT ][ index ] 
+      );
+   }
+
+   public boolean is( int flag, int index ) {
+      return ( columns[ FLAGS ][ index ] & flag ) != 0;
+   }
+
+   /** The number of distinct strings. */
+   public int getStringCount() {
+      return strings.length;
+   }
+
+   /** The string with the given index in the string table. */
+   public String getStringAt( int id ) {
+      return strings[ id ];
+   }
+
+   /** 
+    * Builds the child links, in one pass, the first time they're needed.  
+    * Synchronized so snapshots can be shared between threads.
+    */
+   private synchronized void linkChildren() {
+      if( firstChildren != null ) {
+         return;
+      }
+
+      int[] first = new int[ size ];
+      int[] next = new int[ size ];
+      int[] last = new int[ size ];
+      Arrays.fill( first, -1 );
+      Arrays.fill( next, -1 );
+
+      int lastRoot = -1;
+      for( int i = 0; i < size; ++i ) {
+         int parent = columns[ PARENT ][ i ];
+         int prev = parent < 0 ? lastRoot : ( first[ parent ] < 0 ? -1 : last[ parent ] );
+         if( prev >= 0 ) {
+            next[ prev ] = i;
+         }
+         else if( parent >= 0 ) {
+            first[ parent ] = i;
+         }
+
+         if( parent < 0 ) {
+            lastRoot = i;
+         }
+         else {
+            last[ parent ] = i;
+         }
+      }
+
+      nextSiblings = next;
+      firstChildren = first;
+   }
+
+   public void write( OutputStream out ) throws IOException {
+      ByteWriter writer = new ByteWriter( size * COLUMN_COUNT * 2 + strings.length * 32 + 64 );
+      writer.writeRaw( MAGIC );
+      writer.writeVarint( VERSION );
+      writer.writeRaw( (int)( timestamp >>> 32 ));
+      writer.writeRaw( (int)timestamp );
+      writer.writeRaw( (int)( session >>> 32 ));
+      writer.writeRaw( (int)session );
+      writer.writeVarint( size );
+      writer.writeVarint( COLUMN_COUNT );
+      writer.writeVarint( structureOnly ? STRUCTURE_ONLY_FLAG : 0 );
+
+      writer.writeVarint( strings.length );
+      for( String s : strings ) {
+         byte[] bytes = s.getBytes( UTF8 );
+         writer.writeVarint( bytes.length );
+         writer.writeBytes( bytes );
+      }
+
+      for( int c = 0; c < COLUMN_COUNT; ++c ) {
+         int[] column = columns[ c ];
+         if( RAW[c] ) {
+            for( int i = 0; i < size; ++i ) {
+               writer.writeRaw( column[i] );
+            }
+         }
+         else if( c == PARENT ) {
+            for( int i = 0; i < size; ++i ) {
+               writer.writeVarint( i - column[i] );
+            }
+         }
+         else {
+            for( int i = 0; i < size; ++i ) {
+               writer.writeVarint( zigzag( column[i] ));
+            }
+         }
+      }
+
+      out.write( writer.bytes, 0, writer.length );
+      out.flush();
+   }
+
+   public static HierarchySnapshot read( InputStream in ) throws IOException {
+      ByteArrayOutputStream all = new ByteArrayOutputStream();
+      byte[] buffer = new byte[ 1 << 16 ];
+      for( int n = in.read( buffer ); n >= 0; n = in.read( buffer )) {
+         all.write( buffer, 0, n );
+      }
+
+      ByteReader reader = new ByteReader( all.toByteArray() );
+      if( reader.readRaw() != MAGIC ) {
+         throw new IOException( "Not a hierarchy snapshot" );
+      }
+      int version = reader.readVarint();
+      if( version != VERSION ) {
+         throw new IOException( "Unsupported snapshot version "+ version );
+      }
+
+      long timestamp = ((long)reader.readRaw() << 32 ) | ( reader.readRaw() & 0xFFFFFFFFL );
+      long session = ((long)reader.readRaw() << 32 ) | ( reader.readRaw() & 0xFFFFFFFFL );
+      int size = reader.readVarint();
+      int columnCount = reader.readVarint();
+      if( columnCount != COLUMN_COUNT ) {
+         throw new IOException( "Unexpected column count "+ columnCount );
+      }
+      boolean structureOnly = ( reader.readVarint() & STRUCTURE_ONLY_FLAG ) != 0;
+
+      // Every string takes at least a byte, and every component at least a byte per column, 
+      // so the counts can be checked against what's left before anything is allocated.
+      int stringCount = reader.readVarint();
+      if( stringCount < 0 || stringCount > reader.remaining() ) {
+         throw new IOException( "Corrupt string count "+ stringCount );
+      }
+      String[] strings = new String[ stringCount ];
+      for( int i = 0; i < strings.length; ++i ) {
+         strings[i] = reader.readString();
+      }
+
+      if( size < 0 || (long)size * COLUMN_COUNT > reader.remaining() ) {
+         throw new IOException( "Corrupt component count "+ size );
+      }
+
+      int[][] columns = new int[ COLUMN_COUNT ][ size ];
+      for( int c = 0; c < COLUMN_COUNT; ++c ) {
+         int[] column = columns[c];
+         if( RAW[c] ) {
+            for( int i = 0; i < size; ++i ) {
+               column[i] = reader.readRaw();
+            }
+         }
+         else if( c == PARENT ) {
+            for( int i = 0; i < size; ++i ) {
+               column[i] = i - reader.readVarint();
+               if( column[i] < -1 || column[i] >= i ) {
+                  throw new IOException( "Corrupt parent of component "+ i );
+               }
+            }
+         }
+         else {
+            for( int i = 0; i < size; ++i ) {
+               column[i] = unzigzag( reader.readVarint() );
+               if( STRING[c] && ( column[i] < -1 || column[i] >= strings.length )) {
+                  throw new IOException( "Corrupt string reference in component "+ i );
+               }
+            }
+         }
+      }
+
+      return new HierarchySnapshot( timestamp, session, size, columns, strings, structureOnly );
+   }
+
+   private static int zigzag( int value ) {
+      return ( value << 1 ) ^ ( value >> 31 );
+   }
+
+   private static int unzigzag( int value ) {
+      return ( value >>> 1 ) ^ -( value & 1 );
+   }
+
+   /** 
+    * Walks the live hierarchy, filling growable columns.  Children are read 
+    * by index rather than with getComponents(), which would copy every 
+    * container's array, and SHOWING is worked out from the parent's flags 
+    * rather than by walking back up to the window for every component.  The
+    * walk keeps it's own stack, so deep hierarchies can't overflow the 
+    * thread's.
+    */
+   private static final class Capture {
+      private final boolean structureOnly;
+      private final HashMap<Object, Integer> stringIds = new HashMap<Object, Integer>();
+      private final ArrayList<String> strings = new ArrayList<String>();
+      private int[][] columns = new int[ COLUMN_COUNT ][ 1024 ];
+      private int size = 0;
+
+      // The containers whose children are being added, their indexes and the next child of each
+      private Container[] openContainers = new Container[ 32 ];
+      private int[] openIndexes = new int[ 32 ];
+      private int[] nextChildren = new int[ 32 ];
+      private int depth = 0;
+
+      public Capture( boolean structureOnly ) {
+         this.structureOnly = structureOnly;
+      }
+
+      /** Adds the component and everything below it, in pre-order. */
+      public void add( Component root, int parent ) {
+         open( root, addOne( root, parent ));
+         while( depth > 0 ) {
+            int top = depth - 1;
+            Container container = openContainers[ top ];
+            if( nextChildren[ top ] < container.getComponentCount() ) {
+               Component child = container.getComponent( nextChildren[ top ]++ );
+               open( child, addOne( child, openIndexes[ top ] ));
+            }
+            else {
+               openContainers[ top ] = null;
+               --depth;
+            }
+         }
+      }
+
+      /** Pushes the component, if it's a container, so that it's children are added next. */
+      private void open( Component c, int index ) {
+         if( !( c instanceof Container )) {
+            return;
+         }
+
+         if( depth == openContainers.length ) {
+            openContainers = Arrays.copyOf( openContainers, depth * 2 );
+            openIndexes = Arrays.copyOf( openIndexes, depth * 2 );
+            nextChildren = Arrays.copyOf( nextChildren, depth * 2 );
+         }
+         openContainers[ depth ] = (Container)c;
+         openIndexes[ depth ] = index;
+         nextChildren[ depth ] = 0;
+         ++depth;
+      }
+
+      /** Adds the component's own row and returns it's index. */
+      private int addOne( Component c, int parent ) {
+         int i = size++;
+         if( i == columns[0].length ) {
+            for( int col = 0; col < COLUMN_COUNT; ++col ) {
+               columns[ col ] = Arrays.copyOf( columns[ col ], i * 2 );
+            }
+         }
+
+         set( PARENT, i, parent );
+         set( IDENTITY, i, System.identityHashCode( c ));
+         set( CLASS, i, internClass( c.getClass() ));
+         set( NAME, i, intern( c.getName() ));
+         set( X, i, c.getX() );
+         set( Y, i, c.getY() );
+         set( WIDTH, i, c.getWidth() );
+         set( HEIGHT, i, c.getHeight() );
+
+         int flags = 0;
+         if( c.isEnabled() ) flags |= ENABLED;
+         if( c.isVisible() ) flags |= VISIBLE;
+         if( c.isOpaque() ) flags |= OPAQUE;
+         if( c.isFocusable() ) flags |= FOCUSABLE;
+         if( c.isFocusOwner() ) flags |= FOCUS_OWNER;
+         if( c.isDoubleBuffered() ) flags |= DOUBLE_BUFFERED;
+         if( c.isLightweight() ) flags |= LIGHTWEIGHT;
+         if( c.isValid() ) flags |= VALID;
+         if( c.isFontSet() ) flags |= FONT_SET;
+         if( c.isForegroundSet() ) flags |= FOREGROUND_SET;
+         if( c.isBackgroundSet() ) flags |= BACKGROUND_SET;
+         if( c.isMinimumSizeSet() ) flags |= MIN_SIZE_SET;
+         if( c.isMaximumSizeSet() ) flags |= MAX_SIZE_SET;
+         if( c.isPreferredSizeSet() ) flags |= PREF_SIZE_SET;
+         if( c.isCursorSet() ) flags |= CURSOR_SET;
+
+         boolean showing = parent < 0 
+            ? c.isShowing() 
+            : ( columns[ FLAGS ][ parent ] & SHOWING ) != 0 && c.isVisible();
+         if( showing ) flags |= SHOWING;
+
+         if( c instanceof Container ) {
+            flags |= CONTAINER;
+            if( ((Container)c).isFocusCycleRoot() ) flags |= FOCUS_CYCLE_ROOT;
+         }
+         if( c instanceof JComponent ) {
+            flags |= JCOMPONENT;
+            if( ((JComponent)c).getAutoscrolls() ) flags |= AUTOSCROLLS;
+         }
+
+         if( structureOnly ) {
+            set( FONT, i, -1 );
+            set( LAYOUT, i, -1 );
+            set( BORDER, i, -1 );
+            set( UI_CLASS, i, -1 );
+         }
+         else {
+            flags |= addProperties( c, i );
+         }
+         set( FLAGS, i, flags );
+         return i;
+      }
+
+      /** Reads everything left out of a structure only capture, and returns the flags it found. */
+      private int addProperties( Component c, int i ) {
+         Dimension min = c.getMinimumSize();
+         Dimension max = c.getMaximumSize();
+         Dimension pref = c.getPreferredSize();
+         set( MIN_WIDTH, i, min.width );
+         set( MIN_HEIGHT, i, min.height );
+         set( MAX_WIDTH, i, max.width );
+         set( MAX_HEIGHT, i, max.height );
+         set( PREF_WIDTH, i, pref.width );
+         set( PREF_HEIGHT, i, pref.height );
+
+         Font font = c.getFont();
+         set( FONT, i, font == null ? -1 : internFont( font ));
+
+         int flags = 0;
+         Color fg = c.getForeground();
+         Color bg = c.getBackground();
+         set( FOREGROUND, i, fg == null ? 0 : fg.getRGB() );
+         set( BACKGROUND, i, bg == null ? 0 : bg.getRGB() );
+         if( fg != null ) flags |= HAS_FOREGROUND;
+         if( bg != null ) flags |= HAS_BACKGROUND;
+
+         set( ALIGNMENT_X, i, Float.floatToIntBits( c.getAlignmentX() ));
+         set( ALIGNMENT_Y, i, Float.floatToIntBits( c.getAlignmentY() ));
+
+         int layout = -1;
+         if( c instanceof Container ) {
+            Container container = (Container)c;
+            LayoutManager manager = container.getLayout();
+            if( manager instanceof ProfilingLayout ) {
+               manager = ((ProfilingLayout)manager).getDelegate();
+            }
+            layout = manager == null ? -1 : internClass( manager.getClass() );
+
+            Insets insets = container.getInsets();
+            set( INSETS_TOP, i, insets.top );
+            set( INSETS_LEFT, i, insets.left );
+            set( INSETS_BOTTOM, i, insets.bottom );
+            set( INSETS_RIGHT, i, insets.right );
+         }
+         set( LAYOUT, i, layout );
+
+         int border = -1;
+         int uiClass = -1;
+         if( c instanceof JComponent ) {
+            JComponent jc = (JComponent)c;
+            Border b = jc.getBorder();
+            border = b == null ? -1 : internClass( b.getClass() );
+            uiClass = intern( jc.getUIClassID() );
+         }
+         set( BORDER, i, border );
+         set( UI_CLASS, i, uiClass );
+         return flags;
+      }
+
+      private void set( int column, int index, int value ) {
+         columns[ column ][ index ] = value;
+      }
+
+      private int intern( String s ) {
+         if( s == null ) {
+            return -1;
+         }
+
+         Integer id = stringIds.get( s );
+         if( id == null ) {
+            id = strings.size();
+            strings.add( s );
+            stringIds.put( s, id );
+         }
+         return id;
+      }
+
+      /** Classes are looked up by the Class, which hashes by identity. */
+      private int internClass( Class<?> clazz ) {
+         Integer id = stringIds.get( clazz );
+         if( id == null ) {
+            id = intern( clazz.getName() );
+            stringIds.put( clazz, id );
+         }
+         return id;
+      }
+
+      /** Fonts are looked up by the Font, to save building a string for every component. */
+      private int internFont( Font font ) {
+         Integer id = stringIds.get( font );
+         if( id == null ) {
+            id = intern( font.getName() +", "+ styleToString( font.getStyle() ) +", "+ font.getSize2D() );
+            stringIds.put( font, id );
+         }
+         return id;
+      }
+
+      private static String styleToString( int style ) {
+         switch( style ) {
+            case Font.PLAIN: return "Plain";
+            case Font.BOLD: return "Bold";
+            case Font.ITALIC: return "Italic";
+            default: return "Bold Italic";
+         }
+      }
+
+      public HierarchySnapshot finish() {
+         int[][] trimmed = new int[ COLUMN_COUNT ][];
+         for( int col = 0; col < COLUMN_COUNT; ++col ) {
+            trimmed[ col ] = Arrays.copyOf( columns[ col ], size );
+         }
+         return new HierarchySnapshot( System.currentTimeMillis(), SESSION, size, trimmed, 
+            strings.toArray( new String[ strings.size() ] ), structureOnly );
+      }
+   }
+
+   private static final class ByteWriter {
+      private byte[] bytes;
+      private int length = 0;
+
+      public ByteWriter( int capacity ) {
+         bytes = new byte[ capacity ];
+      }
+
+      private void ensure( int extra ) {
+         if( length + extra > bytes.length ) {
+            bytes = Arrays.copyOf( bytes, Math.max( bytes.length * 2, length + extra ));
+         }
+      }
+
+      public void writeVarint( int value ) {
+         ensure( 5 );
+         while(( value & ~0x7F ) != 0 ) {
+            bytes[ length++ ] = (byte)(( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+         }
+         bytes[ length++ ] = (byte)value;
+      }
+
+      public void writeRaw( int value ) {
+         ensure( 4 );
+         bytes[ length++ ] = (byte)( value >>> 24 );
+         bytes[ length++ ] = (byte)( value >>> 16 );
+         bytes[ length++ ] = (byte)( value >>> 8 );
+         bytes[ length++ ] = (byte)value;
+      }
+
+      public void writeBytes( byte[] b ) {
+         ensure( b.length );
+         System.arraycopy( b, 0, bytes, length, b.length );
+         length += b.length;
+      }
+   }
+
+   private static final class ByteReader {
+      private final byte[] bytes;
+      private int position = 0;
+
+      public ByteReader( byte[] bytes ) {
+         this.bytes = bytes;
+      }
+
+      public int readVarint() throws IOException {
+         int value = 0;
+         for( int shift = 0; shift < 35; shift += 7 ) {
+            byte b = next();
+            value |= ( b & 0x7F ) << shift;
+            if(( b & 0x80 ) == 0 ) {
+               return value;
+            }
+         }
+         throw new IOException( "Malformed varint" );
+      }
+
+      public int readRaw() throws IOException {
+         return ( next() & 0xFF ) << 24 | ( next() & 0xFF ) << 16 | ( next() & 0xFF ) << 8 | ( next() & 0xFF );
+      }
+
+      public int remaining() {
+         return bytes.length - position;
+      }
+
+      /** Reads a length prefixed UTF-8 string. */
+      public String readString() throws IOException {
+         int length = readVarint();
+         if( length < 0 || length > remaining() ) {
+            throw new IOException( "Truncated snapshot" );
+         }
+         String s = new String( bytes, position, length, UTF8 );
+         position += length;
+         return s;
+      }
+
+      private byte next() throws IOException {
+         if( position >= bytes.length ) {
+            throw new IOException( "Truncated snapshot" );
+         }
+         return bytes[ position++ ];
+      }
+   }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The differences between two snapshots of the same hierarchy, taken before
+ * and after some action.<br />
+ * <br />
+ * Components are matched first by identity hash, when the class is the same
+ * and both snapshots were captured by the same JVM, which follows a 
+ * component that was moved to another parent.  Those left
+ * are matched by path: the class, name and position among like siblings of
+ * the component and of each of its ancestors.  That follows a component
+ * which was replaced by an equivalent one.  Anything unmatched in 'after' 
+ * was added and anything unmatched in 'before' was removed.<br />
+ * <br />
+ * Everything is worked out from the captured columns in a few linear passes,
+ * so diffs can be taken off the event dispatch thread.
+ */
+public final class SnapshotDiff {
+   public static final int UNCHANGED = 0;
+   public static final int ADDED = 1;
+   public static final int REMOVED = 2;
+   public static final int MOVED = 3;
+   public static final int CHANGED = 4;
+
+   private final HierarchySnapshot before;
+   private final HierarchySnapshot after;
+
+   private final int[] beforeToAfter;
+   private final int[] afterToBefore;
+
+   /** For each matched 'after' component, a bit for each column that differs. */
+   private final int[] changedColumns;
+
+   /** For each 'after' component, the components added and removed under it. */
+   private final int[] addedBelow;
+   private final int[] removedBelow;
+
+   private int added = 0;
+   private int removed = 0;
+   private int moved = 0;
+   private int changed = 0;
+
+
+   public SnapshotDiff( HierarchySnapshot before, HierarchySnapshot after ) {
+      this.before = before;
+      this.after = after;
+      this.beforeToAfter = new int[ before.size() ];
+      this.afterToBefore = new int[ after.size() ];
+      this.changedColumns = new int[ after.size() ];
+      this.addedBelow = new int[ after.size() ];
+      this.removedBelow = new int[ after.size() ];
+
+      Arrays.fill( beforeToAfter, -1 );
+      Arrays.fill( afterToBefore, -1 );
+
+      int[] stringMap = mapStrings();
+      if( before.isSameSession( after )) {
+         matchByIdentity( stringMap );
+      }
+      matchByPath();
+      compare( stringMap );
+      countBelow();
+   }
+
+   public HierarchySnapshot getBefore() {
+      return before;
+   }
+
+   public HierarchySnapshot getAfter() {
+      return after;
+   }
+
+   /** The matching 'after' component, or -1 when it was removed. */
+   public int getAfterIndex( int beforeIndex ) {
+      return beforeToAfter[ beforeIndex ];
+   }
+
+   /** The matching 'before' component, or -1 when it was added. */
+   public int getBeforeIndex( int afterIndex ) {
+      return afterToBefore[ afterIndex ];
+   }
+
+   /** One of ADDED, MOVED, CHANGED or UNCHANGED.  Moving takes precedence over changes. */
+   public int getStatus( int afterIndex ) {
+      int b = afterToBefore[ afterIndex ];
+      if( b < 0 ) {
+         return ADDED;
+      }
+      if( isMoved( afterIndex )) {
+         return MOVED;
+      }
+      return changedColumns[ afterIndex ] != 0 ? CHANGED : UNCHANGED;
+   }
+
+   /** Whether the component now has a different parent to the one it had. */
+   public boolean isMoved( int afterIndex ) {
+      int b = afterToBefore[ afterIndex ];
+      if( b < 0 ) {
+         return false;
+      }
+      int beforeParent = before.getParent( b );
+      int afterParent = after.getParent( afterIndex );
+      return beforeParent < 0 ? afterParent >= 0 : beforeToAfter[ beforeParent ] != afterParent;
+   }
+
+   /** A bit, ( 1 << column ), for each HierarchySnapshot column which changed. */
+   public int getChangedColumns( int afterIndex ) {
+      return changedColumns[ afterIndex ];
+   }
+
+   /** The names of the changed columns, separated by commas. */
+   public String describeChanges( int afterIndex ) {
+      StringBuilder builder = new StringBuilder();
+      int mask = changedColumns[ afterIndex ];
+      for( int c = 0; c < HierarchySnapshot.COLUMN_COUNT; ++c ) {
+         if(( mask & ( 1 << c )) != 0 ) {
+            if( builder.length() > 0 ) {
+               builder.append( ", " );
+            }
+            builder.append( HierarchySnapshot.getColumnName( c ));
+         }
+      }
+      return builder.toString();
+   }
+
+   /** The number of components added anywhere below the component. */
+   public int getAddedBelow( int afterIndex ) {
+      return addedBelow[ afterIndex ];
+   }
+
+   /** The number of components removed from anywhere below the component. */
+   public int getRemovedBelow( int afterIndex ) {
+      return removedBelow[ afterIndex ];
+   }
+
+   public int getAddedCount() {
+      return added;
+   }
+
+   public int getRemovedCount() {
+      return removed;
+   }
+
+   public int getMovedCount() {
+      return moved;
+   }
+
+   public int getChangedCount() {
+      return changed;
+   }
+
+   /** 
+    * Maps each 'before' string index to the index of the same string in
+    * 'after', or -1, so string columns can be compared as ints.
+    */
+   private int[] mapStrings() {
+      HashMap<String, Integer> ids = new HashMap<String, Integer>();
+      for( int i = 0; i < after.getStringCount(); ++i ) {
+         ids.put( after.getStringAt( i ), i );
+      }
+
+      int[] map = new int[ before.getStringCount() ];
+      for( int i = 0; i < map.length; ++i ) {
+         Integer id = ids.get( before.getStringAt( i ));
+         map[i] = id == null ? -1 : id;
+      }
+      return map;
+   }
+
+   private void matchByIdentity( int[] stringMap ) {
+      // Identity hashes can collide, so a hash seen twice is not used
+      HashMap<Integer, Integer> identities = new HashMap<Integer, Integer>();
+      for( int i = 0; i < before.size(); ++i ) {
+         Integer previous = identities.put( before.getIdentity( i ), i );
+         if( previous != null ) {
+            identities.put( before.getIdentity( i ), -1 );
+         }
+      }
+
+      for( int i = 0; i < after.size(); ++i ) {
+         Integer b = identities.get( after.getIdentity( i ));
+         if( b != null && b >= 0 && beforeToAfter[b] < 0 
+               && mapString( stringMap, before.get( HierarchySnapshot.CLASS, b )) == after.get( HierarchySnapshot.CLASS, i )) {
+            link( b, i );
+         }
+      }
+   }
+
+   private void matchByPath() {
+      long[] beforePaths = paths( before );
+      long[] afterPaths = paths( after );
+
+      HashMap<Long, Integer> unmatched = new HashMap<Long, Integer>();
+      for( int i = 0; i < before.size(); ++i ) {
+         if( beforeToAfter[i] < 0 ) {
+            unmatched.put( beforePaths[i], i );
+         }
+      }
+
+      for( int i = 0; i < after.size(); ++i ) {
+         if( afterToBefore[i] < 0 ) {
+            Integer b = unmatched.remove( afterPaths[i] );
+            if( b != null ) {
+               link( b, i );
+            }
+         }
+      }
+   }
+
+   private void link( int b, int a ) {
+      beforeToAfter[b] = a;
+      afterToBefore[a] = b;
+   }
+
+   /**
+    * Hashes the path to each component.  Parents come before their children
+    * so one pass is enough.  The ordinal separates siblings of the same class
+    * and name, and is counted per parent path.
+    */
+   private static long[] paths( HierarchySnapshot snapshot ) {
+      long[] paths = new long[ snapshot.size() ];
+      HashMap<Long, Integer> ordinals = new HashMap<Long, Integer>();
+
+      for( int i = 0; i < paths.length; ++i ) {
+         int parent = snapshot.getParent( i );
+         long h = parent < 0 ? 0x2545F4914F6CDD1DL : paths[ parent ];
+         h = mix( h, hash( snapshot.getClassName( i )));
+         h = mix( h, hash( snapshot.getName( i )));
+
+         Integer ordinal = ordinals.get( h );
+         ordinals.put( h, ordinal == null ? 1 : ordinal + 1 );
+         paths[i] = mix( h, ordinal == null ? 0 : ordinal );
+      }
+      return paths;
+   }
+
+   private static int hash( String s ) {
+      return s == null ? 0 : s.hashCode();
+   }
+
+   private static long mix( long h, int value ) {
+      h ^= value;
+      h *= 0x9E3779B97F4A7C15L;
+      return h ^ ( h >>> 29 );
+   }
+
+   private static int mapString( int[] stringMap, int id ) {
+      return id < 0 ? -1 : stringMap[ id ];
+   }
+
+   private void compare( int[] stringMap ) {
+      for( int a = 0; a < after.size(); ++a ) {
+         int b = afterToBefore[a];
+         if( b < 0 ) {
+            ++added;
+            continue;
+         }
+
+         int mask = 0;
+         for( int c = HierarchySnapshot.CLASS; c < HierarchySnapshot.COLUMN_COUNT; ++c ) {
+            int old = before.get( c, b );
+            if( HierarchySnapshot.isStringColumn( c )) {
+               old = mapString( stringMap, old );
+            }
+            if( old != after.get( c, a )) {
+               mask |= 1 << c;
+            }
+         }
+         changedColumns[a] = mask;
+
+         if( isMoved( a )) {
+            ++moved;
+         }
+         else if( mask != 0 ) {
+            ++changed;
+         }
+      }
+
+      for( int b = 0; b < before.size(); ++b ) {
+         if( beforeToAfter[b] < 0 ) {
+            ++removed;
+         }
+      }
+   }
+
+   /** 
+    * Totals the additions and removals under each component.  Children come 
+    * after their parents, so walking backwards sees a subtree before its root.
+    */
+   private void countBelow() {
+      // Removed subtrees are charged to the surviving parent they were removed from
+      int[] removedSubtree = new int[ before.size() ];
+      for( int b = before.size() - 1; b >= 0; --b ) {
+         if( beforeToAfter[b] >= 0 ) {
+            continue;
+         }
+         ++removedSubtree[b];
+
+         int parent = before.getParent( b );
+         if( parent < 0 ) {
+            continue;
+         }
+         if( beforeToAfter[ parent ] < 0 ) {
+            removedSubtree[ parent ] += removedSubtree[b];
+         }
+         else {
+            removedBelow[ beforeToAfter[ parent ]] += removedSubtree[b];
+         }
+      }
+
+      for( int a = after.size() - 1; a >= 0; --a ) {
+         int parent = after.getParent( a );
+         if( parent < 0 ) {
+            continue;
+         }
+         addedBelow[ parent ] += addedBelow[a] + ( afterToBefore[a] < 0 ? 1 : 0 );
+         removedBelow[ parent ] += removedBelow[a];
+      }
+   }
+}
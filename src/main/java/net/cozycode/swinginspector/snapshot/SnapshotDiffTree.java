@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.awt.Color;
+import java.awt.Component;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.TreeSelectionModel;
+
+/**
+ * Shows a SnapshotDiff in the manner of the ComponentTree, marking each 
+ * component as added (+), removed (-), moved to another parent (>) or 
+ * changed (*), along with how many components were added and removed 
+ * below it.
+ */
+public class SnapshotDiffTree extends JTree {
+   private static final long serialVersionUID = 1L;
+   private static final Color ADDED = new Color( 0, 128, 0 );
+   private static final Color REMOVED = new Color( 192, 0, 0 );
+   private static final Color MOVED = new Color( 0, 0, 192 );
+   private static final Color CHANGED = new Color( 160, 96, 0 );
+
+   private final SnapshotDiffTreeModel model = new SnapshotDiffTreeModel();
+
+   public SnapshotDiffTree() {
+      this.getSelectionModel().setSelectionMode( TreeSelectionModel.SINGLE_TREE_SELECTION );
+      this.setEditable( false );
+      this.setModel( model );
+      this.setCellRenderer( new DiffRenderer() );
+   }
+
+   public void setDiff( SnapshotDiff diff ) {
+      model.setDiff( diff );
+      if( diff != null ) {
+         expandRow( 0 );
+      }
+   }
+
+   public SnapshotDiff getDiff() {
+      return model.getDiff();
+   }
+
+   /** Whether to leave out branches in which nothing changed. */
+   public void setChangesOnly( boolean changesOnly ) {
+      model.setChangesOnly( changesOnly );
+      if( model.getDiff() != null ) {
+         expandRow( 0 );
+      }
+   }
+
+   public boolean isChangesOnly() {
+      return model.isChangesOnly();
+   }
+
+   @Override
+   public String convertValueToText(Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
+      if( value instanceof SnapshotDiffTreeModel.Node ) {
+         return model.describe( (SnapshotDiffTreeModel.Node)value );
+      }
+      else if( value == null ) {
+         return "null";
+      }
+      else {
+         return "ERROR: Tree value was not a snapshot node as was expected";
+      }
+   }
+
+   private final class DiffRenderer extends DefaultTreeCellRenderer {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public Component getTreeCellRendererComponent( JTree tree, Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus ) {
+         super.getTreeCellRendererComponent( tree, value, selected, expanded, leaf, row, hasFocus );
+         if( !selected && value instanceof SnapshotDiffTreeModel.Node ) {
+            switch( model.getStatus( (SnapshotDiffTreeModel.Node)value )) {
+               case SnapshotDiff.ADDED: setForeground( ADDED ); break;
+               case SnapshotDiff.REMOVED: setForeground( REMOVED ); break;
+               case SnapshotDiff.MOVED: setForeground( MOVED ); break;
+               case SnapshotDiff.CHANGED: setForeground( CHANGED ); break;
+               default: break;
+            }
+         }
+         return this;
+      }
+   }
+}
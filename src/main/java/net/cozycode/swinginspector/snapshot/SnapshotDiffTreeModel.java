@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Presents a SnapshotDiff as a tree: the 'after' hierarchy, with each 
+ * removed component shown under the parent it was removed from.  Nodes 
+ * are created as they are expanded.  When only changes are shown, branches
+ * with nothing added, removed, moved or changed in them are left out.
+ */
+public class SnapshotDiffTreeModel implements TreeModel {
+   private final CopyOnWriteArrayList<TreeModelListener> listeners = new CopyOnWriteArrayList<TreeModelListener>();
+
+   private SnapshotDiff diff = null;
+   private Node root = null;
+   private boolean changesOnly = true;
+
+   /** Whether anything in the subtree of each 'after' component differs. */
+   private boolean[] dirty;
+
+   /** Removed components, linked under the node they're shown in. */
+   private int[] firstRemovedUnderAfter;
+   private int[] firstRemovedUnderBefore;
+   private int[] nextRemoved;
+   private int firstRemovedRoot;
+
+
+   public void setDiff( SnapshotDiff diff ) {
+      this.diff = diff;
+      this.root = diff == null ? null : new Node( false, -1 );
+      if( diff != null ) {
+         index();
+      }
+      fireStructureChanged();
+   }
+
+   public SnapshotDiff getDiff() {
+      return diff;
+   }
+
+   public void setChangesOnly( boolean changesOnly ) {
+      this.changesOnly = changesOnly;
+      if( root != null ) {
+         root = new Node( false, -1 );
+      }
+      fireStructureChanged();
+   }
+
+   public boolean isChangesOnly() {
+      return changesOnly;
+   }
+
+   private void index() {
+      HierarchySnapshot before = diff.getBefore();
+      HierarchySnapshot after = diff.getAfter();
+
+      dirty = new boolean[ after.size() ];
+      for( int a = after.size() - 1; a >= 0; --a ) {
+         dirty[a] |= diff.getStatus( a ) != SnapshotDiff.UNCHANGED || diff.getRemovedBelow( a ) > 0;
+         int parent = after.getParent( a );
+         if( dirty[a] && parent >= 0 ) {
+            dirty[ parent ] = true;
+         }
+      }
+
+      firstRemovedUnderAfter = new int[ after.size() ];
+      firstRemovedUnderBefore = new int[ before.size() ];
+      nextRemoved = new int[ before.size() ];
+      Arrays.fill( firstRemovedUnderAfter, -1 );
+      Arrays.fill( firstRemovedUnderBefore, -1 );
+      Arrays.fill( nextRemoved, -1 );
+      firstRemovedRoot = -1;
+
+      // Walk backwards and push to the front so siblings keep their order
+      for( int b = before.size() - 1; b >= 0; --b ) {
+         if( diff.getAfterIndex( b ) >= 0 ) {
+            continue;
+         }
+
+         int parent = before.getParent( b );
+         if( parent < 0 ) {
+            nextRemoved[b] = firstRemovedRoot;
+            firstRemovedRoot = b;
+         }
+         else if( diff.getAfterIndex( parent ) >= 0 ) {
+            int a = diff.getAfterIndex( parent );
+            nextRemoved[b] = firstRemovedUnderAfter[a];
+            firstRemovedUnderAfter[a] = b;
+         }
+         else {
+            nextRemoved[b] = firstRemovedUnderBefore[ parent ];
+            firstRemovedUnderBefore[ parent ] = b;
+         }
+      }
+   }
+
+   /** The status of the node, one of the SnapshotDiff constants. */
+   public int getStatus( Node node ) {
+      return node.removed ? SnapshotDiff.REMOVED : node.index < 0 ? SnapshotDiff.UNCHANGED : diff.getStatus( node.index );
+   }
+
+   public String describe( Node node ) {
+      if( node.index < 0 ) {
+         return String.format( "%d added, %d removed, %d moved, %d changed",
+            diff.getAddedCount(), diff.getRemovedCount(), diff.getMovedCount(), diff.getChangedCount() );
+      }
+
+      HierarchySnapshot snapshot = node.removed ? diff.getBefore() : diff.getAfter();
+      StringBuilder builder = new StringBuilder();
+      switch( getStatus( node )) {
+         case SnapshotDiff.ADDED: builder.append( "+ " ); break;
+         case SnapshotDiff.REMOVED: builder.append( "- " ); break;
+         case SnapshotDiff.MOVED: builder.append( "> " ); break;
+         case SnapshotDiff.CHANGED: builder.append( "* " ); break;
+         default: break;
+      }
+
+      String type = snapshot.getClassName( node.index );
+      builder.append( type.substring( type.lastIndexOf( '.' ) + 1 ));
+      String name = snapshot.getName( node.index );
+      if( name != null ) {
+         builder.append( " \"" ).append( name ).append( "\"" );
+      }
+
+      if( !node.removed ) {
+         int added = diff.getAddedBelow( node.index );
+         int removed = diff.getRemovedBelow( node.index );
+         if( added > 0 || removed > 0 ) {
+            builder.append( "  (+" ).append( added ).append( " / -" ).append( removed ).append( ")" );
+         }
+         if( diff.getChangedColumns( node.index ) != 0 ) {
+            builder.append( "  " ).append( diff.describeChanges( node.index ));
+         }
+      }
+      return builder.toString();
+   }
+
+   private Node[] getChildren( Node node ) {
+      if( node.children != null ) {
+         return node.children;
+      }
+
+      HierarchySnapshot after = diff.getAfter();
+      ArrayList<Node> children = new ArrayList<Node>();
+      int removed;
+
+      if( node.removed ) {
+         removed = firstRemovedUnderBefore[ node.index ];
+      }
+      else {
+         int first;
+         if( node.index < 0 ) {
+            first = after.size() > 0 ? 0 : -1;
+            removed = firstRemovedRoot;
+         }
+         else {
+            first = after.getFirstChild( node.index );
+            removed = firstRemovedUnderAfter[ node.index ];
+         }
+
+         for( int a = first; a >= 0; a = after.getNextSibling( a )) {
+            if( !changesOnly || dirty[a] ) {
+               children.add( new Node( false, a ));
+            }
+         }
+      }
+
+      for( int b = removed; b >= 0; b = nextRemoved[b] ) {
+         children.add( new Node( true, b ));
+      }
+
+      node.children = children.toArray( new Node[ children.size() ] );
+      return node.children;
+   }
+
+   @Override
+   public Object getRoot() {
+      return root;
+   }
+
+   @Override
+   public Object getChild( Object parent, int index ) {
+      return getChildren( (Node)parent )[ index ];
+   }
+
+   @Override
+   public int getChildCount( Object parent ) {
+      return getChildren( (Node)parent ).length;
+   }
+
+   @Override
+   public boolean isLeaf( Object node ) {
+      return getChildCount( node ) == 0;
+   }
+
+   @Override
+   public void valueForPathChanged( TreePath path, Object newValue ) {
+      /* noop */
+   }
+
+   @Override
+   public int getIndexOfChild( Object parent, Object child ) {
+      return Arrays.asList( getChildren( (Node)parent )).indexOf( child );
+   }
+
+   @Override
+   public void addTreeModelListener( TreeModelListener l ) {
+      listeners.add( l );
+   }
+
+   @Override
+   public void removeTreeModelListener( TreeModelListener l ) {
+      listeners.remove( l );
+   }
+
+   private void fireStructureChanged() {
+      TreeModelEvent event = new TreeModelEvent( this, root == null ? (TreePath)null : new TreePath( root ));
+      for( TreeModelListener listener : listeners ) {
+         listener.treeStructureChanged( event );
+      }
+   }
+
+   /** A component from 'after', or a removed one from 'before'. */
+   public static final class Node {
+      private final boolean removed;
+      private final int index;
+      private Node[] children = null;
+
+      private Node( boolean removed, int index ) {
+         this.removed = removed;
+         this.index = index;
+      }
+
+      public boolean isRemoved() {
+         return removed;
+      }
+
+      /** The index in the 'before' snapshot when removed, otherwise in 'after'. */
+      public int getIndex() {
+         return index;
+      }
+   }
+}
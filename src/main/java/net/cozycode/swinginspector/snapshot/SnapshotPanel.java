@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.snapshot;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.util.Date;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+
+import net.cozycode.swing.components.JTitledSeparator;
+import net.miginfocom.swing.MigLayout;
+
+/**
+ * Captures, opens and saves hierarchy snapshots and shows the differences
+ * between a 'before' and an 'after' snapshot.  Captures include every 
+ * window except the one the panel is in.
+ */
+public class SnapshotPanel extends JPanel {
+   private static final long serialVersionUID = 1L;
+
+   private final SnapshotDiffTree tree = new SnapshotDiffTree();
+   private final JLabel beforeLabel = new JLabel();
+   private final JLabel afterLabel = new JLabel();
+   private final JCheckBox changesOnly = new JCheckBox( "Changes Only", true );
+   private final JFileChooser chooser = new JFileChooser();
+
+   private HierarchySnapshot before = null;
+   private HierarchySnapshot after = null;
+
+   public SnapshotPanel() {
+      super( new MigLayout( "wrap,fill", "[fill]", "[][][][grow,fill]" ));
+
+      changesOnly.addActionListener( new ActionListener() {
+         public void actionPerformed( ActionEvent e ) {
+            tree.setChangesOnly( changesOnly.isSelected() );
+         }
+      });
+
+      add( new JTitledSeparator( "Snapshot Diff" ), "split 2" );
+      add( changesOnly, "growx 0" );
+      add( new JLabel( "Before" ), "split 5" );
+      add( new JButton( new SnapshotAction( true, SnapshotAction.CAPTURE, "Capture" )), "growx 0" );
+      add( new JButton( new SnapshotAction( true, SnapshotAction.OPEN, "Open..." )), "growx 0" );
+      add( new JButton( new SnapshotAction( true, SnapshotAction.SAVE, "Save..." )), "growx 0" );
+      add( beforeLabel );
+      add( new JLabel( "After" ), "split 5" );
+      add( new JButton( new SnapshotAction( false, SnapshotAction.CAPTURE, "Capture" )), "growx 0" );
+      add( new JButton( new SnapshotAction( false, SnapshotAction.OPEN, "Open..." )), "growx 0" );
+      add( new JButton( new SnapshotAction( false, SnapshotAction.SAVE, "Save..." )), "growx 0" );
+      add( afterLabel );
+      add( new JScrollPane( tree ));
+
+      update();
+   }
+
+   /** 
+    * Makes 'snapshot' the "After" snapshot and the current "After" the 
+    * "Before", so consecutive snapshots are compared.
+    */
+   public void addSnapshot( HierarchySnapshot snapshot ) {
+      if( after != null ) {
+         before = after;
+      }
+      after = snapshot;
+      update();
+   }
+
+   private void setSnapshot( boolean isBefore, HierarchySnapshot snapshot ) {
+      if( isBefore ) {
+         before = snapshot;
+      }
+      else {
+         after = snapshot;
+      }
+      update();
+   }
+
+   private void update() {
+      beforeLabel.setText( describe( before ));
+      afterLabel.setText( describe( after ));
+      tree.setDiff( before != null && after != null ? new SnapshotDiff( before, after ) : null );
+   }
+
+   private static String describe( HierarchySnapshot snapshot ) {
+      if( snapshot == null ) {
+         return "None";
+      }
+      return snapshot.size() +" components, "+ DateFormat.getTimeInstance().format( new Date( snapshot.getTimestamp() ));
+   }
+
+   private HierarchySnapshot open() throws IOException {
+      if( chooser.showOpenDialog( this ) != JFileChooser.APPROVE_OPTION ) {
+         return null;
+      }
+
+      InputStream in = new BufferedInputStream( new FileInputStream( chooser.getSelectedFile() ));
+      try {
+         return HierarchySnapshot.read( in );
+      }
+      finally {
+         in.close();
+      }
+   }
+
+   private void save( HierarchySnapshot snapshot ) throws IOException {
+      if( snapshot == null || chooser.showSaveDialog( this ) != JFileChooser.APPROVE_OPTION ) {
+         return;
+      }
+
+      File file = chooser.getSelectedFile();
+      OutputStream out = new BufferedOutputStream( new FileOutputStream( file ));
+      try {
+         snapshot.write( out );
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   private final class SnapshotAction extends AbstractAction {
+      private static final long serialVersionUID = 1L;
+      public static final int CAPTURE = 0;
+      public static final int OPEN = 1;
+      public static final int SAVE = 2;
+
+      private final boolean isBefore;
+      private final int kind;
+
+      public SnapshotAction( boolean isBefore, int kind, String name ) {
+         super( name );
+         this.isBefore = isBefore;
+         this.kind = kind;
+      }
+
+      public void actionPerformed( ActionEvent e ) {
+         try {
+            switch( kind ) {
+               case CAPTURE: 
+                  setSnapshot( isBefore, HierarchySnapshot.captureWindows( SwingUtilities.getWindowAncestor( SnapshotPanel.this )));
+                  break;
+               case OPEN: 
+                  HierarchySnapshot snapshot = open();
+                  if( snapshot != null ) {
+                     setSnapshot( isBefore, snapshot );
+                  }
+                  break;
+               default: 
+                  save( isBefore ? before : after );
+                  break;
+            }
+         }
+         catch( IOException ex ) {
+            JOptionPane.showMessageDialog( SnapshotPanel.this, ex.getMessage(), "Snapshot", JOptionPane.ERROR_MESSAGE );
+         }
+      }
+   }
+}
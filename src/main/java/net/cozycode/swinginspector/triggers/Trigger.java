@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.triggers;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+
+/**
+ * A chord which triggers an action: a key or a mouse button, pressed while
+ * exactly the given SHIFT, CTRL, ALT and META modifiers are held.<br />
+ * <br />
+ * The modifiers are the getModifiersEx() masks, since getModifiers() can't
+ * distinguish BUTTON2 from ALT or BUTTON3 from META.  Any other modifier 
+ * bits, such as the buttons held down, are ignored.
+ */
+public final class Trigger {
+   public static final int ALL_MODIFIERS = 
+        InputEvent.SHIFT_DOWN_MASK 
+      | InputEvent.CTRL_DOWN_MASK 
+      | InputEvent.ALT_DOWN_MASK 
+      | InputEvent.META_DOWN_MASK;
+
+   /** The four modifier masks are bits 6 to 9, which this shifts down to 0 to 3. */
+   private static final int MODIFIER_SHIFT = 6;
+
+   private final boolean mouse;
+   private final int code;
+   private final int modifiers;
+
+
+   private Trigger( boolean mouse, int code, int modifiers ) {
+      if(( modifiers & ~ALL_MODIFIERS ) != 0 ) {
+         throw new IllegalArgumentException( "Only SHIFT, CTRL, ALT and META are supported: "+ modifiers );
+      }
+      this.mouse = mouse;
+      this.code = code;
+      this.modifiers = modifiers;
+   }
+
+   /**
+    * @param keycode - one of KeyEvent's virtual key codes (ex: KeyEvent.VK_ENTER)
+    * @param modifiers - one or more of InputEvent.SHIFT_DOWN_MASK, CTRL_DOWN_MASK, ALT_DOWN_MASK and META_DOWN_MASK
+    */
+   public static Trigger key( int keycode, int modifiers ) {
+      return new Trigger( false, keycode, modifiers );
+   }
+
+   /**
+    * @param button - One of MouseEvent's button constants (ex: MouseEvent.BUTTON1)
+    * @param modifiers - one or more of InputEvent.SHIFT_DOWN_MASK, CTRL_DOWN_MASK, ALT_DOWN_MASK and META_DOWN_MASK
+    */
+   public static Trigger mouse( int button, int modifiers ) {
+      return new Trigger( true, button, modifiers );
+   }
+
+   public boolean isMouse() {
+      return mouse;
+   }
+
+   /** The key code or the mouse button. */
+   public int getCode() {
+      return code;
+   }
+
+   public int getModifiers() {
+      return modifiers;
+   }
+
+   /** The chord packed into a long, as looked up by the dispatcher. */
+   long getKey() {
+      return pack( mouse, code, modifierIndex( modifiers ));
+   }
+
+   /** The SHIFT, CTRL, ALT and META state of getModifiersEx() as a number from 0 to 15. */
+   static int modifierIndex( int modifiersEx ) {
+      return ( modifiersEx >> MODIFIER_SHIFT ) & 0xF;
+   }
+
+   static long pack( boolean mouse, int code, int modifierIndex ) {
+      return ( mouse ? 1L << 36 : 0L ) | ((long)modifierIndex << 32 ) | ( code & 0xFFFFFFFFL );
+   }
+
+   @Override
+   public boolean equals( Object o ) {
+      return o instanceof Trigger && ((Trigger)o).getKey() == getKey();
+   }
+
+   @Override
+   public int hashCode() {
+      long key = getKey();
+      return (int)( key ^ ( key >>> 32 ));
+   }
+
+   @Override
+   public String toString() {
+      String held = InputEvent.getModifiersExText( modifiers );
+      String pressed = mouse ? "Button"+ code : KeyEvent.getKeyText( code );
+      return held.length() == 0 ? pressed : held +"+"+ pressed;
+   }
+}
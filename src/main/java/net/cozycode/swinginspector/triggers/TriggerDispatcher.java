@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.triggers;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+import net.cozycode.constructs.IClosure;
+
+/**
+ * One AWTEventListener for every trigger, which sees every mouse and key 
+ * event in the application for as long as it's installed.<br />
+ * <br />
+ * Each event is first checked against bitmasks of the ids, modifier 
+ * combinations, buttons and key codes used by any trigger, so almost every
+ * event is turned away with a few integer tests and without allocating.
+ * Only then is the chord looked up, in an open addressing table keyed on 
+ * the source, code and modifiers, so the cost per event doesn't grow with 
+ * the number of triggers.<br />
+ * <br />
+ * An event matching a trigger is consumed, for each of the pressed, released
+ * and clicked ids, and the action is called for the pressed one.  Key typed
+ * events carry no key code, so the one following a consumed key press is 
+ * consumed instead.  
+ * Triggers can be added from any thread; the dispatcher reads them through
+ * a single volatile field, replaced on every change.
+ */
+public class TriggerDispatcher implements AWTEventListener {
+   private static final Bindings NONE = new Bindings( new long[0], new Object[0] );
+
+   private volatile Bindings bindings = NONE;
+   /** Set by a consumed key press until the next key event.  Only used on the EDT. */
+   private boolean swallowTyped = false;
+   private boolean installed = false;
+
+
+   /** Starts listening to mouse and key events. */
+   public synchronized void install() {
+      if( !installed ) {
+         installed = true;
+         Toolkit.getDefaultToolkit().addAWTEventListener( this, AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK );
+      }
+   }
+
+   public synchronized void uninstall() {
+      if( installed ) {
+         installed = false;
+         Toolkit.getDefaultToolkit().removeAWTEventListener( this );
+      }
+   }
+
+   /** Calls 'action' with the pressed event whenever the trigger occurs, instead of any earlier action. */
+   public synchronized void add( Trigger trigger, IClosure<InputEvent> action ) {
+      Bindings current = bindings;
+      long key = trigger.getKey();
+
+      int index = indexOf( current.keys, key );
+      long[] keys = current.keys;
+      Object[] actions = current.actions;
+      if( index < 0 ) {
+         index = keys.length;
+         keys = Arrays.copyOf( keys, index + 1 );
+         actions = Arrays.copyOf( actions, index + 1 );
+      }
+      else {
+         actions = actions.clone();
+      }
+      keys[ index ] = key;
+      actions[ index ] = action;
+      bindings = new Bindings( keys, actions );
+   }
+
+   /** Stops the trigger from calling it's action and from consuming events. */
+   public synchronized void remove( Trigger trigger ) {
+      Bindings current = bindings;
+      int index = indexOf( current.keys, trigger.getKey() );
+      if( index < 0 ) {
+         return;
+      }
+
+      long[] keys = new long[ current.keys.length - 1 ];
+      Object[] actions = new Object[ keys.length ];
+      for( int i = 0, j = 0; i < current.keys.length; ++i ) {
+         if( i != index ) {
+            keys[j] = current.keys[i];
+            actions[j] = current.actions[i];
+            ++j;
+         }
+      }
+      bindings = new Bindings( keys, actions );
+   }
+
+   private static int indexOf( long[] keys, long key ) {
+      for( int i = 0; i < keys.length; ++i ) {
+         if( keys[i] == key ) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   @Override
+   public void eventDispatched( AWTEvent event ) {
+      Bindings b = bindings;
+
+      // Ids are tested as offsets into the consecutive mouse and key ids
+      int id = event.getID();
+      if( id == KeyEvent.KEY_TYPED ) {
+         if( swallowTyped ) {
+            swallowTyped = false;
+            ((InputEvent)event).consume();
+         }
+         return;
+      }
+      if( id == KeyEvent.KEY_PRESSED || id == KeyEvent.KEY_RELEASED ) {
+         swallowTyped = false;
+      }
+
+      boolean mouse = id - MouseEvent.MOUSE_CLICKED <= 2 && id >= MouseEvent.MOUSE_CLICKED;
+      if( mouse ? !b.anyMouse : !( id - KeyEvent.KEY_PRESSED <= 1 && id >= KeyEvent.KEY_PRESSED && b.anyKey )) {
+         return;
+      }
+
+      InputEvent input = (InputEvent)event;
+      int modifiers = Trigger.modifierIndex( input.getModifiersEx() );
+      int code;
+      if( mouse ) {
+         if((( b.mouseModifierSets >>> modifiers ) & 1 ) == 0 ) {
+            return;
+         }
+         code = ((MouseEvent)input).getButton();
+         if((( b.mouseButtons >>> ( code & 31 )) & 1 ) == 0 ) {
+            return;
+         }
+      }
+      else {
+         if((( b.keyModifierSets >>> modifiers ) & 1 ) == 0 ) {
+            return;
+         }
+         code = ((KeyEvent)input).getKeyCode();
+         if((( b.keyCodes >>> ( code & 63 )) & 1 ) == 0 ) {
+            return;
+         }
+      }
+
+      Object found = b.find( Trigger.pack( mouse, code, modifiers ));
+      if( found == null ) {
+         return;
+      }
+
+      input.consume();
+      if( id == KeyEvent.KEY_PRESSED ) {
+         swallowTyped = true;
+      }
+      if( id == MouseEvent.MOUSE_PRESSED || id == KeyEvent.KEY_PRESSED ) {
+         @SuppressWarnings( "unchecked" )
+         IClosure<InputEvent> action = (IClosure<InputEvent>)found;
+         action.yield( input );
+      }
+   }
+
+   /** 
+    * The triggers, the masks which prefilter events for them and the table
+    * they are looked up in.  Never changed once built.
+    */
+   private static final class Bindings {
+      /** Packed chords only use the low 37 bits, so this can't be one of them. */
+      private static final long EMPTY = -1L;
+
+      /** In the order they were added. */
+      private final long[] keys;
+      private final Object[] actions;
+
+      /** Linear probing, kept at most half full so every probe ends at an empty slot. */
+      private final long[] table;
+      private final Object[] tableActions;
+
+      private final boolean anyMouse;
+      private final boolean anyKey;
+      private final int mouseModifierSets;
+      private final int keyModifierSets;
+      private final int mouseButtons;
+      private final long keyCodes;
+
+      public Bindings( long[] keys, Object[] actions ) {
+         this.keys = keys;
+         this.actions = actions;
+
+         boolean anyMouse = false;
+         boolean anyKey = false;
+         int mouseModifierSets = 0;
+         int keyModifierSets = 0;
+         int mouseButtons = 0;
+         long keyCodes = 0;
+         for( long key : keys ) {
+            int code = (int)key;
+            int modifiers = (int)( key >>> 32 ) & 0xF;
+            if(( key >>> 36 ) != 0 ) {
+               anyMouse = true;
+               mouseModifierSets |= 1 << modifiers;
+               mouseButtons |= 1 << ( code & 31 );
+            }
+            else {
+               anyKey = true;
+               keyModifierSets |= 1 << modifiers;
+               keyCodes |= 1L << ( code & 63 );
+            }
+         }
+
+         this.anyMouse = anyMouse;
+         this.anyKey = anyKey;
+         this.mouseModifierSets = mouseModifierSets;
+         this.keyModifierSets = keyModifierSets;
+         this.mouseButtons = mouseButtons;
+         this.keyCodes = keyCodes;
+
+         int capacity = Integer.highestOneBit( Math.max( 1, keys.length ) * 2 - 1 ) * 2;
+         table = new long[ capacity ];
+         tableActions = new Object[ capacity ];
+         Arrays.fill( table, EMPTY );
+         for( int i = 0; i < keys.length; ++i ) {
+            int slot = slotOf( keys[i] );
+            table[ slot ] = keys[i];
+            tableActions[ slot ] = actions[i];
+         }
+      }
+
+      /** The action bound to the packed chord, or null. */
+      public Object find( long key ) {
+         return tableActions[ slotOf( key ) ];
+      }
+
+      /** The slot holding 'key', or the empty slot it would go in. */
+      private int slotOf( long key ) {
+         int mask = table.length - 1;
+         int slot = (int)(( key * 0x9E3779B97F4A7C15L ) >>> 32 ) & mask;
+         while( table[ slot ] != key && table[ slot ] != EMPTY ) {
+            slot = ( slot + 1 ) & mask;
+         }
+         return slot;
+      }
+   }
+}
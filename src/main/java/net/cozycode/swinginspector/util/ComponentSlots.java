@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.util;
+
+import java.awt.Component;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Assigns each component a small integer slot, so that statistics about it
+ * can be kept in plain primitive arrays indexed by slot.<br />
+ * <br />
+ * Components are compared by identity and held weakly.  The table is open
+ * addressed, so finding a component's slot doesn't allocate.  Once a
+ * component is collected it's slot is freed and handed out again by add(),
+ * so owners must clear their arrays at the slot add() returns and keep them 
+ * at least getCapacity() long.  Not thread safe.
+ */
+public final class ComponentSlots {
+   private final ReferenceQueue<Component> queue = new ReferenceQueue<Component>();
+
+   /** Open addressed by identity hash, holding slot + 1, or 0 when empty. */
+   private int[] table;
+   private SlotReference[] refs;
+
+   private int[] free = new int[ 16 ];
+   private int freeCount = 0;
+   private int highWater = 0;
+   private int live = 0;
+
+   public ComponentSlots( int initialCapacity ) {
+      int capacity = Integer.highestOneBit( Math.max( 16, initialCapacity - 1 )) << 1;
+      table = new int[ capacity * 2 ];
+      refs = new SlotReference[ capacity ];
+   }
+
+   /** The slot of the component, or -1 if it doesn't have one. */
+   public int find( Component c ) {
+      int mask = table.length - 1;
+      for( int i = mix( System.identityHashCode( c )) & mask; table[i] != 0; i = ( i + 1 ) & mask ) {
+         if( refs[ table[i] - 1 ].get() == c ) {
+            return table[i] - 1;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Gives the component a slot, which must not already have one.  The slot
+    * may have belonged to a component which has since been collected.
+    */
+   public int add( Component c ) {
+      sweep();
+
+      int slot = freeCount > 0 ? free[ --freeCount ] : highWater++;
+      if( slot >= refs.length ) {
+         refs = Arrays.copyOf( refs, refs.length * 2 );
+      }
+
+      ++live;
+      if( live * 2 > table.length ) {
+         rehash( table.length * 2 );
+      }
+
+      refs[ slot ] = new SlotReference( c, slot, queue );
+      insert( slot );
+      return slot;
+   }
+
+   /** The component in the slot, or null if the slot is free or it's component was collected. */
+   public Component get( int slot ) {
+      SlotReference ref = slot < highWater ? refs[ slot ] : null;
+      return ref == null ? null : ref.get();
+   }
+
+   /** The length arrays indexed by slot must have. */
+   public int getCapacity() {
+      return refs.length;
+   }
+
+   /** One more than the highest slot ever handed out, for iterating over the slots. */
+   public int getHighWater() {
+      return highWater;
+   }
+
+   /** The number of slots in use. */
+   public int size() {
+      sweep();
+      return live;
+   }
+
+   public void clear() {
+      Arrays.fill( table, 0 );
+      Arrays.fill( refs, null );
+      freeCount = 0;
+      highWater = 0;
+      live = 0;
+      while( queue.poll() != null ) { /* discard */ }
+   }
+
+   /** Frees the slots of collected components. */
+   private void sweep() {
+      Object polled;
+      while(( polled = queue.poll() ) != null ) {
+         SlotReference ref = (SlotReference)polled;
+         if( refs[ ref.slot ] != ref ) {
+            continue;
+         }
+
+         remove( ref );
+         refs[ ref.slot ] = null;
+         if( freeCount == free.length ) {
+            free = Arrays.copyOf( free, free.length * 2 );
+         }
+         free[ freeCount++ ] = ref.slot;
+         --live;
+      }
+   }
+
+   private void insert( int slot ) {
+      int mask = table.length - 1;
+      int i = refs[ slot ].hash & mask;
+      while( table[i] != 0 ) {
+         i = ( i + 1 ) & mask;
+      }
+      table[i] = slot + 1;
+   }
+
+   /** Removes the reference from the table, shifting back any entries which probed past it. */
+   private void remove( SlotReference ref ) {
+      int mask = table.length - 1;
+      int hole = ref.hash & mask;
+      while( table[ hole ] != ref.slot + 1 ) {
+         if( table[ hole ] == 0 ) {
+            return;
+         }
+         hole = ( hole + 1 ) & mask;
+      }
+
+      for( int i = ( hole + 1 ) & mask; table[i] != 0; i = ( i + 1 ) & mask ) {
+         int home = refs[ table[i] - 1 ].hash & mask;
+         boolean reachable = hole <= i 
+            ? ( hole < home && home <= i ) 
+            : ( hole < home || home <= i );
+         if( !reachable ) {
+            table[ hole ] = table[i];
+            hole = i;
+         }
+      }
+      table[ hole ] = 0;
+   }
+
+   private void rehash( int size ) {
+      table = new int[ size ];
+      for( int slot = 0; slot < highWater; ++slot ) {
+         if( refs[ slot ] != null ) {
+            insert( slot );
+         }
+      }
+   }
+
+   private static int mix( int hash ) {
+      return hash ^ ( hash >>> 16 );
+   }
+
+   private static final class SlotReference extends WeakReference<Component> {
+      private final int slot;
+      private final int hash;
+
+      public SlotReference( Component c, int slot, ReferenceQueue<Component> queue ) {
+         super( c, queue );
+         this.slot = slot;
+         this.hash = mix( System.identityHashCode( c ));
+      }
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A map which compares it's keys by identity and holds them weakly, so that
+ * being in the map doesn't keep a component alive.<br />
+ * <br />
+ * Entries whose keys have been collected are swept from a ReferenceQueue at 
+ * the start of every operation.  Values are held strongly and so must not 
+ * refer back to their key, or the key will never be collected.  Not thread 
+ * safe.
+ */
+public class WeakIdentityMap<K, V> {
+   private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+   private final HashMap<Object, V> map = new HashMap<Object, V>();
+
+   private int collected = 0;
+
+   public V get( K key ) {
+      sweep();
+      return map.get( new Lookup( key ));
+   }
+
+   public boolean containsKey( K key ) {
+      sweep();
+      return map.containsKey( new Lookup( key ));
+   }
+
+   public V put( K key, V value ) {
+      sweep();
+      V prev = map.remove( new Lookup( key ));
+      map.put( new WeakKey<K>( key, queue ), value );
+      return prev;
+   }
+
+   public V remove( K key ) {
+      sweep();
+      return map.remove( new Lookup( key ));
+   }
+
+   public int size() {
+      sweep();
+      return map.size();
+   }
+
+   public boolean isEmpty() {
+      return size() == 0;
+   }
+
+   public void clear() {
+      sweep();
+      map.clear();
+   }
+
+   /** A snapshot of the keys which are still reachable. */
+   public List<K> keys() {
+      sweep();
+      ArrayList<K> keys = new ArrayList<K>( map.size() );
+      for( Object ref : map.keySet() ) {
+         @SuppressWarnings( "unchecked" )
+         K key = ((WeakKey<K>)ref).get();
+         if( key != null ) {
+            keys.add( key );
+         }
+      }
+      return keys;
+   }
+
+   /** A snapshot of the values whose keys are still reachable. */
+   public List<V> values() {
+      sweep();
+      return new ArrayList<V>( map.values() );
+   }
+
+   /** The number of entries removed because their key was garbage collected. */
+   public int getCollectedCount() {
+      sweep();
+      return collected;
+   }
+
+   private void sweep() {
+      Reference<? extends K> ref;
+      while(( ref = queue.poll() ) != null ) {
+         if( map.containsKey( ref )) {
+            map.remove( ref );
+            ++collected;
+         }
+      }
+   }
+
+   /**
+    * The stored key.  It keeps the identity hash of it's referent, and once 
+    * cleared is only equal to itself, which lets sweep() remove it.
+    */
+   private static final class WeakKey<K> extends WeakReference<K> {
+      private final int hash;
+
+      public WeakKey( K key, ReferenceQueue<K> queue ) {
+         super( key, queue );
+         hash = System.identityHashCode( key );
+      }
+
+      @Override
+      public int hashCode() {
+         return hash;
+      }
+
+      @Override
+      public boolean equals( Object o ) {
+         if( o == this ) {
+            return true;
+         }
+         if( o instanceof Lookup ) {
+            return ((Lookup)o).key == get();
+         }
+         if( o instanceof WeakKey ) {
+            Object referent = get();
+            return referent != null && referent == ((WeakKey<?>)o).get();
+         }
+         return false;
+      }
+   }
+
+   /** A short lived, strong key used for lookups. */
+   private static final class Lookup {
+      private final Object key;
+
+      public Lookup( Object key ) {
+         this.key = key;
+      }
+
+      @Override
+      public int hashCode() {
+         return System.identityHashCode( key );
+      }
+
+      @Override
+      public boolean equals( Object o ) {
+         if( o instanceof WeakKey ) {
+            return key == ((WeakKey<?>)o).get();
+         }
+         return o instanceof Lookup && key == ((Lookup)o).key;
+      }
+   }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2011 Cozycode.net
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.cozycode.swinginspector.triggers;
+
+import java.awt.AWTEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JPanel;
+
+import net.cozycode.constructs.IClosure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures what the installed triggers add to every mouse and key event in
+ * the host application.<br />
+ * <br />
+ * 'flood' dispatches a stream of ordinary mouse events, none of which is a
+ * trigger, to a component, the way the EventQueue does, so the difference 
+ * between 'triggers = 0' (no listener installed) and the others is the 
+ * per event overhead.  Key events can't be used there, as without a focused
+ * window they are redirected away by the KeyboardFocusManager, so 
+ * 'listener' calls the dispatcher directly with a mix of key and mouse 
+ * events to measure the listener by itself.  Runs headless.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@State( Scope.Thread )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class TriggerDispatcherBenchmark {
+   private static final int FLOOD_SIZE = 1024;
+
+   /** The number of triggers installed.  Zero leaves the dispatcher uninstalled. */
+   @Param({ "0", "1", "10" })
+   public int triggers;
+
+   private final TriggerDispatcher dispatcher = new TriggerDispatcher();
+   private final JPanel target = new JPanel();
+   private final AWTEvent[] mouseFlood = new AWTEvent[ FLOOD_SIZE ];
+   private final AWTEvent[] mixedFlood = new AWTEvent[ FLOOD_SIZE ];
+   private int next = 0;
+
+   public static void main( String[] args ) throws RunnerException {
+      new Runner( new OptionsBuilder().include( TriggerDispatcherBenchmark.class.getSimpleName() ).build() ).run();
+   }
+
+   @Setup
+   public void setUp() {
+      IClosure<InputEvent> action = new IClosure<InputEvent>() {
+         @Override
+         public void yield( InputEvent item ) {
+            throw new IllegalStateException( "The flood should never trigger" );
+         }
+      };
+
+      int held = InputEvent.CTRL_DOWN_MASK | InputEvent.ALT_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK;
+      for( int i = 0; i < triggers; ++i ) {
+         dispatcher.add( i % 2 == 0 ? Trigger.key( KeyEvent.VK_F1 + i, held ) : Trigger.mouse( 1 + i % 3, held ), action );
+      }
+      if( triggers > 0 ) {
+         dispatcher.install();
+      }
+
+      // Ordinary use: presses and releases of each button, some with a single modifier
+      int[] ids = { MouseEvent.MOUSE_PRESSED, MouseEvent.MOUSE_RELEASED, MouseEvent.MOUSE_CLICKED };
+      int[] modifiers = { 0, 0, InputEvent.SHIFT_DOWN_MASK, InputEvent.CTRL_DOWN_MASK };
+      for( int i = 0; i < FLOOD_SIZE; ++i ) {
+         int button = 1 + i % 3;
+         mouseFlood[i] = new MouseEvent( target, ids[ i % ids.length ], 0, modifiers[ i % modifiers.length ], 
+            i % 100, i % 50, 1, false, button );
+
+         mixedFlood[i] = i % 2 == 0 
+            ? mouseFlood[i]
+            : new KeyEvent( target, i % 4 == 1 ? KeyEvent.KEY_PRESSED : KeyEvent.KEY_RELEASED, 0, 
+                 modifiers[ i % modifiers.length ], KeyEvent.VK_A + i % 26, (char)( 'a' + i % 26 ));
+      }
+   }
+
+   @TearDown
+   public void tearDown() {
+      dispatcher.uninstall();
+   }
+
+   @Benchmark
+   public void flood() {
+      AWTEvent event = mouseFlood[ next++ & ( FLOOD_SIZE - 1 ) ];
+      target.dispatchEvent( event );
+   }
+
+   @Benchmark
+   public void listener( Blackhole hole ) {
+      AWTEvent event = mixedFlood[ next++ & ( FLOOD_SIZE - 1 ) ];
+      dispatcher.eventDispatched( event );
+      hole.consume( event );
+   }
+}